@@ -17,11 +17,21 @@ public class Main implements Callable<Integer> {
                 args = new String[]{"-h"};
             }
             LOGGER.trace("Starting HPO tools");
+            int exitCode = commandLine().execute(args);
+            System.exit(exitCode);
+        }
+
+        /**
+         * @return a new command line with all subcommands (also used for each request of the server)
+         */
+        public static CommandLine commandLine() {
             CommandLine cline = new CommandLine(new Main())
+                    .addSubcommand("client", new ClientCommand())
                     .addSubcommand("download", new DownloadCommand())
                     .addSubcommand("encoding", new EncodingCommand())
                     .addSubcommand("mondo", new MondoCommand())
                     .addSubcommand("onset", new OnsetCommand())
+                    .addSubcommand("serve", new ServeCommand())
                     .addSubcommand("simhpo", new SimHpoCommand())
                     .addSubcommand("stats", new StatsCommand())
                     .addSubcommand("translate", new DiseaseTranslateCommand())
@@ -29,8 +39,11 @@ public class Main implements Callable<Integer> {
                     .addSubcommand("word", new WordCommand())
                    ;
             cline.setToggleBooleanFlags(false);
-            int exitCode = cline.execute(args);
-            System.exit(exitCode);
+            // everything after the subcommand of the client is forwarded to the server unchanged
+            CommandLine client = cline.getSubcommands().get("client");
+            client.setStopAtPositional(true);
+            client.setUnmatchedOptionsArePositionalParams(true);
+            return cline;
         }
 
 
@@ -0,0 +1,57 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content hash of an input file, used to decide whether a cache derived from the file is still fresh.
+ */
+public class FileHash {
+
+    private FileHash() {
+    }
+
+    /**
+     * @param path file to hash
+     * @return hex-encoded SHA-256 digest of the file content
+     */
+    public static String sha256(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[1 << 16];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, len);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new PhenolRuntimeException("Could not read " + path.toAbsolutePath() + ": " + e.getMessage(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new PhenolRuntimeException("SHA-256 not available (should never happen)", e);
+        }
+    }
+
+    /**
+     * Unchanged size and modification time are taken as proof that the file is unchanged; otherwise the file is
+     * hashed (so that, e.g., copying the same release does not invalidate a cache derived from it).
+     * @param size size of the file when the cache was built
+     * @param lastModified modification time (in ms) of the file when the cache was built
+     * @param sha256 {@link #sha256(Path)} of the file when the cache was built
+     */
+    public static boolean isUnchanged(Path path, long size, long lastModified, String sha256) throws IOException {
+        if (Files.size(path) != size) {
+            return false;
+        }
+        if (Files.getLastModifiedTime(path).toMillis() == lastModified) {
+            return true;
+        }
+        return sha256(path).equals(sha256);
+    }
+}
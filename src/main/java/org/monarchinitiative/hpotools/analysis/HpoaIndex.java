@@ -0,0 +1,287 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Side index of a phenotype.hpoa file that maps each disease to the byte ranges of its lines, so that the
+ * annotations of a few diseases can be read without reading the whole file (see {@link LazyHpoDiseases}).
+ * The lines of a disease are usually contiguous, but a disease may have several ranges.
+ * <p>
+ * The index is stored next to the annotation file ({@code phenotype.hpoa.idx}) and records the size and
+ * modification time of the file it was built from; if either differs, or the index file is damaged, the index is
+ * rebuilt, which takes one pass over the file.
+ */
+public class HpoaIndex {
+    private final static Logger LOGGER = LoggerFactory.getLogger(HpoaIndex.class);
+    /** "HPIX" */
+    private final static int MAGIC = 0x48504958;
+    private final static int FORMAT_VERSION = 1;
+    private final static String SUFFIX = ".idx";
+
+    /** Length of the header, i.e., the comment lines and the column names, which precede all annotation lines. */
+    private final int headerLength;
+    /** Disease id to {offset0, length0, offset1, length1, ...} */
+    private final Map<TermId, long[]> ranges;
+
+    private HpoaIndex(int headerLength, Map<TermId, long[]> ranges) {
+        this.headerLength = headerLength;
+        this.ranges = ranges;
+    }
+
+    /**
+     * Read the index next to the annotation file if it is fresh, otherwise build it and (try to) write it.
+     * @param hpoa uncompressed phenotype.hpoa file
+     */
+    public static HpoaIndex load(Path hpoa) throws IOException {
+        return load(hpoa, true);
+    }
+
+    /**
+     * @param hpoa uncompressed phenotype.hpoa file
+     * @param useIndexFile if false, the index is built in memory and the index file is neither read nor written
+     */
+    public static HpoaIndex load(Path hpoa, boolean useIndexFile) throws IOException {
+        if (!useIndexFile) {
+            return build(hpoa);
+        }
+        Path indexPath = indexPath(hpoa);
+        Optional<HpoaIndex> opt = read(indexPath, hpoa);
+        if (opt.isPresent()) {
+            return opt.get();
+        }
+        HpoaIndex index = build(hpoa);
+        try {
+            index.write(indexPath, hpoa);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write annotation index {}: {}", indexPath, e.getMessage());
+        }
+        return index;
+    }
+
+    public static Path indexPath(Path hpoa) {
+        return hpoa.resolveSibling(hpoa.getFileName() + SUFFIX);
+    }
+
+    /** Index the annotation file in a single pass. */
+    public static HpoaIndex build(Path hpoa) throws IOException {
+        Builder builder = new Builder(hpoa);
+        try (InputStream in = Files.newInputStream(hpoa)) {
+            byte[] chunk = new byte[1 << 16];
+            ByteArrayOutputStream firstField = new ByteArrayOutputStream();
+            boolean inFirstField = true;
+            long offset = 0; // offset of chunk[0]
+            long lineStart = 0;
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    byte c = chunk[i];
+                    if (c == '\n') {
+                        long lineEnd = offset + i + 1;
+                        builder.line(firstField.toString(StandardCharsets.UTF_8), lineStart, lineEnd);
+                        firstField.reset();
+                        inFirstField = true;
+                        lineStart = lineEnd;
+                    } else if (c == '\t' || c == '\r') {
+                        inFirstField = false;
+                    } else if (inFirstField) {
+                        firstField.write(c);
+                    }
+                }
+                offset += n;
+            }
+            if (lineStart < offset) { // last line without newline
+                builder.line(firstField.toString(StandardCharsets.UTF_8), lineStart, offset);
+            }
+        }
+        HpoaIndex index = builder.build();
+        LOGGER.info("Indexed {} diseases in {}", index.ranges.size(), hpoa);
+        return index;
+    }
+
+    /** Collects the byte ranges while the annotation file is scanned line by line. */
+    private static class Builder {
+        private final Path hpoa;
+        private final Map<TermId, long[]> ranges = new LinkedHashMap<>();
+        private int headerLength = -1;
+        private String currentId = null;
+        private long[] current = null;
+
+        private Builder(Path hpoa) {
+            this.hpoa = hpoa;
+        }
+
+        /** @param first the first field (the disease id) of the line from {@code start} to {@code end} */
+        void line(String first, long start, long end) {
+            if (headerLength < 0) {
+                // the header ends with the line of column names (database_id, disease_name, ...)
+                if (first.equals("database_id") || first.equals("#DatabaseID")) {
+                    headerLength = Math.toIntExact(end);
+                } else if (!first.startsWith("#")) {
+                    throw new PhenolRuntimeException("Did not find the column names in " + hpoa);
+                }
+            } else if (first.isEmpty()) {
+                return;
+            } else if (first.equals(currentId) && current[current.length - 2] + current[current.length - 1] == start) {
+                current[current.length - 1] += end - start;
+            } else {
+                TermId diseaseId = TermId.of(first);
+                long[] previous = ranges.get(diseaseId);
+                current = previous == null ? new long[2] : Arrays.copyOf(previous, previous.length + 2);
+                current[current.length - 2] = start;
+                current[current.length - 1] = end - start;
+                ranges.put(diseaseId, current);
+                currentId = first;
+            }
+        }
+
+        HpoaIndex build() {
+            if (headerLength < 0) {
+                throw new PhenolRuntimeException("Did not find the column names in " + hpoa);
+            }
+            return new HpoaIndex(headerLength, ranges);
+        }
+    }
+
+    /**
+     * @param indexPath index file
+     * @param hpoa the annotation file that the index must have been built from
+     * @return the index, or an empty Optional if the index does not exist, is stale or cannot be read
+     */
+    public static Optional<HpoaIndex> read(Path indexPath, Path hpoa) {
+        if (!Files.isRegularFile(indexPath)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring annotation index {} with unknown format", indexPath);
+                return Optional.empty();
+            }
+            long hpoaSize = Files.size(hpoa);
+            if (in.readLong() != hpoaSize || in.readLong() != Files.getLastModifiedTime(hpoa).toMillis()) {
+                LOGGER.info("Annotation index {} is out of date", indexPath);
+                return Optional.empty();
+            }
+            // every count and range is checked, so that a damaged index cannot cause huge allocations
+            long indexSize = Files.size(indexPath);
+            int headerLength = in.readInt();
+            check(headerLength >= 0 && headerLength <= hpoaSize, "header length", headerLength);
+            int n = in.readInt();
+            // each disease takes at least 6 bytes (id and number of ranges)
+            check(n >= 0 && n <= indexSize / 6, "number of diseases", n);
+            Map<TermId, long[]> ranges = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                TermId diseaseId = TermId.of(in.readUTF());
+                int nRanges = in.readInt();
+                // each range takes 12 bytes (offset and length)
+                check(nRanges > 0 && nRanges <= indexSize / 12, "number of ranges", nRanges);
+                long[] r = new long[2 * nRanges];
+                for (int k = 0; k < r.length; k += 2) {
+                    r[k] = in.readLong();
+                    r[k + 1] = in.readInt();
+                    check(r[k] >= headerLength && r[k + 1] >= 0 && r[k] + r[k + 1] <= hpoaSize, "range offset", r[k]);
+                }
+                ranges.put(diseaseId, r);
+            }
+            return Optional.of(new HpoaIndex(headerLength, ranges));
+        } catch (IOException | RuntimeException e) {
+            // a damaged index can fail in many ways (end of file, invalid disease id, invalid count, ...)
+            LOGGER.warn("Could not read annotation index {}: {}", indexPath, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    private static void check(boolean valid, String what, long value) {
+        if (!valid) {
+            throw new PhenolRuntimeException("Invalid " + what + " " + value);
+        }
+    }
+
+    /**
+     * Write the index of the annotation file {@code hpoa} to a temporary file that is then moved into place, so
+     * concurrent readers never see a partial index.
+     */
+    public void write(Path indexPath, Path hpoa) throws IOException {
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(Files.size(hpoa));
+            out.writeLong(Files.getLastModifiedTime(hpoa).toMillis());
+            out.writeInt(headerLength);
+            out.writeInt(ranges.size());
+            for (Map.Entry<TermId, long[]> e : ranges.entrySet()) {
+                out.writeUTF(e.getKey().getValue());
+                long[] r = e.getValue();
+                out.writeInt(r.length / 2);
+                for (int k = 0; k < r.length; k += 2) {
+                    out.writeLong(r[k]);
+                    out.writeInt(Math.toIntExact(r[k + 1]));
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Wrote annotation index {}", indexPath);
+    }
+
+    /** @return the ids of all diseases in the annotation file, in the order of their first line */
+    public Set<TermId> diseaseIds() {
+        return Collections.unmodifiableSet(ranges.keySet());
+    }
+
+    public boolean contains(TermId diseaseId) {
+        return ranges.containsKey(diseaseId);
+    }
+
+    /**
+     * Read the header and the annotation lines of the given diseases, i.e., an excerpt of the annotation file that
+     * can be parsed like the complete file.
+     * @param channel channel of the annotation file
+     */
+    public byte[] excerpt(FileChannel channel, Collection<TermId> diseaseIds) throws IOException {
+        long length = headerLength;
+        for (TermId diseaseId : diseaseIds) {
+            long[] r = ranges.getOrDefault(diseaseId, new long[0]);
+            for (int k = 1; k < r.length; k += 2) {
+                length += r[k] + 1; // room for a newline that the last line of the file may lack
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length));
+        readFully(channel, buffer, 0, headerLength);
+        for (TermId diseaseId : diseaseIds) {
+            long[] r = ranges.getOrDefault(diseaseId, new long[0]);
+            for (int k = 0; k < r.length; k += 2) {
+                readFully(channel, buffer, r[k], Math.toIntExact(r[k + 1]));
+                if (buffer.get(buffer.position() - 1) != '\n') {
+                    buffer.limit(buffer.position() + 1);
+                    buffer.put((byte) '\n');
+                }
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        int end = buffer.position() + length;
+        buffer.limit(end);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("Annotation file is shorter than its index");
+            }
+            position += n;
+        }
+    }
+}
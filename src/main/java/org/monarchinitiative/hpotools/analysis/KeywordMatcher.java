@@ -0,0 +1,151 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+
+import java.util.*;
+
+/**
+ * Finds all occurrences of a set of keywords in a text in a single pass (Aho–Corasick automaton), independently of
+ * the number of keywords. Matching is case-insensitive; keywords may occur anywhere in the text, as with
+ * {@link String#contains(CharSequence)}. Each keyword carries a value, e.g., the age of onset it indicates.
+ *
+ * @param <T> type of the values of the keywords
+ */
+public class KeywordMatcher<T> {
+
+    /** Transitions of each state: sorted characters and the corresponding target states. */
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    /** State to go to when there is no transition for the next character (longest proper suffix in the trie). */
+    private final int[] fail;
+    /** Index of the keyword that ends in a state, or -1. */
+    private final int[] keyword;
+    /** Nearest state on the fail chain (excluding the state itself) in which a keyword ends, or -1. */
+    private final int[] nextMatch;
+    private final List<T> values;
+
+    private KeywordMatcher(char[][] edgeChars, int[][] edgeTargets, int[] fail, int[] keyword, int[] nextMatch,
+                           List<T> values) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.keyword = keyword;
+        this.nextMatch = nextMatch;
+        this.values = values;
+    }
+
+    /**
+     * @param keywordToValue keywords (matched case-insensitively) and their values
+     */
+    public static <T> KeywordMatcher<T> of(Map<String, T> keywordToValue) {
+        // build the trie with growable per-state maps, then freeze it into sorted arrays
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(-1);
+        List<T> values = new ArrayList<>();
+        for (Map.Entry<String, T> e : keywordToValue.entrySet()) {
+            String word = e.getKey().toLowerCase(Locale.ROOT);
+            if (word.isEmpty()) {
+                throw new PhenolRuntimeException("Empty keyword");
+            }
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                Integer next = trie.get(state).get(word.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(word.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    terminal.add(-1);
+                }
+                state = next;
+            }
+            if (terminal.get(state) < 0) {
+                terminal.set(state, values.size());
+                values.add(e.getValue());
+            }
+        }
+        int n = trie.size();
+        char[][] edgeChars = new char[n][];
+        int[][] edgeTargets = new int[n][];
+        int[] keyword = new int[n];
+        for (int s = 0; s < n; s++) {
+            TreeMap<Character, Integer> edges = trie.get(s);
+            edgeChars[s] = new char[edges.size()];
+            edgeTargets[s] = new int[edges.size()];
+            int k = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[s][k] = edge.getKey();
+                edgeTargets[s][k] = edge.getValue();
+                k++;
+            }
+            keyword[s] = terminal.get(s);
+        }
+        // breadth-first computation of the fail and output links
+        int[] fail = new int[n];
+        int[] nextMatch = new int[n];
+        Arrays.fill(nextMatch, -1);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int target : edgeTargets[0]) {
+            fail[target] = 0;
+            queue[tail++] = target;
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            for (int k = 0; k < edgeChars[s].length; k++) {
+                char c = edgeChars[s][k];
+                int t = edgeTargets[s][k];
+                int f = fail[s];
+                while (f > 0 && step(edgeChars, edgeTargets, f, c) < 0) {
+                    f = fail[f];
+                }
+                int g = step(edgeChars, edgeTargets, f, c);
+                fail[t] = g < 0 ? 0 : g;
+                nextMatch[t] = keyword[fail[t]] >= 0 ? fail[t] : nextMatch[fail[t]];
+                queue[tail++] = t;
+            }
+        }
+        return new KeywordMatcher<>(edgeChars, edgeTargets, fail, keyword, nextMatch, List.copyOf(values));
+    }
+
+    private static int step(char[][] edgeChars, int[][] edgeTargets, int state, char c) {
+        int k = Arrays.binarySearch(edgeChars[state], c);
+        return k < 0 ? -1 : edgeTargets[state][k];
+    }
+
+    /** @return number of distinct keywords */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Scan the text and add the values of all keywords that occur in it to {@code found}.
+     * @return true if at least one keyword occurs in the text
+     */
+    public boolean findValues(CharSequence text, Collection<? super T> found) {
+        boolean any = false;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = step(edgeChars, edgeTargets, state, c)) < 0 && state > 0) {
+                state = fail[state];
+            }
+            state = next < 0 ? 0 : next;
+            for (int m = keyword[state] >= 0 ? state : nextMatch[state]; m >= 0; m = nextMatch[m]) {
+                found.add(values.get(keyword[m]));
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    /** @return the values of all keywords that occur in the text */
+    public Set<T> findValues(CharSequence text) {
+        Set<T> found = new HashSet<>();
+        findValues(text, found);
+        return found;
+    }
+}
@@ -0,0 +1,143 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
+import org.monarchinitiative.phenol.annotations.io.hpo.DiseaseDatabase;
+import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoader;
+import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaderOptions;
+import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaders;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * View of the diseases in a phenotype.hpoa file that parses the annotations of a disease only when the disease is
+ * requested, using the {@link HpoaIndex} to read just its lines. This is much faster than loading the whole file
+ * if only one or a few diseases are needed; use {@link #load(Collection)} to parse several diseases at once.
+ * Parsed diseases are kept, so each disease is parsed at most once.
+ */
+public class LazyHpoDiseases implements HpoDiseases {
+
+    private final Path hpoa;
+    private final HpoaIndex index;
+    private final HpoDiseaseLoader loader;
+    /** The diseases of the included databases, in the order of the annotation file. */
+    private final Set<TermId> diseaseIds;
+    private final ConcurrentMap<TermId, Optional<HpoDisease>> parsed = new ConcurrentHashMap<>();
+    private final String version;
+
+    private LazyHpoDiseases(Path hpoa, HpoaIndex index, HpoDiseaseLoader loader, Set<TermId> diseaseIds) {
+        this.hpoa = hpoa;
+        this.index = index;
+        this.loader = loader;
+        this.diseaseIds = diseaseIds;
+        this.version = parse(List.of()).version().orElse(null); // from the header
+    }
+
+    /**
+     * @param hpoa uncompressed phenotype.hpoa file; its index is read or built with {@link HpoaIndex#load(Path)}
+     * @param hpo the HPO, needed to parse the annotations
+     * @param options options of the loader, e.g., the disease databases to include
+     */
+    public static LazyHpoDiseases open(Path hpoa, Ontology hpo, HpoDiseaseLoaderOptions options) throws IOException {
+        return open(hpoa, HpoaIndex.load(hpoa), hpo, options);
+    }
+
+    /**
+     * @param hpoa uncompressed phenotype.hpoa file
+     * @param index index of the file
+     * @param hpo the HPO, needed to parse the annotations
+     * @param options options of the loader, e.g., the disease databases to include
+     */
+    public static LazyHpoDiseases open(Path hpoa, HpoaIndex index, Ontology hpo, HpoDiseaseLoaderOptions options) {
+        Set<String> prefixes = options.includedDatabases().stream()
+                .map(DiseaseDatabase::prefix)
+                .collect(Collectors.toSet());
+        Set<TermId> diseaseIds = index.diseaseIds().stream()
+                .filter(id -> prefixes.contains(id.getPrefix()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return new LazyHpoDiseases(hpoa, index, HpoDiseaseLoaders.defaultLoader(hpo, options),
+                Collections.unmodifiableSet(diseaseIds));
+    }
+
+    @Override
+    public Optional<HpoDisease> diseaseById(TermId diseaseId) {
+        if (!diseaseIds.contains(diseaseId)) {
+            return Optional.empty();
+        }
+        Optional<HpoDisease> opt = parsed.get(diseaseId);
+        if (opt == null) {
+            load(List.of(diseaseId));
+            opt = parsed.get(diseaseId);
+        }
+        return opt;
+    }
+
+    /**
+     * Parse the diseases (that have not been parsed yet) in one go.
+     * @return the requested diseases that are in the annotation file
+     */
+    public HpoDiseases load(Collection<TermId> requested) {
+        List<TermId> missing = requested.stream()
+                .filter(diseaseIds::contains)
+                .filter(id -> !parsed.containsKey(id))
+                .distinct()
+                .toList();
+        if (!missing.isEmpty()) {
+            HpoDiseases diseases = parse(missing);
+            for (TermId diseaseId : missing) {
+                parsed.putIfAbsent(diseaseId, diseases.diseaseById(diseaseId));
+            }
+        }
+        List<HpoDisease> result = requested.stream()
+                .distinct()
+                .map(parsed::get)
+                .filter(Objects::nonNull)
+                .flatMap(Optional::stream)
+                .toList();
+        return HpoDiseases.of(version, result);
+    }
+
+    private HpoDiseases parse(Collection<TermId> ids) {
+        try (FileChannel channel = FileChannel.open(hpoa, StandardOpenOption.READ)) {
+            return loader.load(new ByteArrayInputStream(index.excerpt(channel, ids)));
+        } catch (IOException e) {
+            throw new PhenolRuntimeException("Could not read " + hpoa + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return diseaseIds.size();
+    }
+
+    @Override
+    public Set<TermId> diseaseIds() {
+        return diseaseIds;
+    }
+
+    /** Iterating parses all diseases; use a regular {@link HpoDiseaseLoader} if all diseases are needed. */
+    @Override
+    public Iterator<HpoDisease> iterator() {
+        return diseaseIds.stream()
+                .map(this::diseaseById)
+                .flatMap(Optional::stream)
+                .iterator();
+    }
+
+    /** The version of the annotation file, taken from its header. */
+    @Override
+    public Optional<String> version() {
+        return Optional.ofNullable(version);
+    }
+}
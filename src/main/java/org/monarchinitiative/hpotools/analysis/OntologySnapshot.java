@@ -0,0 +1,394 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.ontology.data.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compact binary snapshot of an ontology (terms with labels, definitions, synonyms and xrefs, the relationships
+ * and the meta information) that was loaded from an obographs JSON file such as hp.json or mondo.json.
+ * The snapshot is stored next to the JSON file ({@code hp.json.snapshot}) and records the size, modification
+ * time and SHA-256 hash of the file it was built from; it is only used while it matches the file.
+ * Reading a snapshot memory-maps the file and decodes it directly from the mapped buffer, which is much
+ * faster than parsing the JSON file.
+ * <p>
+ * All strings are stored once in a string table and referred to by index. Only the is-a edges of the ontology
+ * graph are stored. Every count, length and index is checked while reading, so a damaged snapshot is ignored (and
+ * rebuilt) rather than causing huge allocations.
+ */
+public class OntologySnapshot {
+    private final static Logger LOGGER = LoggerFactory.getLogger(OntologySnapshot.class);
+    /** "HPOS" */
+    private final static int MAGIC = 0x48504F53;
+    private final static int FORMAT_VERSION = 2;
+    private final static String SUFFIX = ".snapshot";
+    /** Marks a null string or a missing date. */
+    private final static int NONE = -1;
+
+    private OntologySnapshot() {
+    }
+
+    /**
+     * Load the ontology from the snapshot next to the JSON file if it is fresh, otherwise parse the JSON file and
+     * (try to) write a new snapshot.
+     * @param jsonFile obographs JSON file, e.g., hp.json
+     */
+    public static Ontology load(File jsonFile) {
+        Path source = jsonFile.toPath();
+        Path snapshot = snapshotPath(source);
+        Optional<Ontology> opt = read(snapshot, source);
+        if (opt.isPresent()) {
+            return opt.get();
+        }
+        Ontology ontology = OntologyLoader.loadOntology(jsonFile);
+        try {
+            write(ontology, snapshot, source);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write ontology snapshot {}: {}", snapshot, e.getMessage());
+        }
+        return ontology;
+    }
+
+    public static Path snapshotPath(Path source) {
+        return source.resolveSibling(source.getFileName() + SUFFIX);
+    }
+
+    /**
+     * @param snapshot snapshot file
+     * @param source the JSON file that the snapshot must have been built from
+     * @return the ontology, or an empty Optional if the snapshot does not exist, is stale or cannot be read
+     */
+    public static Optional<Ontology> read(Path snapshot, Path source) {
+        if (!Files.isRegularFile(snapshot)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring ontology snapshot {} with unknown format", snapshot);
+                return Optional.empty();
+            }
+            long size = buffer.getLong();
+            long lastModified = buffer.getLong();
+            String sha256 = new String(bytes(buffer, count(buffer, 1)), StandardCharsets.UTF_8);
+            if (!FileHash.isUnchanged(source, size, lastModified, sha256)) {
+                LOGGER.info("Ontology snapshot {} is out of date", snapshot);
+                return Optional.empty();
+            }
+            Ontology ontology = new Reader(buffer).readOntology();
+            LOGGER.info("Loaded ontology from snapshot {}", snapshot);
+            return Optional.of(ontology);
+        } catch (IOException | RuntimeException e) {
+            // a damaged snapshot can fail in many ways (buffer underflow, bad index, invalid term id, ...)
+            LOGGER.warn("Could not read ontology snapshot {}: {}", snapshot, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Write the snapshot of an ontology that was loaded from {@code source}. The file is written to a temporary
+     * file first and then moved into place, so concurrent readers never see a partial snapshot.
+     */
+    public static void write(Ontology ontology, Path snapshot, Path source) throws IOException {
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(Files.size(source));
+            out.writeLong(Files.getLastModifiedTime(source).toMillis());
+            byte[] hash = FileHash.sha256(source).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(hash.length);
+            out.write(hash);
+            new Writer().encode(ontology, out);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Wrote ontology snapshot {}", snapshot);
+    }
+
+    /**
+     * Read a count (or length) of items that take at least {@code minItemBytes} bytes each.
+     * @throws PhenolRuntimeException if the remaining bytes cannot hold that many items
+     */
+    private static int count(ByteBuffer buffer, int minItemBytes) {
+        int n = buffer.getInt();
+        if (n < 0 || n > buffer.remaining() / minItemBytes) {
+            throw new PhenolRuntimeException("Invalid count " + n + " at position " + (buffer.position() - 4));
+        }
+        return n;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /** Encodes the ontology into the string table followed by the meta information, terms and relationships. */
+    private static class Writer {
+        private final Map<String, Integer> stringIndex = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(1 << 20);
+        private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        void encode(Ontology ontology, DataOutputStream out) throws IOException {
+            Map<String, String> metaInfo = ontology.getMetaInfo();
+            body.writeInt(metaInfo.size());
+            for (Map.Entry<String, String> e : metaInfo.entrySet()) {
+                string(e.getKey());
+                string(e.getValue());
+            }
+            // the term map also contains the alternative ids; store each term once
+            Map<TermId, Term> terms = new LinkedHashMap<>();
+            for (Term term : ontology.getTerms()) {
+                terms.putIfAbsent(term.id(), term);
+            }
+            body.writeInt(terms.size());
+            for (Term term : terms.values()) {
+                term(term);
+            }
+            // the is-a edges, by child and parent id
+            List<TermId> nodes = new ArrayList<>();
+            for (TermId tid : ontology.graph()) {
+                nodes.add(tid);
+            }
+            nodes.sort(Comparator.comparing(TermId::getValue));
+            List<TermId[]> edges = new ArrayList<>();
+            for (TermId child : nodes) {
+                List<TermId> parents = new ArrayList<>(ontology.graph().getParents(child));
+                parents.sort(Comparator.comparing(TermId::getValue));
+                for (TermId parent : parents) {
+                    edges.add(new TermId[]{child, parent});
+                }
+            }
+            body.writeInt(edges.size());
+            for (TermId[] edge : edges) {
+                string(edge[0].getValue());
+                string(edge[1].getValue());
+            }
+            body.flush();
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+            bodyBytes.writeTo(out);
+        }
+
+        private void term(Term term) throws IOException {
+            string(term.id().getValue());
+            string(term.getName());
+            string(term.getDefinition());
+            string(term.getComment());
+            body.writeBoolean(term.isObsolete());
+            string(term.getCreatedBy());
+            body.writeLong(term.getCreationDate().map(Date::getTime).orElse((long) NONE));
+            body.writeInt(term.getAltTermIds().size());
+            for (TermId altId : term.getAltTermIds()) {
+                string(altId.getValue());
+            }
+            body.writeInt(term.getDatabaseXrefs().size());
+            for (SimpleXref xref : term.getDatabaseXrefs()) {
+                string(xref.getCurie());
+            }
+            body.writeInt(term.getSubsets().size());
+            for (String subset : term.getSubsets()) {
+                string(subset);
+            }
+            body.writeInt(term.getSynonyms().size());
+            for (TermSynonym synonym : term.getSynonyms()) {
+                string(synonym.getValue());
+                body.writeInt(synonym.getScope() == null ? NONE : synonym.getScope().ordinal());
+                string(synonym.getSynonymTypeName());
+                string(synonymType(synonym));
+                List<TermXref> xrefs = synonym.getTermXrefs() == null ? List.of() : synonym.getTermXrefs();
+                body.writeInt(xrefs.size());
+                for (TermXref xref : xrefs) {
+                    string(xref.id().getValue());
+                    string(xref.getDescription());
+                }
+            }
+            body.writeInt(term.getXrefs().size());
+            for (Dbxref xref : term.getXrefs()) {
+                string(xref.getName());
+                string(xref.getDescription());
+                Map<String, String> modifiers = xref.getTrailingModifiers() == null ? Map.of() : xref.getTrailingModifiers();
+                body.writeInt(modifiers.size());
+                for (Map.Entry<String, String> e : modifiers.entrySet()) {
+                    string(e.getKey());
+                    string(e.getValue());
+                }
+            }
+        }
+
+        /**
+         * The synonym type (e.g., layperson) has no getter, so we recover the value that
+         * {@link SynonymType#fromString(String)} understands from the predicates of {@link TermSynonym}.
+         */
+        private static String synonymType(TermSynonym synonym) {
+            if (synonym.isLayperson()) return "hp#layperson";
+            if (synonym.isAbbreviation()) return "hp#abbreviation";
+            if (synonym.isUKspelling()) return "hp#UK spelling";
+            if (synonym.isObsoleteSynonym()) return "hp#obsolete synonym";
+            if (synonym.isPluralForm()) return "hp#plural form";
+            return null;
+        }
+
+        private void string(String s) throws IOException {
+            if (s == null) {
+                body.writeInt(NONE);
+                return;
+            }
+            Integer index = stringIndex.get(s);
+            if (index == null) {
+                index = strings.size();
+                strings.add(s);
+                stringIndex.put(s, index);
+            }
+            body.writeInt(index);
+        }
+    }
+
+    /** Decodes an ontology from a buffer positioned at the string table. */
+    private static class Reader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+        /** Parsed term ids, by string index. */
+        private final TermId[] termIds;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            int n = count(buffer, 4);
+            this.strings = new String[n];
+            for (int i = 0; i < n; i++) {
+                strings[i] = new String(bytes(buffer, count(buffer, 1)), StandardCharsets.UTF_8);
+            }
+            this.termIds = new TermId[n];
+        }
+
+        Ontology readOntology() {
+            int nMeta = count(buffer, 8);
+            Map<String, String> metaInfo = new HashMap<>();
+            for (int i = 0; i < nMeta; i++) {
+                metaInfo.put(string(), string());
+            }
+            int nTerms = count(buffer, 4);
+            List<Term> terms = new ArrayList<>(nTerms);
+            for (int i = 0; i < nTerms; i++) {
+                terms.add(term());
+            }
+            int nRelationships = count(buffer, 8);
+            List<Relationship> relationships = new ArrayList<>(nRelationships);
+            for (int i = 0; i < nRelationships; i++) {
+                relationships.add(new Relationship(termId(), termId(), i + 1, RelationshipType.IS_A));
+            }
+            return ImmutableOntology.builder()
+                    .metaInfo(metaInfo)
+                    .terms(terms)
+                    .relationships(relationships)
+                    .build();
+        }
+
+        private Term term() {
+            Term.Builder builder = Term.builder(termId())
+                    .name(string())
+                    .definition(string())
+                    .comment(string())
+                    .obsolete(buffer.get() != 0)
+                    .createdBy(string());
+            long creationDate = buffer.getLong();
+            if (creationDate != NONE) {
+                builder.creationDate(new Date(creationDate));
+            }
+            int n = count(buffer, 4);
+            List<TermId> altTermIds = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                altTermIds.add(termId());
+            }
+            n = count(buffer, 4);
+            List<SimpleXref> databaseXrefs = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                databaseXrefs.add(new SimpleXref(string()));
+            }
+            n = count(buffer, 4);
+            List<String> subsets = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                subsets.add(string());
+            }
+            n = count(buffer, 4);
+            List<TermSynonym> synonyms = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String value = string();
+                int scope = buffer.getInt();
+                if (scope < NONE || scope >= TermSynonymScope.values().length) {
+                    throw new PhenolRuntimeException("Invalid synonym scope " + scope);
+                }
+                String typeName = string();
+                String synonymType = string();
+                int nXrefs = count(buffer, 8);
+                List<TermXref> xrefs = new ArrayList<>(nXrefs);
+                for (int k = 0; k < nXrefs; k++) {
+                    xrefs.add(new TermXref(termId(), string()));
+                }
+                synonyms.add(new TermSynonym(value, scope == NONE ? null : TermSynonymScope.values()[scope], typeName, xrefs, synonymType));
+            }
+            n = count(buffer, 4);
+            List<Dbxref> xrefs = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String name = string();
+                String description = string();
+                int nModifiers = count(buffer, 8);
+                Map<String, String> modifiers = new HashMap<>();
+                for (int k = 0; k < nModifiers; k++) {
+                    modifiers.put(string(), string());
+                }
+                xrefs.add(new Dbxref(name, description, modifiers));
+            }
+            return builder.altTermIds(altTermIds)
+                    .databaseXrefs(databaseXrefs)
+                    .subsets(subsets)
+                    .synonyms(synonyms)
+                    .xrefs(xrefs)
+                    .build();
+        }
+
+        private int stringIndex() {
+            int index = buffer.getInt();
+            if (index < NONE || index >= strings.length) {
+                throw new PhenolRuntimeException("Invalid string index " + index);
+            }
+            return index;
+        }
+
+        private String string() {
+            int index = stringIndex();
+            return index == NONE ? null : strings[index];
+        }
+
+        private TermId termId() {
+            int index = stringIndex();
+            if (index == NONE) {
+                throw new PhenolRuntimeException("Missing term id in ontology snapshot");
+            }
+            TermId termId = termIds[index];
+            if (termId == null) {
+                termId = TermId.of(strings[index]);
+                termIds[index] = termId;
+            }
+            return termId;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.monarchinitiative.hpotools.analysis.graph;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.*;
+
+/**
+ * Precomputed ancestors of all terms in a subtree of an ontology (e.g., Phenotypic abnormality), stored as
+ * int arrays. Each term of the subtree gets a dense index (in the order of the term ids); the proper ancestors
+ * of term {@code i} that lie strictly below the root are stored, sorted, in
+ * {@code ancestors[ancestorOffsets[i] .. ancestorOffsets[i+1]-1]}. After construction, ancestor queries
+ * are a few array reads and do not traverse the graph. The index is computed from the {@link CsrOntologyGraph} of
+ * the ontology.
+ */
+public class AncestorIndex {
+
+    private final TermId root;
+    private final TermId[] termIds;
+    private final Map<TermId, Integer> indexMap;
+    private final int[] ancestorOffsets;
+    private final int[] ancestors;
+
+    public AncestorIndex(Ontology ontology, TermId root) {
+        this(CsrOntologyGraph.of(ontology), root);
+    }
+
+    /**
+     * @param graph is-a graph of the ontology
+     * @param root root of the subtree, e.g., Phenotypic abnormality
+     */
+    public AncestorIndex(CsrOntologyGraph graph, TermId root) {
+        int rootNode = graph.indexOf(root);
+        if (rootNode < 0) {
+            throw new PhenolRuntimeException("Could not find root term " + root.getValue() + " in ontology");
+        }
+        this.root = root;
+        BitSet subtree = graph.descendants(rootNode);
+        subtree.set(rootNode);
+        // the nodes of the graph are sorted by term id, so the subtree indices keep that order
+        int[] localIndex = new int[graph.size()];
+        Arrays.fill(localIndex, -1);
+        this.termIds = new TermId[subtree.cardinality()];
+        this.indexMap = new HashMap<>(2 * termIds.length);
+        int[] nodes = new int[termIds.length];
+        int n = 0;
+        for (int node = subtree.nextSetBit(0); node >= 0; node = subtree.nextSetBit(node + 1)) {
+            localIndex[node] = n;
+            nodes[n] = node;
+            termIds[n] = graph.termId(node);
+            indexMap.put(termIds[n], n);
+            n++;
+        }
+        int rootIndex = localIndex[rootNode];
+        this.ancestorOffsets = new int[termIds.length + 1];
+        int[] collected = new int[1024];
+        int total = 0;
+        // depth-first search over the parents of each term; visited[node] == i + 1 marks nodes seen for term i
+        int[] visited = new int[graph.size()];
+        int[] stack = new int[16];
+        int[] anc = new int[16];
+        for (int i = 0; i < termIds.length; i++) {
+            int nAnc = 0;
+            int top = 0;
+            stack[top++] = nodes[i];
+            while (top > 0) {
+                int node = stack[--top];
+                for (int k = 0; k < graph.parentCount(node); k++) {
+                    int p = graph.parent(node, k);
+                    if (visited[p] == i + 1) {
+                        continue;
+                    }
+                    visited[p] = i + 1;
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                    }
+                    stack[top++] = p;
+                    int a = localIndex[p];
+                    if (a < 0 || a == rootIndex) {
+                        continue; // outside the subtree, or the root itself
+                    }
+                    if (nAnc == anc.length) {
+                        anc = Arrays.copyOf(anc, 2 * nAnc);
+                    }
+                    anc[nAnc++] = a;
+                }
+            }
+            Arrays.sort(anc, 0, nAnc);
+            ancestorOffsets[i] = total;
+            if (total + nAnc > collected.length) {
+                collected = Arrays.copyOf(collected, Math.max(2 * collected.length, total + nAnc));
+            }
+            System.arraycopy(anc, 0, collected, total, nAnc);
+            total += nAnc;
+        }
+        ancestorOffsets[termIds.length] = total;
+        this.ancestors = Arrays.copyOf(collected, total);
+    }
+
+    public TermId root() {
+        return root;
+    }
+
+    /** @return number of terms in the subtree (including the root) */
+    public int size() {
+        return termIds.length;
+    }
+
+    /** @return dense index of the term, or -1 if it is not in the subtree */
+    public int indexOf(TermId termId) {
+        return indexMap.getOrDefault(termId, -1);
+    }
+
+    public TermId termId(int index) {
+        return termIds[index];
+    }
+
+    /** @return number of proper ancestors of the term below the root */
+    public int ancestorCount(int index) {
+        return ancestorOffsets[index + 1] - ancestorOffsets[index];
+    }
+
+    /**
+     * @param index dense index of a term
+     * @param k a number between 0 and {@link #ancestorCount(int)} - 1
+     * @return dense index of the k-th ancestor of the term
+     */
+    public int ancestor(int index, int k) {
+        return ancestors[ancestorOffsets[index] + k];
+    }
+
+    /** @return true if {@code ancestor} is a proper ancestor of {@code index} (and is not the root) */
+    public boolean isProperAncestor(int ancestor, int index) {
+        return Arrays.binarySearch(ancestors, ancestorOffsets[index], ancestorOffsets[index + 1], ancestor) >= 0;
+    }
+
+    /** @return true if the two terms are identical or one is an ancestor of the other */
+    public boolean areRelated(int a, int b) {
+        return a == b || isProperAncestor(a, b) || isProperAncestor(b, a);
+    }
+}
@@ -0,0 +1,268 @@
+package org.monarchinitiative.hpotools.analysis.graph;
+
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact copy of the is-a graph of an ontology. Each term gets a dense int index (in the order of the term ids),
+ * and the parents and children of term {@code i} are stored in compressed sparse row (CSR) form, i.e.,
+ * {@code parents[parentOffsets[i] .. parentOffsets[i+1]-1]}. Traversals are primitive loops over these arrays and
+ * return {@link BitSet}s of term indices, which avoids creating a {@link TermId} collection for every step as the
+ * phenol graph API does. This pays off for whole-ontology operations, e.g., collecting the descendants of many
+ * terms.
+ * <p>
+ * The ancestor closure of a term ({@link #ancestorSet(int)}) is computed on first use and kept, so that repeated
+ * ancestor queries are a bit lookup.
+ */
+public class CsrOntologyGraph {
+
+    private final TermId[] termIds;
+    private final Map<TermId, Integer> indexMap;
+    private final int[] parentOffsets;
+    private final int[] parents;
+    private final int[] childOffsets;
+    private final int[] children;
+    private final AtomicReferenceArray<BitSet> ancestorSets;
+
+    private CsrOntologyGraph(TermId[] termIds, Map<TermId, Integer> indexMap, int[] parentOffsets, int[] parents) {
+        this.termIds = termIds;
+        this.indexMap = indexMap;
+        this.parentOffsets = parentOffsets;
+        this.parents = parents;
+        int n = termIds.length;
+        // the child arrays are the transpose of the parent arrays
+        this.childOffsets = new int[n + 1];
+        for (int p : parents) {
+            childOffsets[p + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+        this.children = new int[parents.length];
+        int[] fill = Arrays.copyOf(childOffsets, n);
+        for (int i = 0; i < n; i++) {
+            for (int k = parentOffsets[i]; k < parentOffsets[i + 1]; k++) {
+                children[fill[parents[k]]++] = i;
+            }
+        }
+        this.ancestorSets = new AtomicReferenceArray<>(n);
+    }
+
+    /** Copy the is-a graph of the ontology (all terms of {@code ontology.graph()}). */
+    public static CsrOntologyGraph of(Ontology ontology) {
+        List<TermId> nodes = new ArrayList<>();
+        for (TermId tid : ontology.graph()) {
+            nodes.add(tid);
+        }
+        nodes.sort(Comparator.comparing(TermId::getValue));
+        TermId[] termIds = nodes.toArray(new TermId[0]);
+        Map<TermId, Integer> indexMap = new HashMap<>(2 * termIds.length);
+        for (int i = 0; i < termIds.length; i++) {
+            indexMap.put(termIds[i], i);
+        }
+        int[] parentOffsets = new int[termIds.length + 1];
+        int[] parents = new int[termIds.length];
+        int e = 0;
+        for (int i = 0; i < termIds.length; i++) {
+            parentOffsets[i] = e;
+            int start = e;
+            for (TermId parent : ontology.graph().getParents(termIds[i])) {
+                Integer p = indexMap.get(parent);
+                if (p == null) {
+                    continue;
+                }
+                if (e == parents.length) {
+                    parents = Arrays.copyOf(parents, 2 * parents.length + 1);
+                }
+                parents[e++] = p;
+            }
+            Arrays.sort(parents, start, e);
+        }
+        parentOffsets[termIds.length] = e;
+        return new CsrOntologyGraph(termIds, indexMap, parentOffsets, Arrays.copyOf(parents, e));
+    }
+
+    /** @return number of terms */
+    public int size() {
+        return termIds.length;
+    }
+
+    /** @return dense index of the term, or -1 if it is not in the graph */
+    public int indexOf(TermId termId) {
+        return indexMap.getOrDefault(termId, -1);
+    }
+
+    public TermId termId(int index) {
+        return termIds[index];
+    }
+
+    public int parentCount(int index) {
+        return parentOffsets[index + 1] - parentOffsets[index];
+    }
+
+    /** @return index of the k-th parent of the term (parents are sorted by index) */
+    public int parent(int index, int k) {
+        return parents[parentOffsets[index] + k];
+    }
+
+    public int childCount(int index) {
+        return childOffsets[index + 1] - childOffsets[index];
+    }
+
+    /** @return index of the k-th child of the term (children are sorted by index) */
+    public int child(int index, int k) {
+        return children[childOffsets[index] + k];
+    }
+
+    /** @return the (proper) descendants of the term */
+    public BitSet descendants(int index) {
+        return descendantsOfAll(index);
+    }
+
+    /**
+     * @return the (proper) descendants of the term in breadth-first order, i.e., level by level, each term at its
+     * first (shallowest) occurrence, and the children of a term in index order
+     */
+    public int[] descendantsInLevelOrder(int index) {
+        BitSet visited = new BitSet(termIds.length);
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        int node = index;
+        while (true) {
+            for (int k = childOffsets[node]; k < childOffsets[node + 1]; k++) {
+                int c = children[k];
+                if (!visited.get(c)) {
+                    visited.set(c);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, 2 * tail);
+                    }
+                    queue[tail++] = c;
+                }
+            }
+            if (head == tail) {
+                return Arrays.copyOf(queue, tail);
+            }
+            node = queue[head++];
+        }
+    }
+
+    /**
+     * Compute the union of the descendants of several terms in one traversal. Subtrees that were already visited
+     * from another seed are not entered again, so overlapping seeds (e.g., a term and one of its ancestors) cost
+     * no more than the union itself.
+     * @param seeds term indices
+     * @return the terms that are a proper descendant of at least one seed. A seed is contained only if it is a
+     * descendant of another seed, which makes it redundant for subsumption checks.
+     */
+    public BitSet descendantsOfAll(int... seeds) {
+        BitSet visited = new BitSet(termIds.length);
+        int[] stack = new int[16];
+        for (int seed : seeds) {
+            int top = 0;
+            stack[top++] = seed;
+            while (top > 0) {
+                int node = stack[--top];
+                for (int k = childOffsets[node]; k < childOffsets[node + 1]; k++) {
+                    int c = children[k];
+                    if (!visited.get(c)) {
+                        visited.set(c);
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, 2 * top);
+                        }
+                        stack[top++] = c;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * @return the (proper) ancestors of the term. The set is shared and must not be modified; it is computed once
+     * from the ancestor sets of the parents.
+     */
+    public BitSet ancestorSet(int index) {
+        BitSet set = ancestorSets.get(index);
+        if (set != null) {
+            return set;
+        }
+        // iterative post-order traversal: a set is computed once the sets of all parents are available
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = index;
+        while (top > 0) {
+            int node = stack[top - 1];
+            if (ancestorSets.get(node) != null) {
+                top--;
+                continue;
+            }
+            boolean ready = true;
+            for (int k = parentOffsets[node]; k < parentOffsets[node + 1]; k++) {
+                int p = parents[k];
+                if (ancestorSets.get(p) == null) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                    }
+                    stack[top++] = p;
+                    ready = false;
+                }
+            }
+            if (ready) {
+                BitSet anc = new BitSet();
+                for (int k = parentOffsets[node]; k < parentOffsets[node + 1]; k++) {
+                    int p = parents[k];
+                    anc.set(p);
+                    anc.or(ancestorSets.get(p));
+                }
+                ancestorSets.compareAndSet(node, null, anc);
+                top--;
+            }
+        }
+        return ancestorSets.get(index);
+    }
+
+    /** @return true if {@code ancestor} is a proper ancestor of {@code index} */
+    public boolean isProperAncestor(int ancestor, int index) {
+        return ancestorSet(index).get(ancestor);
+    }
+
+    /**
+     * @return all term indices in an order in which every term comes after all of its parents (Kahn's algorithm;
+     * terms on a cycle, which should not exist in an ontology, are omitted)
+     */
+    public int[] topologicalOrder() {
+        int n = termIds.length;
+        int[] remainingParents = new int[n];
+        int[] order = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            remainingParents[i] = parentCount(i);
+            if (remainingParents[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int node = order[head++];
+            for (int k = childOffsets[node]; k < childOffsets[node + 1]; k++) {
+                if (--remainingParents[children[k]] == 0) {
+                    order[tail++] = children[k];
+                }
+            }
+        }
+        return tail == n ? order : Arrays.copyOf(order, tail);
+    }
+
+    /** @return the term ids of the terms in the set, in index order */
+    public List<TermId> termIds(BitSet set) {
+        List<TermId> ids = new ArrayList<>(set.cardinality());
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            ids.add(termIds[i]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,125 @@
+package org.monarchinitiative.hpotools.analysis.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Answers "is term X a descendant of term S" without materialising the descendants of S. The terms are numbered in
+ * the pre-order of a depth-first traversal of a spanning tree of the graph, and each term gets the interval of
+ * pre-order numbers of its subtree; then X is a descendant of S in the spanning tree if its number lies in the
+ * interval of S, i.e., two integer comparisons.
+ * <p>
+ * In a DAG, a term with several parents is reached through only one of them in the spanning tree, so the interval
+ * test can miss ancestors of such terms and of their descendants. These terms are marked, and for them a negative
+ * interval test falls back to the ancestor set of the term in the {@link CsrOntologyGraph} (a bit lookup once the
+ * set is computed). For all other terms the interval test is exact.
+ */
+public class SubsumptionOracle {
+
+    private final CsrOntologyGraph graph;
+    /** Pre-order number of each term. */
+    private final int[] pre;
+    /** Largest pre-order number in the subtree of each term. */
+    private final int[] last;
+    /** True if the term or one of its ancestors has more than one parent. */
+    private final boolean[] inexact;
+
+    public SubsumptionOracle(CsrOntologyGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+        this.pre = new int[n];
+        this.last = new int[n];
+        Arrays.fill(pre, -1);
+        Arrays.fill(last, -2); // empty interval for terms that are not reached (only possible with cycles)
+        int counter = 0;
+        // iterative DFS from every root; the stack holds a node and the index of the next child to visit
+        int[] stackNode = new int[64];
+        int[] stackChild = new int[64];
+        for (int root = 0; root < n; root++) {
+            if (graph.parentCount(root) > 0) {
+                continue;
+            }
+            int top = 0;
+            stackNode[top] = root;
+            stackChild[top] = 0;
+            top++;
+            pre[root] = counter++;
+            while (top > 0) {
+                int node = stackNode[top - 1];
+                int k = stackChild[top - 1];
+                if (k == graph.childCount(node)) {
+                    last[node] = counter - 1;
+                    top--;
+                    continue;
+                }
+                stackChild[top - 1]++;
+                int child = graph.child(node, k);
+                if (pre[child] >= 0) {
+                    continue; // already reached through another parent
+                }
+                pre[child] = counter++;
+                if (top == stackNode.length) {
+                    stackNode = Arrays.copyOf(stackNode, 2 * top);
+                    stackChild = Arrays.copyOf(stackChild, 2 * top);
+                }
+                stackNode[top] = child;
+                stackChild[top] = 0;
+                top++;
+            }
+        }
+        this.inexact = markInexact(graph);
+        for (int i = 0; i < n; i++) {
+            if (pre[i] < 0) {
+                inexact[i] = true;
+            }
+        }
+    }
+
+    /** Visit the terms in topological order, so all parents are marked before their children. */
+    private static boolean[] markInexact(CsrOntologyGraph graph) {
+        boolean[] inexact = new boolean[graph.size()];
+        for (int node : graph.topologicalOrder()) {
+            boolean flag = graph.parentCount(node) > 1;
+            for (int k = 0; !flag && k < graph.parentCount(node); k++) {
+                flag = inexact[graph.parent(node, k)];
+            }
+            inexact[node] = flag;
+        }
+        return inexact;
+    }
+
+    public CsrOntologyGraph graph() {
+        return graph;
+    }
+
+    /** @return true if {@code node} is {@code ancestor} or one of its descendants */
+    public boolean isDescendantOrSelf(int node, int ancestor) {
+        if (pre[ancestor] <= pre[node] && pre[node] <= last[ancestor]) {
+            return true;
+        }
+        return inexact[node] && (ancestor == node || graph.isProperAncestor(ancestor, node));
+    }
+
+    /**
+     * @param ancestors indices of terms, e.g., the seed terms of a category
+     * @return true if {@code node} is one of the ancestors or a descendant of one of them
+     */
+    public boolean isDescendantOrSelfOfAny(int node, int[] ancestors) {
+        int p = pre[node];
+        for (int a : ancestors) {
+            if (pre[a] <= p && p <= last[a]) {
+                return true;
+            }
+        }
+        if (!inexact[node]) {
+            return false;
+        }
+        BitSet ancestorSet = graph.ancestorSet(node);
+        for (int a : ancestors) {
+            if (a == node || ancestorSet.get(a)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
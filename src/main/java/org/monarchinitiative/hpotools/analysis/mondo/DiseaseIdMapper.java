@@ -0,0 +1,322 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Many-to-many mapping between OMIM, Mondo, Orphanet (ORDO) and UMLS disease ids, derived from the xrefs of the
+ * Mondo terms. Mondo is the hub: an OMIM id is mapped to Orphanet via all Mondo terms that have the OMIM id as an
+ * xref. Nothing is dropped, so a mapping is ambiguous if it yields more than one id; unlike a
+ * {@code Map<String, TermId>}, the mapper reports such mappings instead of keeping an arbitrary one.
+ * <p>
+ * Ids are encoded as ints (see {@link DiseaseNamespace}) and each namespace is stored as two packed adjacency
+ * arrays (xref to Mondo terms and Mondo term to xrefs, in CSR form); ids are looked up by binary search.
+ * The batch methods resolve a list of ids into one packed result, so that they do not allocate per id.
+ * Instances are immutable and can be shared between threads.
+ */
+public class DiseaseIdMapper {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiseaseIdMapper.class);
+
+    /**
+     * The mappings of one namespace to Mondo. The Mondo terms of {@code keys[i]} are
+     * {@code keyToMondo[keyOffsets[i] .. keyOffsets[i+1])}, and the xrefs of Mondo term m are the keys with the
+     * indices {@code mondoToKey[mondoOffsets[m] .. mondoOffsets[m+1])}. Mondo terms are referred to by their index
+     * in {@link #mondoKeys}.
+     */
+    private record Table(int[] keys, int[] keyOffsets, int[] keyToMondo, int[] mondoOffsets, int[] mondoToKey) {
+    }
+
+    /** Encoded ids of all Mondo terms, sorted. */
+    private final int[] mondoKeys;
+    /** Indexed by the ordinal of the namespace; null for Mondo itself. */
+    private final Table[] tables;
+
+    private DiseaseIdMapper(int[] mondoKeys, Table[] tables) {
+        this.mondoKeys = mondoKeys;
+        this.tables = tables;
+    }
+
+    public static DiseaseIdMapper of(MondoXrefIndex xrefIndex) {
+        List<TermId> mondoIds = xrefIndex.mondoIds();
+        // (encoded id, position in mondoIds) pairs, sorted by encoded id
+        long[] sorted = new long[mondoIds.size()];
+        int nMondo = 0;
+        for (int i = 0; i < mondoIds.size(); i++) {
+            int key = DiseaseNamespace.MONDO.encode(mondoIds.get(i).getId());
+            if (key >= 0) {
+                sorted[nMondo++] = ((long) key << 32) | i;
+            }
+        }
+        Arrays.sort(sorted, 0, nMondo);
+        int[] mondoKeys = new int[nMondo];
+        TermId[] mondoByIndex = new TermId[nMondo];
+        for (int m = 0; m < nMondo; m++) {
+            mondoKeys[m] = (int) (sorted[m] >>> 32);
+            mondoByIndex[m] = mondoIds.get((int) sorted[m]);
+        }
+        Table[] tables = new Table[DiseaseNamespace.values().length];
+        for (DiseaseNamespace ns : DiseaseNamespace.values()) {
+            if (ns != DiseaseNamespace.MONDO) {
+                tables[ns.ordinal()] = buildTable(ns, xrefIndex, mondoByIndex, nMondo);
+            }
+        }
+        DiseaseIdMapper mapper = new DiseaseIdMapper(mondoKeys, tables);
+        for (DiseaseNamespace ns : DiseaseNamespace.values()) {
+            if (ns != DiseaseNamespace.MONDO) {
+                LOGGER.info("{} {} ids map to Mondo ({} to more than one Mondo term)",
+                        tables[ns.ordinal()].keys().length, ns.prefix(), mapper.ambiguousCount(ns));
+            }
+        }
+        return mapper;
+    }
+
+    private static Table buildTable(DiseaseNamespace ns, MondoXrefIndex xrefIndex, TermId[] mondoByIndex, int nMondo) {
+        // (key, mondo index) pairs packed into longs, in the order of the Mondo terms and their xrefs
+        long[] pairs = new long[16];
+        int nPairs = 0;
+        int[] mondoOffsets = new int[nMondo + 1];
+        for (int m = 0; m < nMondo; m++) {
+            mondoOffsets[m] = nPairs;
+            for (String xref : xrefIndex.xrefs(mondoByIndex[m], ns.prefix())) {
+                int key = ns.encode(xref.substring(xref.indexOf(':') + 1));
+                if (key < 0) {
+                    LOGGER.debug("Skipping malformed xref {} of {}", xref, mondoByIndex[m].getValue());
+                    continue;
+                }
+                if (nPairs == pairs.length) {
+                    pairs = Arrays.copyOf(pairs, 2 * nPairs);
+                }
+                pairs[nPairs++] = ((long) key << 32) | m;
+            }
+        }
+        mondoOffsets[nMondo] = nPairs;
+        long[] byMondo = Arrays.copyOf(pairs, nPairs);
+        long[] byKey = byMondo.clone();
+        Arrays.sort(byKey);
+        int[] keys = new int[nPairs];
+        int[] keyOffsets = new int[nPairs + 1];
+        int[] keyToMondo = new int[nPairs];
+        int nKeys = 0;
+        int e = 0;
+        for (int i = 0; i < nPairs; i++) {
+            int key = (int) (byKey[i] >>> 32);
+            int m = (int) byKey[i];
+            if (i > 0 && byKey[i] == byKey[i - 1]) {
+                continue; // the same xref twice (e.g., with different leading zeros)
+            }
+            if (nKeys == 0 || keys[nKeys - 1] != key) {
+                keyOffsets[nKeys] = e;
+                keys[nKeys++] = key;
+            }
+            keyToMondo[e++] = m;
+        }
+        keyOffsets[nKeys] = e;
+        int[] mondoToKey = new int[nPairs];
+        for (int i = 0; i < nPairs; i++) {
+            mondoToKey[i] = Arrays.binarySearch(keys, 0, nKeys, (int) (byMondo[i] >>> 32));
+        }
+        return new Table(Arrays.copyOf(keys, nKeys), Arrays.copyOf(keyOffsets, nKeys + 1),
+                Arrays.copyOf(keyToMondo, e), mondoOffsets, mondoToKey);
+    }
+
+    /**
+     * @param id a disease id in one of the {@link DiseaseNamespace namespaces}, e.g., OMIM:100100
+     * @return the Mondo terms the id maps to, sorted by id (the term itself for a known Mondo term; empty if the id
+     * is unknown)
+     */
+    public List<TermId> toMondo(TermId id) {
+        return map(id, DiseaseNamespace.MONDO);
+    }
+
+    /**
+     * @param id a disease id in one of the {@link DiseaseNamespace namespaces}, e.g., OMIM:100100
+     * @param target the namespace to map to
+     * @return the ids in the target namespace that the id maps to via Mondo, sorted (empty if there are none)
+     */
+    public List<TermId> map(TermId id, DiseaseNamespace target) {
+        Batch batch = mapAll(List.of(id), target);
+        List<TermId> result = new ArrayList<>(batch.count(0));
+        for (int k = 0; k < batch.count(0); k++) {
+            result.add(batch.get(0, k));
+        }
+        return result;
+    }
+
+    /** @return true if the id maps to more than one id in the target namespace */
+    public boolean isAmbiguous(TermId id, DiseaseNamespace target) {
+        return mapAll(List.of(id), target).count(0) > 1;
+    }
+
+    /** @return the number of ids of the namespace that map to more than one Mondo term */
+    public int ambiguousCount(DiseaseNamespace ns) {
+        if (ns == DiseaseNamespace.MONDO) {
+            return 0;
+        }
+        int[] offsets = tables[ns.ordinal()].keyOffsets();
+        int count = 0;
+        for (int i = 0; i + 1 < offsets.length; i++) {
+            if (offsets[i + 1] - offsets[i] > 1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Map a batch of ids. The ids may come from different namespaces; ids with an unknown prefix are reported as
+     * missing.
+     * @param ids disease ids, e.g., OMIM:100100, Orphanet:777 or MONDO:0007103
+     * @param target the namespace to map to
+     * @return the targets of all ids, packed into one result
+     */
+    public Batch mapAll(List<TermId> ids, DiseaseNamespace target) {
+        int[] offsets = new int[ids.size() + 1];
+        int[] values = new int[Math.max(16, ids.size())];
+        int n = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            offsets[i] = n;
+            TermId id = ids.get(i);
+            Optional<DiseaseNamespace> source = DiseaseNamespace.fromPrefix(id.getPrefix());
+            if (source.isEmpty()) {
+                continue;
+            }
+            int key = source.get().encode(id.getId());
+            if (key < 0) {
+                continue;
+            }
+            if (source.get() == DiseaseNamespace.MONDO) {
+                int m = Arrays.binarySearch(mondoKeys, key);
+                if (m >= 0) {
+                    values = ensureCapacity(values, n + mondoTargetCount(m, target));
+                    n = appendTargets(m, target, values, n);
+                }
+            } else {
+                Table table = tables[source.get().ordinal()];
+                int k = Arrays.binarySearch(table.keys(), key);
+                if (k < 0) {
+                    continue;
+                }
+                for (int e = table.keyOffsets()[k]; e < table.keyOffsets()[k + 1]; e++) {
+                    int m = table.keyToMondo()[e];
+                    values = ensureCapacity(values, n + mondoTargetCount(m, target));
+                    n = appendTargets(m, target, values, n);
+                }
+            }
+            // sort and deduplicate the targets of this id (several Mondo terms can share a target)
+            int start = offsets[i];
+            Arrays.sort(values, start, n);
+            int end = start;
+            for (int k = start; k < n; k++) {
+                if (k == start || values[k] != values[end - 1]) {
+                    values[end++] = values[k];
+                }
+            }
+            n = end;
+        }
+        offsets[ids.size()] = n;
+        return new Batch(ids, target, offsets, values);
+    }
+
+    private int mondoTargetCount(int m, DiseaseNamespace target) {
+        if (target == DiseaseNamespace.MONDO) {
+            return 1;
+        }
+        int[] mondoOffsets = tables[target.ordinal()].mondoOffsets();
+        return mondoOffsets[m + 1] - mondoOffsets[m];
+    }
+
+    /** Append the encoded ids of the target namespace of Mondo term m to values[n..]. */
+    private int appendTargets(int m, DiseaseNamespace target, int[] values, int n) {
+        if (target == DiseaseNamespace.MONDO) {
+            values[n++] = mondoKeys[m];
+            return n;
+        }
+        Table table = tables[target.ordinal()];
+        for (int e = table.mondoOffsets()[m]; e < table.mondoOffsets()[m + 1]; e++) {
+            values[n++] = table.keys()[table.mondoToKey()[e]];
+        }
+        return n;
+    }
+
+    private static int[] ensureCapacity(int[] values, int capacity) {
+        return capacity <= values.length ? values : Arrays.copyOf(values, Math.max(capacity, 2 * values.length));
+    }
+
+    /**
+     * The result of {@link #mapAll(List, DiseaseNamespace)}: for the i-th id, {@link #count(int)} targets, which
+     * are decoded to TermIds only when they are requested.
+     */
+    public static final class Batch {
+        private final List<TermId> ids;
+        private final DiseaseNamespace target;
+        private final int[] offsets;
+        private final int[] values;
+
+        private Batch(List<TermId> ids, DiseaseNamespace target, int[] offsets, int[] values) {
+            this.ids = ids;
+            this.target = target;
+            this.offsets = offsets;
+            this.values = values;
+        }
+
+        public int size() {
+            return ids.size();
+        }
+
+        public TermId id(int i) {
+            return ids.get(i);
+        }
+
+        /** @return the number of targets of the i-th id */
+        public int count(int i) {
+            return offsets[i + 1] - offsets[i];
+        }
+
+        /** @return the k-th target of the i-th id (targets are sorted) */
+        public TermId get(int i, int k) {
+            if (k < 0 || k >= count(i)) {
+                throw new IndexOutOfBoundsException("Target " + k + " of " + ids.get(i).getValue());
+            }
+            return TermId.of(target.decode(values[offsets[i] + k]));
+        }
+
+        public boolean isMissing(int i) {
+            return count(i) == 0;
+        }
+
+        public boolean isAmbiguous(int i) {
+            return count(i) > 1;
+        }
+
+        /** @return the indices of the ids with more than one target */
+        public int[] ambiguousIndices() {
+            int n = 0;
+            for (int i = 0; i < size(); i++) {
+                if (isAmbiguous(i)) n++;
+            }
+            int[] indices = new int[n];
+            n = 0;
+            for (int i = 0; i < size(); i++) {
+                if (isAmbiguous(i)) indices[n++] = i;
+            }
+            return indices;
+        }
+
+        /** @return the indices of the ids without a target */
+        public int[] missingIndices() {
+            int n = 0;
+            for (int i = 0; i < size(); i++) {
+                if (isMissing(i)) n++;
+            }
+            int[] indices = new int[n];
+            n = 0;
+            for (int i = 0; i < size(); i++) {
+                if (isMissing(i)) indices[n++] = i;
+            }
+            return indices;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import java.util.Optional;
+
+/**
+ * The disease id namespaces that {@link DiseaseIdMapper} maps between. The local part of every id is encoded as an
+ * int (e.g., OMIM:100100 as 100100 and UMLS:C0001234 as 1234), so the mappings can be stored in primitive arrays.
+ */
+public enum DiseaseNamespace {
+    MONDO("MONDO", "", 7),
+    OMIM("OMIM", "", 0),
+    ORPHANET("Orphanet", "", 0),
+    UMLS("UMLS", "C", 7);
+
+    private final String prefix;
+    /** Letter(s) that precede the number in the local id, e.g., C in UMLS CUIs. */
+    private final String localPrefix;
+    /** Number of digits the number is zero-padded to, or 0 if it is not padded. */
+    private final int digits;
+
+    DiseaseNamespace(String prefix, String localPrefix, int digits) {
+        this.prefix = prefix;
+        this.localPrefix = localPrefix;
+        this.digits = digits;
+    }
+
+    /** @return the prefix of the CURIEs in this namespace, e.g., Orphanet */
+    public String prefix() {
+        return prefix;
+    }
+
+    public static Optional<DiseaseNamespace> fromPrefix(String prefix) {
+        for (DiseaseNamespace ns : values()) {
+            if (ns.prefix.equals(prefix)) {
+                return Optional.of(ns);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param localId the part of the CURIE after the colon, e.g., 0001234 for MONDO:0001234
+     * @return the encoded id, or -1 if the local id does not have the form of an id in this namespace
+     */
+    int encode(String localId) {
+        if (!localId.startsWith(localPrefix)) {
+            return -1;
+        }
+        int start = localPrefix.length();
+        int n = localId.length() - start;
+        if (n < 1 || n > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < localId.length(); i++) {
+            char c = localId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = 10 * value + (c - '0');
+        }
+        return value;
+    }
+
+    /** @return the CURIE of an encoded id */
+    String decode(int value) {
+        String number = Integer.toString(value);
+        StringBuilder sb = new StringBuilder(prefix.length() + localPrefix.length() + Math.max(digits, number.length()) + 1);
+        sb.append(prefix).append(':').append(localPrefix);
+        for (int i = number.length(); i < digits; i++) {
+            sb.append('0');
+        }
+        return sb.append(number).toString();
+    }
+}
@@ -0,0 +1,155 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Translate a table of gene symbols and OMIM ids (two tab-separated columns) to Mondo in one streaming pass.
+ * The input is read in chunks of lines by the calling thread, the chunks are mapped in parallel by a pool of
+ * worker threads against the (immutable) {@link MondoFromOmimMapper}, and the results are written in input order.
+ * At most a fixed window of chunks is in flight at any time, so memory use does not depend on the size of the
+ * table. Lines that cannot be translated are written to a separate file together with the reason; this includes
+ * OMIM ids that are an xref of more than one Mondo term, which are listed with all of their Mondo terms rather
+ * than translated to an arbitrary one.
+ */
+public class DiseaseTranslator {
+    private final static Logger LOGGER = LoggerFactory.getLogger(DiseaseTranslator.class);
+    /** Number of chunks that may be queued or in progress per worker thread. */
+    private final static int WINDOW_PER_THREAD = 4;
+    private final static int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final MondoFromOmimMapper mapper;
+    private final int nThreads;
+    private final int chunkSize;
+
+    /**
+     * Counts of a translation run.
+     * @param ambiguous the number of missed lines whose OMIM id maps to more than one Mondo term
+     */
+    public record Stats(long mapped, long missed, long ambiguous) {
+    }
+
+    /** The output text of one chunk. */
+    private record TranslatedChunk(String mapped, String missed, int nMapped, int nMissed, int nAmbiguous) {
+    }
+
+    public DiseaseTranslator(MondoFromOmimMapper mapper, int nThreads) {
+        this(mapper, nThreads, DEFAULT_CHUNK_SIZE);
+    }
+
+    DiseaseTranslator(MondoFromOmimMapper mapper, int nThreads, int chunkSize) {
+        if (nThreads < 1) {
+            throw new PhenolRuntimeException("Number of threads must be at least 1 but was " + nThreads);
+        }
+        this.mapper = mapper;
+        this.nThreads = nThreads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param in lines with a gene symbol and an OMIM id
+     * @param out receives a line with gene symbol, OMIM id, Mondo id, Mondo label and Orphanet ids for each
+     *            translated line
+     * @param misses receives each line that could not be translated, followed by the reason (for ambiguous OMIM
+     *               ids, the Mondo terms)
+     */
+    public Stats translate(BufferedReader in, Writer out, Writer misses) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        Deque<Future<TranslatedChunk>> window = new ArrayDeque<>();
+        int maxInFlight = nThreads * WINDOW_PER_THREAD;
+        long mapped = 0;
+        long missed = 0;
+        long ambiguous = 0;
+        try {
+            List<String> chunk;
+            while (!(chunk = readChunk(in)).isEmpty()) {
+                if (window.size() >= maxInFlight) {
+                    TranslatedChunk done = drain(window.removeFirst(), out, misses);
+                    mapped += done.nMapped();
+                    missed += done.nMissed();
+                    ambiguous += done.nAmbiguous();
+                }
+                List<String> lines = chunk;
+                window.addLast(executor.submit(() -> translateChunk(lines)));
+            }
+            while (!window.isEmpty()) {
+                TranslatedChunk done = drain(window.removeFirst(), out, misses);
+                mapped += done.nMapped();
+                missed += done.nMissed();
+                ambiguous += done.nAmbiguous();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.info("Translated {} lines, {} could not be translated ({} ambiguous)", mapped, missed, ambiguous);
+        return new Stats(mapped, missed, ambiguous);
+    }
+
+    private List<String> readChunk(BufferedReader in) throws IOException {
+        List<String> lines = new ArrayList<>(chunkSize);
+        String line;
+        while (lines.size() < chunkSize && (line = in.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private TranslatedChunk translateChunk(List<String> lines) {
+        StringBuilder mapped = new StringBuilder();
+        StringBuilder missed = new StringBuilder();
+        int nMapped = 0;
+        int nMissed = 0;
+        int nAmbiguous = 0;
+        for (String line : lines) {
+            String[] fields = line.split("\t");
+            if (fields.length != 2) {
+                missed.append(line).append("\tmalformed line\n");
+                nMissed++;
+                continue;
+            }
+            List<TermId> mondoIds = mapper.mondoIds(fields[1]);
+            if (mondoIds.isEmpty()) {
+                missed.append(line).append("\tno Mondo term\n");
+                nMissed++;
+                continue;
+            } else if (mondoIds.size() > 1) {
+                missed.append(line).append("\tambiguous: ")
+                        .append(String.join(",", mondoIds.stream().map(TermId::getValue).toList()))
+                        .append('\n');
+                nMissed++;
+                nAmbiguous++;
+                continue;
+            }
+            List<String> items = mapper.getMappings(fields[0], fields[1], mondoIds.get(0));
+            mapped.append(String.join("\t", items)).append('\n');
+            nMapped++;
+        }
+        return new TranslatedChunk(mapped.toString(), missed.toString(), nMapped, nMissed, nAmbiguous);
+    }
+
+    private TranslatedChunk drain(Future<TranslatedChunk> future, Writer out, Writer misses) throws IOException {
+        TranslatedChunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PhenolRuntimeException("Interrupted while translating disease ids", e);
+        } catch (ExecutionException e) {
+            throw new PhenolRuntimeException("Could not translate disease ids: " + e.getCause().getMessage(), e.getCause());
+        }
+        out.write(chunk.mapped());
+        misses.write(chunk.missed());
+        return chunk;
+    }
+}
@@ -1,85 +1,61 @@
 package org.monarchinitiative.hpotools.analysis.mondo;
 
-import org.monarchinitiative.phenol.ontology.data.Dbxref;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
-import org.monarchinitiative.phenol.ontology.data.Term;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 
 import java.util.*;
 
+/**
+ * Maps an OMIM id to the Mondo terms that have it as an xref, for the rows of the translate command, and adds the
+ * Orphanet (ORDO) ids of the OMIM id. The mappings come from a {@link DiseaseIdMapper}, so an OMIM id that several
+ * Mondo terms claim yields all of them and the caller can report it as ambiguous.
+ */
 public class MondoFromOmimMapper {
 
+    private final MondoXrefIndex xrefIndex;
 
-    private final Ontology ontology;
-
-    private final Map<String, TermId> omimToMondoMap;
+    private final DiseaseIdMapper idMapper;
 
     public MondoFromOmimMapper(Ontology mondo) {
-        ontology = mondo;
-        omimToMondoMap = fromOmimIds();
+        this(MondoXrefIndex.of(mondo));
     }
 
-
     /**
-     * @param mondoId Mondo Term
-
-     * @return Omim term id corresponding to the MONDO id (if possible)
+     * @param xrefIndex the xrefs and labels of the Mondo terms, e.g., from a {@link MondoXrefCache}
      */
-    private Optional<TermId> getOmimIdIfPossible(TermId mondoId) {
-        if (! ontology.containsTerm(mondoId)) {
-            System.out.println("Obsolete");
-            return Optional.empty();
-        }
-        Optional<Term> opt = ontology.termForTermId(mondoId);
-        if (opt.isPresent()) {
-            Term term = opt.get();
-            Optional<Dbxref> dbxopt = term.getXrefs().stream()
-                    .filter(xr -> xr.getName().startsWith("OMIM:"))
-                    .findFirst();
-            if (dbxopt.isPresent()) {
-                Dbxref dbxref = dbxopt.get();
-                String name = dbxref.getName();
-                if (name.startsWith("OMIM:")) {
-                    return Optional.of(TermId.of(name));
-                }
-            }
-
-        }
-        return Optional.empty();
+    public MondoFromOmimMapper(MondoXrefIndex xrefIndex) {
+        this.xrefIndex = xrefIndex;
+        this.idMapper = DiseaseIdMapper.of(xrefIndex);
     }
 
-    private Map<String, TermId> fromOmimIds() {
-
-        Map<String, TermId> omimToMondoMap = new HashMap<>();
-        for (TermId mondoId : ontology.allTermIds()) {
-            if (mondoId.getPrefix().equals("MONDO")) {
-                Optional<TermId> opt = getOmimIdIfPossible(mondoId);
-                opt.ifPresent(termId -> omimToMondoMap.put(termId.getValue(), mondoId));
-            }
-
+    /**
+     * @param omimId an OMIM id such as OMIM:100100
+     * @return the Mondo terms with the OMIM id as an xref, sorted by id; more than one if the id is ambiguous, and
+     * none if it is unknown or not an OMIM id
+     */
+    public List<TermId> mondoIds(String omimId) {
+        if (!omimId.startsWith("OMIM:")) {
+            return List.of();
         }
-        return omimToMondoMap;
+        return idMapper.map(TermId.of(omimId), DiseaseNamespace.MONDO);
     }
 
+    /**
+     * @param mondoId one of the {@link #mondoIds(String) Mondo terms} of the OMIM id
+     * @return gene symbol, OMIM id, Mondo id, Mondo label and the Orphanet ids (comma-separated, empty if there
+     * are none)
+     */
+    public List<String> getMappings(String geneSymbol, String omimId, TermId mondoId) {
+        return List.of(geneSymbol, omimId, mondoId.getValue(), xrefIndex.label(mondoId).orElse(""), orphanetIds(omimId));
+    }
 
-   public List<String> getMappings(String geneSymbol, String omimId) {
-        List<String> items = new ArrayList<>();
-        if (omimToMondoMap.containsKey(omimId)) {
-            TermId mondoId = omimToMondoMap.get(omimId);
-            Optional<Term> opt = ontology.termForTermId(mondoId);
-            if (opt.isPresent()) {
-                Term term = opt.get();
-                String label = term.getName();
-                items.add(geneSymbol);
-                items.add(omimId);
-                items.add(mondoId.getValue());
-                items.add(label);
-                // TODO extract ORDO -- get Ordo if possible
-            }
-        } else {
-            System.err.println("Warning could not find "+ omimId);
+    /** @return the Orphanet ids that the OMIM id maps to via Mondo, comma-separated */
+    private String orphanetIds(String omimId) {
+        List<TermId> orphanetIds = idMapper.map(TermId.of(omimId), DiseaseNamespace.ORPHANET);
+        StringJoiner joiner = new StringJoiner(",");
+        for (TermId tid : orphanetIds) {
+            joiner.add(tid.getValue());
         }
-
-        return items;
+        return joiner.toString();
     }
 }
@@ -0,0 +1,183 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import org.monarchinitiative.hpotools.analysis.FileHash;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Compact binary cache of the {@link MondoXrefIndex} of a mondo.json release, i.e., the labels and xrefs of the
+ * Mondo terms, sorted by Mondo id. Commands that only map OMIM or Orphanet ids to Mondo ids can read the cache
+ * instead of loading the whole ontology.
+ * <p>
+ * The cache is stored next to the JSON file ({@code mondo.json.xrefs}) and records the Mondo release version and
+ * the size, modification time and SHA-256 hash of the file it was built from; like an
+ * {@link org.monarchinitiative.hpotools.analysis.OntologySnapshot ontology snapshot}, it is only used while it
+ * matches the file.
+ */
+public class MondoXrefCache {
+    private final static Logger LOGGER = LoggerFactory.getLogger(MondoXrefCache.class);
+    /** "MXRF" */
+    private final static int MAGIC = 0x4D585246;
+    private final static int FORMAT_VERSION = 1;
+    private final static String SUFFIX = ".xrefs";
+    /** Marks a missing label. */
+    private final static int NONE = -1;
+
+    private MondoXrefCache() {
+    }
+
+    /**
+     * Read the xref index from the cache next to the JSON file if it is fresh, otherwise index the ontology and
+     * (try to) write a new cache.
+     * @param jsonFile mondo.json
+     * @param mondo supplies the ontology loaded from {@code jsonFile}; only called if the cache is missing or stale
+     */
+    public static MondoXrefIndex load(File jsonFile, Supplier<Ontology> mondo) {
+        Path source = jsonFile.toPath();
+        Path cache = cachePath(source);
+        Optional<MondoXrefIndex> opt = read(cache, source);
+        if (opt.isPresent()) {
+            return opt.get();
+        }
+        MondoXrefIndex index = MondoXrefIndex.of(mondo.get());
+        try {
+            write(index, cache, source);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write Mondo xref cache {}: {}", cache, e.getMessage());
+        }
+        return index;
+    }
+
+    public static Path cachePath(Path source) {
+        return source.resolveSibling(source.getFileName() + SUFFIX);
+    }
+
+    /**
+     * @param cache cache file
+     * @param source the mondo.json file that the cache must have been built from
+     * @return the xref index, or an empty Optional if the cache does not exist, is stale or cannot be read
+     */
+    public static Optional<MondoXrefIndex> read(Path cache, Path source) {
+        if (!Files.isRegularFile(cache)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring Mondo xref cache {} with unknown format", cache);
+                return Optional.empty();
+            }
+            long size = buffer.getLong();
+            long lastModified = buffer.getLong();
+            String sha256 = string(buffer);
+            if (!FileHash.isUnchanged(source, size, lastModified, sha256)) {
+                LOGGER.info("Mondo xref cache {} is out of date", cache);
+                return Optional.empty();
+            }
+            String version = string(buffer);
+            // every count and length is checked, so that a damaged cache cannot cause huge allocations;
+            // a term takes at least 12 bytes (id, label and number of xrefs), an xref at least 4
+            int nTerms = count(buffer, 12);
+            MondoXrefIndex.Builder builder = new MondoXrefIndex.Builder();
+            for (int i = 0; i < nTerms; i++) {
+                TermId mondoId = TermId.of(string(buffer));
+                String label = string(buffer);
+                int nXrefs = count(buffer, 4);
+                List<String> xrefs = new ArrayList<>(nXrefs);
+                for (int k = 0; k < nXrefs; k++) {
+                    xrefs.add(string(buffer));
+                }
+                builder.add(mondoId, label, xrefs);
+            }
+            LOGGER.info("Loaded Mondo xrefs (release {}) from cache {}", version, cache);
+            return Optional.of(builder.build(version));
+        } catch (IOException | RuntimeException e) {
+            // a damaged cache can fail in many ways (end of file, invalid Mondo id, invalid count, ...)
+            LOGGER.warn("Could not read Mondo xref cache {}: {}", cache, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Write the cache of an index that was built from {@code source}. The file is written to a temporary file
+     * first and then moved into place, so concurrent readers never see a partial cache.
+     */
+    public static void write(MondoXrefIndex index, Path cache, Path source) throws IOException {
+        Path tmp = cache.resolveSibling(cache.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        List<String> prefixes = new ArrayList<>(index.prefixes());
+        prefixes.sort(null);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(Files.size(source));
+            out.writeLong(Files.getLastModifiedTime(source).toMillis());
+            string(out, FileHash.sha256(source));
+            string(out, index.version());
+            out.writeInt(index.mondoIds().size());
+            List<String> xrefs = new ArrayList<>();
+            for (TermId mondoId : index.mondoIds()) {
+                string(out, mondoId.getValue());
+                string(out, index.label(mondoId).orElse(null));
+                xrefs.clear();
+                for (String prefix : prefixes) {
+                    xrefs.addAll(index.xrefs(mondoId, prefix));
+                }
+                out.writeInt(xrefs.size());
+                for (String xref : xrefs) {
+                    string(out, xref);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Wrote Mondo xref cache {}", cache);
+    }
+
+    private static void string(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(NONE);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /** Read a count of items that take at least {@code minItemBytes} each, which must fit into the rest of the buffer. */
+    private static int count(ByteBuffer buffer, int minItemBytes) {
+        int n = buffer.getInt();
+        if (n < 0 || n > buffer.remaining() / minItemBytes) {
+            throw new PhenolRuntimeException("Invalid count " + n);
+        }
+        return n;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NONE) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new PhenolRuntimeException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
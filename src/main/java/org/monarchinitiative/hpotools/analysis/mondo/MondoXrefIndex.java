@@ -0,0 +1,186 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import org.monarchinitiative.phenol.ontology.data.Dbxref;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.Term;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * The database cross-references (OMIM, OMIMPS, Orphanet, UMLS, ...) of the Mondo terms, indexed in both directions
+ * by the prefix of the xref, together with the labels of the Mondo terms. The index is built in a single pass over
+ * the terms of mondo.json (or read from a {@link MondoXrefCache}), is immutable and can be shared between threads
+ * and commands.
+ * <p>
+ * Both directions are multimaps: a Mondo term can have several xrefs with the same prefix, and an xref can occur in
+ * several Mondo terms. The xrefs of a term are kept in the order of the ontology file, so the first OMIM xref of a
+ * term is still available for the components that only use one; the terms of an xref are sorted by Mondo id.
+ */
+public class MondoXrefIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MondoXrefIndex.class);
+
+    /**
+     * The xrefs with one prefix: xref id to Mondo terms, Mondo term to xref ids, and the Mondo terms with such an
+     * xref sorted by id.
+     */
+    private record PrefixMap(Map<String, List<TermId>> xrefToTerms, Map<TermId, List<String>> termToXrefs,
+                             List<TermId> terms) {
+    }
+
+    private final String version;
+    /** All non-obsolete Mondo terms, sorted by id. */
+    private final List<TermId> mondoIds;
+    private final Map<TermId, String> labels;
+    private final Map<String, PrefixMap> prefixMaps;
+
+    private MondoXrefIndex(String version, List<TermId> mondoIds, Map<TermId, String> labels,
+                           Map<String, PrefixMap> prefixMaps) {
+        this.version = version;
+        this.mondoIds = mondoIds;
+        this.labels = labels;
+        this.prefixMaps = prefixMaps;
+    }
+
+    /**
+     * Index the xrefs of all non-obsolete MONDO terms of the ontology (terms of other ontologies that are imported
+     * into mondo.json are skipped).
+     */
+    public static MondoXrefIndex of(Ontology mondo) {
+        List<TermId> mondoIds = new ArrayList<>();
+        for (TermId tid : mondo.nonObsoleteTermIds()) {
+            if (tid.getPrefix().equals("MONDO")) {
+                mondoIds.add(tid);
+            }
+        }
+        mondoIds.sort(Comparator.comparing(TermId::getValue));
+        Builder builder = new Builder();
+        for (TermId mondoId : mondoIds) {
+            Optional<Term> opt = mondo.termForTermId(mondoId);
+            if (opt.isEmpty()) continue;
+            List<String> xrefs = new ArrayList<>();
+            for (Dbxref dbxref : opt.get().getXrefs()) {
+                xrefs.add(dbxref.getName());
+            }
+            builder.add(mondoId, opt.get().getName(), xrefs);
+        }
+        return builder.build(mondo.version().orElse("n/a"));
+    }
+
+    /** Collects the terms in the order of their ids, e.g., from an ontology or a cache file. */
+    static final class Builder {
+        private final List<TermId> mondoIds = new ArrayList<>();
+        private final Map<TermId, String> labels = new HashMap<>();
+        private final Map<String, Map<String, List<TermId>>> xrefToTerms = new HashMap<>();
+        private final Map<String, Map<TermId, List<String>>> termToXrefs = new HashMap<>();
+        private final Map<String, List<TermId>> prefixTerms = new HashMap<>();
+
+        /**
+         * @param mondoId a Mondo term, with a larger id than the terms that were added before
+         * @param xrefs all xrefs of the term; xrefs that are not CURIEs are skipped
+         */
+        void add(TermId mondoId, String label, List<String> xrefs) {
+            mondoIds.add(mondoId);
+            if (label != null) {
+                labels.put(mondoId, label);
+            }
+            for (String xref : xrefs) {
+                int colon = xref.indexOf(':');
+                if (colon <= 0) continue; // not a CURIE
+                String prefix = xref.substring(0, colon);
+                List<String> termXrefs = termToXrefs.computeIfAbsent(prefix, p -> new HashMap<>())
+                        .computeIfAbsent(mondoId, t -> new ArrayList<>());
+                if (termXrefs.contains(xref)) continue;
+                if (termXrefs.isEmpty()) {
+                    prefixTerms.computeIfAbsent(prefix, p -> new ArrayList<>()).add(mondoId);
+                }
+                termXrefs.add(xref);
+                // terms are added in order of their ids, so the lists are sorted
+                xrefToTerms.computeIfAbsent(prefix, p -> new HashMap<>())
+                        .computeIfAbsent(xref, x -> new ArrayList<>())
+                        .add(mondoId);
+            }
+        }
+
+        MondoXrefIndex build(String version) {
+            Map<String, PrefixMap> prefixMaps = new HashMap<>();
+            for (String prefix : xrefToTerms.keySet()) {
+                Map<String, List<TermId>> x2t = new HashMap<>();
+                xrefToTerms.get(prefix).forEach((xref, terms) -> x2t.put(xref, List.copyOf(terms)));
+                Map<TermId, List<String>> t2x = new HashMap<>();
+                termToXrefs.get(prefix).forEach((term, xrefs) -> t2x.put(term, List.copyOf(xrefs)));
+                prefixMaps.put(prefix, new PrefixMap(Map.copyOf(x2t), Map.copyOf(t2x),
+                        List.copyOf(prefixTerms.get(prefix))));
+            }
+            LOGGER.info("Indexed the xrefs of {} Mondo terms ({} prefixes)", mondoIds.size(), prefixMaps.size());
+            return new MondoXrefIndex(version, List.copyOf(mondoIds), Map.copyOf(labels), Map.copyOf(prefixMaps));
+        }
+    }
+
+    /** @return the version of the Mondo release the index was built from */
+    public String version() {
+        return version;
+    }
+
+    /** @return all non-obsolete Mondo terms, sorted by id */
+    public List<TermId> mondoIds() {
+        return mondoIds;
+    }
+
+    /** @return the label of the Mondo term, if it is a non-obsolete term with a label */
+    public Optional<String> label(TermId mondoId) {
+        return Optional.ofNullable(labels.get(mondoId));
+    }
+
+    /** @return the prefixes of all xrefs, e.g., OMIM, OMIMPS, Orphanet, UMLS */
+    public Set<String> prefixes() {
+        return prefixMaps.keySet();
+    }
+
+    /** @return the number of distinct xrefs with this prefix */
+    public int xrefCount(String prefix) {
+        PrefixMap map = prefixMaps.get(prefix);
+        return map == null ? 0 : map.xrefToTerms().size();
+    }
+
+    /**
+     * @param xref an xref such as OMIM:100100
+     * @return the Mondo terms with this xref, sorted by id (empty if there are none)
+     */
+    public List<TermId> mondoIdsForXref(String xref) {
+        int colon = xref.indexOf(':');
+        PrefixMap map = colon <= 0 ? null : prefixMaps.get(xref.substring(0, colon));
+        return map == null ? List.of() : map.xrefToTerms().getOrDefault(xref, List.of());
+    }
+
+    public List<TermId> mondoIdsForXref(TermId xref) {
+        return mondoIdsForXref(xref.getValue());
+    }
+
+    /**
+     * @return the xrefs with the prefix of the Mondo term, in the order of the ontology file (empty if there are
+     * none)
+     */
+    public List<String> xrefs(TermId mondoId, String prefix) {
+        PrefixMap map = prefixMaps.get(prefix);
+        return map == null ? List.of() : map.termToXrefs().getOrDefault(mondoId, List.of());
+    }
+
+    /** @return the first xref with the prefix of the Mondo term, if any */
+    public Optional<String> firstXref(TermId mondoId, String prefix) {
+        List<String> xrefs = xrefs(mondoId, prefix);
+        return xrefs.isEmpty() ? Optional.empty() : Optional.of(xrefs.get(0));
+    }
+
+    public boolean hasXref(TermId mondoId, String prefix) {
+        return ! xrefs(mondoId, prefix).isEmpty();
+    }
+
+    /** @return the Mondo terms with at least one xref with the prefix, sorted by id */
+    public List<TermId> mondoIdsWithPrefix(String prefix) {
+        PrefixMap map = prefixMaps.get(prefix);
+        return map == null ? List.of() : map.terms();
+    }
+}
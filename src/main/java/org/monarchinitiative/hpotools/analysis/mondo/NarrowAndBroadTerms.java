@@ -1,8 +1,8 @@
 package org.monarchinitiative.hpotools.analysis.mondo;
 
 import org.monarchinitiative.hpotools.analysis.OntologyTerm;
+import org.monarchinitiative.hpotools.analysis.graph.CsrOntologyGraph;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
-import org.monarchinitiative.phenol.ontology.data.Dbxref;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.Term;
 import org.monarchinitiative.phenol.ontology.data.TermId;
@@ -10,154 +10,103 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class NarrowAndBroadTerms {
     private static final Logger LOGGER = LoggerFactory.getLogger(NarrowAndBroadTerms.class);
     private final Ontology mondo;
+    /** The is-a graph of Mondo, with int indices for fast traversal. */
+    private final CsrOntologyGraph graph;
     /**
      * These are terms that encompass a laerge swath of hereditary diseases and
      * can serve as broad terms in CLintLR simulations, e.g., skeletal dysplasa.
      */
     private final Map<TermId, String> broadTerms ;
     /**
-     * The key is "any" Mondo term that is a child of a narrow term. The value is
-     * an OntologyTerm corresponding to the OMIMPS "narrow term"
+     * Index (in {@link #graph}) of the OMIMPS "narrow term" that is a parent of each Mondo term, or -1.
      */
-    private final Map<TermId, OntologyTerm> mondoToNarrowParentMap = new HashMap<>();
+    private final int[] narrowParent;
+    /**
+     * Index of the nearest broad ancestor-or-self of each Mondo term, or -1 if there is none.
+     */
+    private final int[] nearestBroad;
     /** Key: An OMIM term Id. Value: the corresponding MONDO term id */
     private final Map<TermId, TermId> omimToMondoMap = new HashMap<>();
-    private final Map<TermId, TermId> narrowToBroadMap = new HashMap<>();
 
     public NarrowAndBroadTerms(Ontology mondo) {
-        this.mondo = mondo;
-        broadTerms = new HashMap<>();
-        initBroadTerms();
-        initNarrowTerms();
-        initNarrowToBroadMap();
-    }
-
-    /**
-     * Ceate the map narrowToBroadMap with key: a Narrow Parent (OMIMPS) and value, the Broad
-     * ancestor of the narrow parent (a MONDO class that is listed in broadTerms).
-     */
-    private void initNarrowToBroadMap() {
-        Set<TermId> narrowTerms = this.mondoToNarrowParentMap
-                .values().stream()
-                .map(OntologyTerm::id)
-                .collect(Collectors.toSet());
-        for (TermId narrowTid : narrowTerms) {
-            Stack<TermId> parentStack = new Stack<>();
-            parentStack.push(narrowTid);
-            while (!parentStack.isEmpty()) {
-                TermId tid = parentStack.pop();
-                if (broadTerms.containsKey(tid)) {
-                    narrowToBroadMap.put(narrowTid, tid);
-                    break; // we have found the most specific broad term for this narrow term
-                }
-                Set<TermId> parents = mondo.graph().getParents(tid);
-                for (TermId parentTid : parents) {
-                    if (parentTid.getPrefix().equals("MONDO")) {
-                        parentStack.push(parentTid);
-                    }
-                }
-            }
-            /*for (TermId ancestorTid : mondoAncs) {
-                if (broadTerms.containsKey(ancestorTid)) {
-                    narrowToBroadMap.put(narrowTid, ancestorTid);
-                    mondo.graph().
-                    break; // leave the inner for loop
-                    // we have found an ancestor broiad term
-                    // it should be very rare that there are more than one
-                    // because of the way we construct the maps in this class
-                    // if there are don't overworry, it is for testing and there is not one definition of what
-                    // an ideal broad term is!
-                }
-            }*/
-        }
-        LOGGER.info("NarrowToBroadMap: {} items", narrowToBroadMap.size());
+        this(mondo, MondoXrefIndex.of(mondo));
     }
 
     /**
-     * These are the narrow terms for ClintLR simulations -- basically, they
-     * are terms that correspond to an OMIMPS (phenotypic series). The key is
-     * "any" Mondo term that is a child of a narrow term. The value is
-     * an OntologyTerm corresponding to the OMIMPS "narrow term"
+     * @param xrefIndex the xrefs of {@code mondo}, if they were already indexed for another component
      */
-    private void initNarrowTerms() {
-        for (TermId mondoId: mondo.nonObsoleteTermIds()) {
-            if (! mondoId.getPrefix().equals("MONDO")) continue; // skip other ontology terms
-            Optional<Term> narrowParent = getNarrowParentWithOmimPs(mondoId, mondo);
-            if (narrowParent.isPresent()) {
-                Term narrow = narrowParent.get();
-                TermId nrwId = narrow.id();
-                String nrwLabel = narrow.getName();
-                mondoToNarrowParentMap.put(mondoId, new OntologyTerm(nrwId, nrwLabel));
-            }
-            Optional<TermId> optOmim = getOmimIdIfPossible(mondoId, mondo);
-            if (optOmim.isPresent()) {
-                TermId omim = optOmim.get();
-                omimToMondoMap.put(omim, mondoId);
-            }
-        }
-        LOGGER.info("We got {} to narrow candidates.",  mondoToNarrowParentMap.size());
-        LOGGER.info("We got {} OMIM to MONDO mappings.",  omimToMondoMap.size());
+    public NarrowAndBroadTerms(Ontology mondo, MondoXrefIndex xrefIndex) {
+        this.mondo = mondo;
+        this.graph = CsrOntologyGraph.of(mondo);
+        broadTerms = new HashMap<>();
+        initBroadTerms();
+        this.narrowParent = new int[graph.size()];
+        this.nearestBroad = new int[graph.size()];
+        initNarrowAndBroad(xrefIndex);
     }
 
-
     /**
-     * @param mondoId Mondo Term
-     * @param mondo ontology
-     * @return Omim term id corresponding to the MONDO id (if possible)
+     * Resolve the narrow parent and the nearest broad ancestor of every Mondo term in one pass over the graph in
+     * topological order, i.e., every parent is resolved before its children, and the result for a term is
+     * derived from the results of its Mondo parents instead of walking up the graph again for every term.
+     * <p>
+     * The nearest broad ancestor of a broad term is the term itself; otherwise it is the nearest broad ancestor of
+     * the parents with the smallest number of is-a steps. Ties are broken by the smallest Mondo id, as is the
+     * choice among several OMIMPS parents, so the result does not depend on the order of the relationships in
+     * the ontology file.
      */
-    private Optional<TermId> getOmimIdIfPossible(TermId mondoId, Ontology mondo) {
-        if (! mondo.containsTerm(mondoId)) {
-            System.out.println("Obsolete");
-            return Optional.empty();
+    private void initNarrowAndBroad(MondoXrefIndex xrefIndex) {
+        int n = graph.size();
+        boolean[] isMondo = new boolean[n];
+        boolean[] isOmimPs = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            TermId tid = graph.termId(i);
+            if (! tid.getPrefix().equals("MONDO")) continue; // skip other ontology terms
+            isMondo[i] = true;
+            isOmimPs[i] = xrefIndex.hasXref(tid, "OMIMPS");
+            // the first OMIM xref of a term is its OMIM id
+            xrefIndex.firstXref(tid, "OMIM").ifPresent(omim -> omimToMondoMap.put(TermId.of(omim), tid));
         }
-        Optional<Term> opt = mondo.termForTermId(mondoId);
-        if (opt.isPresent()) {
-            Term term = opt.get();
-            Optional<Dbxref> dbxopt = term.getXrefs().stream()
-                    .filter(xr -> xr.getName().startsWith("OMIM:"))
-                    .findFirst();
-            if (dbxopt.isPresent()) {
-                Dbxref dbxref = dbxopt.get();
-                String name = dbxref.getName();
-                if (name.startsWith("OMIM:")) {
-                    return Optional.of(TermId.of(name));
-                }
+        boolean[] isBroad = new boolean[n];
+        for (TermId broadTid : broadTerms.keySet()) {
+            int index = graph.indexOf(broadTid);
+            if (index >= 0) {
+                isBroad[index] = true;
             }
-
-        }
-        return Optional.empty();
-    }
-
-    /**
-     * Get the parent of this term IF that parent is a Mondo term with a relevant
-     * OMIM PS
-     * @param mondoId
-     * @param mondo
-     * @return Mondo term that is the narrow parent of the argument if we can find an OMIMPS in the parent
-     */
-    private Optional<Term> getNarrowParentWithOmimPs(TermId mondoId, Ontology mondo) {
-        if (! mondo.containsTerm(mondoId)) {
-            System.out.println("Obsolete term");
-            return Optional.empty();
         }
-        for (TermId parentId: mondo.graph().getParents(mondoId)) {
-            Optional<Term> opt = mondo.termForTermId(parentId);
-            if (opt.isPresent()) {
-                Term parentTerm = opt.get();
-                if (! parentTerm.id().getPrefix().equals("MONDO")) continue;
-                Optional<Dbxref> dbxopt = parentTerm.getXrefs().stream().filter(xr -> xr.getName().startsWith("OMIMPS")).findFirst();
-                if (dbxopt.isPresent()) {
-                    // The parent term is an OMIMPS
-                    return Optional.of(parentTerm);
+        Arrays.fill(narrowParent, -1);
+        Arrays.fill(nearestBroad, -1);
+        int[] broadDistance = new int[n];
+        int narrowCount = 0;
+        for (int node : graph.topologicalOrder()) {
+            if (! isMondo[node]) continue;
+            int bestBroad = isBroad[node] ? node : -1;
+            int bestDistance = 0;
+            for (int k = 0; k < graph.parentCount(node); k++) {
+                // parents are sorted by index, so the first OMIMPS parent has the smallest id
+                int parent = graph.parent(node, k);
+                if (! isMondo[parent]) continue;
+                if (isOmimPs[parent] && narrowParent[node] < 0) {
+                    narrowParent[node] = parent;
+                    narrowCount++;
+                }
+                int broad = nearestBroad[parent];
+                if (isBroad[node] || broad < 0) continue;
+                int distance = broadDistance[parent] + 1;
+                if (bestBroad < 0 || distance < bestDistance || (distance == bestDistance && broad < bestBroad)) {
+                    bestBroad = broad;
+                    bestDistance = distance;
                 }
             }
+            nearestBroad[node] = bestBroad;
+            broadDistance[node] = bestDistance;
         }
-        return Optional.empty();
+        LOGGER.info("We got {} to narrow candidates.", narrowCount);
+        LOGGER.info("We got {} OMIM to MONDO mappings.", omimToMondoMap.size());
     }
 
     public void initBroadTerms() {
@@ -267,11 +216,17 @@ public class NarrowAndBroadTerms {
     }
 
     public boolean containsNarrowTermId(TermId mondoId) {
-        return mondoToNarrowParentMap.containsKey(mondoId);
+        int index = graph.indexOf(mondoId);
+        return index >= 0 && narrowParent[index] >= 0;
     }
 
     public OntologyTerm getNarrowTermId(TermId mondoId) {
-        return this.mondoToNarrowParentMap.get(mondoId);
+        int index = graph.indexOf(mondoId);
+        if (index < 0 || narrowParent[index] < 0) {
+            return null;
+        }
+        TermId narrowId = graph.termId(narrowParent[index]);
+        return new OntologyTerm(narrowId, getMondoLabel(narrowId));
     }
 
     /**
@@ -285,11 +240,15 @@ public class NarrowAndBroadTerms {
         return opt.get().getName();
     }
 
+    /** @return true if the Mondo term (usually a narrow term) is a broad term or has a broad ancestor */
     public boolean containsNarrowToBroad(TermId mondoId) {
-        return narrowToBroadMap.containsKey(mondoId);
+        int index = graph.indexOf(mondoId);
+        return index >= 0 && nearestBroad[index] >= 0;
     }
 
+    /** @return the nearest broad ancestor-or-self of the Mondo term (usually a narrow term), or null */
     public TermId getBroadForNarrow(TermId mondoId) {
-        return narrowToBroadMap.get(mondoId);
+        int index = graph.indexOf(mondoId);
+        return index < 0 || nearestBroad[index] < 0 ? null : graph.termId(nearestBroad[index]);
     }
 }
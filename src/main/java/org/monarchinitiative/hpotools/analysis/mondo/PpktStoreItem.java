@@ -33,9 +33,7 @@ public record PpktStoreItem(
             }
             return Optional.of(new PpktStoreItem(diseaseLabel, diseaseId, patientId, gene, PMID, cohort, filename));
         } catch (Exception e) {
-            System.err.println("Could not parse " + line);
-            System.exit(1);
+            throw new PhenolRuntimeException("Could not parse " + line, e);
         }
-        return Optional.empty();
     }
 }
@@ -1,18 +1,24 @@
 package org.monarchinitiative.hpotools.analysis.simhpo;
 
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public abstract class AbstractProportionalSampler<E>{
     protected List<E> elements;
     protected double[] probabilities;
     protected double[] cumulativeProbabilities;
-    protected final Random random;
+    protected final RandomGenerator random;
+    /** The elements passed to the constructor; indices returned by {@link #sampleIndex()} refer to this list. */
+    protected final List<E> initialElements;
+    /** The probabilities passed to the constructor, used by {@link #reset()}. */
+    protected final double[] initialProbabilities;
 
-    public AbstractProportionalSampler(List<E> elements, double[] probabilities, Random random) {
+    public AbstractProportionalSampler(List<E> elements, double[] probabilities, RandomGenerator random) {
         this.elements = elements;
         this.probabilities = probabilities;
         this.random = random;
+        this.initialElements = elements;
+        this.initialProbabilities = probabilities.clone();
         this.cumulativeProbabilities = cumulativeProbabilities();
     }
 
@@ -38,6 +44,48 @@ public abstract class AbstractProportionalSampler<E>{
         return normalized;
     }
 
+    /**
+     * Draw a single element and return its index rather than the element itself.
+     * @return index of the sampled element in the list of elements passed to the constructor
+     */
+    public abstract int sampleIndex();
+
+    /**
+     * Draw {@code n} elements and write their indices into a caller-owned buffer, so that
+     * repeated draws do not need to allocate.
+     * @param n number of elements to draw
+     * @param out buffer of length at least {@code n}; positions from {@code n} on are left untouched
+     * @return the number of indices written, i.e., {@code n}
+     */
+    public int sampleIndices(int n, int[] out) {
+        if (n < 0) {
+            throw new IllegalArgumentException("The number of samples must be non-negative.");
+        } else if (n > out.length) {
+            throw new IllegalArgumentException("The output buffer (" + out.length
+                    + ") is too small for " + n + " samples.");
+        }
+        for (int i = 0; i < n; i++) {
+            out[i] = sampleIndex();
+        }
+        return n;
+    }
+
+    /**
+     * Restore the sampler to the state it had after construction, so that one prepared instance can
+     * serve many rounds of draws. This does nothing for samplers that draw with replacement.
+     */
+    public void reset() {
+        // stateless by default
+    }
+
+    /**
+     * @param index an index as returned by {@link #sampleIndex()}
+     * @return the corresponding element
+     */
+    public E elementAt(int index) {
+        return initialElements.get(index);
+    }
+
     /**
      * Returns a copy of the elements that can be sampled.
      * @return The elements that can be sampled.
@@ -0,0 +1,121 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Proportional sampler (with replacement) based on Vose's alias method. Setting up the alias table
+ * takes O(n) time, after which each draw takes O(1) time and does not allocate.
+ * See Vose MD (1991) A linear algorithm for generating random numbers with a given distribution.
+ * IEEE Trans Softw Eng 17(9):972-975.
+ * @param <E> type of the elements to be sampled
+ */
+public class AliasMethodSampler<E> extends AbstractProportionalSampler<E> implements IProportionalSampler<E> {
+    /** Probability of keeping column i (rather than jumping to its alias). */
+    private final double[] prob;
+    /** Alias of column i. */
+    private final int[] alias;
+
+    public AliasMethodSampler(List<E> elements, double[] probabilities, RandomGenerator random) {
+        super(elements, probabilities, random);
+        if (elements.size() != probabilities.length) {
+            throw new IllegalArgumentException("The number of elements (" + elements.size()
+                    + ") does not match the number of probabilities (" + probabilities.length + ").");
+        }
+        double sum = 0;
+        for (double p : probabilities) {
+            if (!(p >= 0) || Double.isInfinite(p)) {
+                throw new IllegalArgumentException("Probabilities must be finite and non-negative but got " + p);
+            }
+            sum += p;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("At least one probability must be positive.");
+        }
+        int n = probabilities.length;
+        this.prob = new double[n];
+        this.alias = new int[n];
+        buildAliasTable(normalize(probabilities));
+    }
+
+    /**
+     * Fill the {@link #prob} and {@link #alias} tables. We use two int arrays as work lists for the
+     * small (scaled probability below 1) and large columns rather than boxed deques.
+     * @param normalized probabilities that sum to one
+     */
+    private void buildAliasTable(double[] normalized) {
+        buildAliasTable(normalized, 0, normalized.length, prob, alias);
+    }
+
+    /**
+     * Build an alias table for the probabilities {@code normalized[from..from+n)} and write it to
+     * {@code prob[from..from+n)} and {@code alias[from..from+n)}. The alias entries are relative to {@code from},
+     * which lets several tables be packed into the same arrays (see {@link DiseaseModelStore}).
+     * @param normalized probabilities that sum to one within the range
+     */
+    static void buildAliasTable(double[] normalized, int from, int n, double[] prob, int[] alias) {
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int nSmall = 0;
+        int nLarge = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = normalized[from + i] * n;
+            if (scaled[i] < 1.0) {
+                small[nSmall++] = i;
+            } else {
+                large[nLarge++] = i;
+            }
+        }
+        while (nSmall > 0 && nLarge > 0) {
+            int s = small[--nSmall];
+            int l = large[--nLarge];
+            prob[from + s] = scaled[s];
+            alias[from + s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            if (scaled[l] < 1.0) {
+                small[nSmall++] = l;
+            } else {
+                large[nLarge++] = l;
+            }
+        }
+        // Whatever remains has (up to rounding error) a scaled probability of one
+        while (nLarge > 0) {
+            int l = large[--nLarge];
+            prob[from + l] = 1.0;
+            alias[from + l] = l;
+        }
+        while (nSmall > 0) {
+            int s = small[--nSmall];
+            prob[from + s] = 1.0;
+            alias[from + s] = s;
+        }
+    }
+
+    /**
+     * Draw the index of an element in O(1) time without allocating.
+     * @return index into {@link #getElements()} of the sampled element
+     */
+    @Override
+    public int sampleIndex() {
+        int column = random.nextInt(prob.length);
+        return random.nextDouble() < prob[column] ? column : alias[column];
+    }
+
+    @Override
+    public E sample() {
+        return elements.get(sampleIndex());
+    }
+
+    @Override
+    public List<E> sample(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("The number of samples must be non-negative.");
+        }
+        List<E> selectedElements = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            selectedElements.add(sample());
+        }
+        return selectedElements;
+    }
+}
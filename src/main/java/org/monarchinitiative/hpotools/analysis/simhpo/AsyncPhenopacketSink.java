@@ -0,0 +1,115 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decouples writing from generation: {@link #write(Phenopacket)} only enqueues the phenopacket, and a dedicated
+ * writer thread passes it on to the wrapped sink. The queue is bounded, so a slow disk applies back pressure to
+ * the generator instead of letting memory grow.
+ */
+public class AsyncPhenopacketSink implements PhenopacketSink {
+    /** Marks the end of the stream; compared by identity. */
+    private final static Phenopacket END_OF_STREAM = Phenopacket.getDefaultInstance();
+
+    /** How long to wait for space in the queue before checking again that the writer thread is alive. */
+    private final static long POLL_MILLIS = 100;
+
+    private final PhenopacketSink delegate;
+    private final BlockingQueue<Phenopacket> queue;
+    private final Thread writerThread;
+    /** The exception that stopped the writer thread, if any. */
+    private volatile Throwable failure = null;
+
+    public AsyncPhenopacketSink(PhenopacketSink delegate, int capacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::drain, "phenopacket-writer");
+        this.writerThread.start();
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Phenopacket phenopacket = queue.take();
+                if (phenopacket == END_OF_STREAM) {
+                    break;
+                }
+                delegate.write(phenopacket);
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            failure = e;
+            // keep taking from the queue so that the producer does not block forever
+            drainAfterFailure();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainAfterFailure() {
+        try {
+            while (queue.take() != END_OF_STREAM) {
+                // discard
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Put the phenopacket into the queue, waiting for space as long as the writer thread is alive.
+     * @return false if the writer thread has stopped, so the phenopacket will never be taken
+     */
+    private boolean enqueue(Phenopacket phenopacket) throws InterruptedException {
+        while (!queue.offer(phenopacket, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!writerThread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void throwIfFailed() throws IOException {
+        Throwable t = failure;
+        if (t instanceof IOException e) {
+            throw e;
+        } else if (t != null) {
+            throw new IOException("Could not write phenopackets: " + t.getMessage(), t);
+        }
+    }
+
+    @Override
+    public void write(Phenopacket phenopacket) throws IOException {
+        throwIfFailed();
+        try {
+            if (!enqueue(phenopacket)) {
+                throwIfFailed();
+                throw new IOException("The phenopacket writer thread has stopped");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing phenopacket " + phenopacket.getId());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // if the writer thread has died, there is nobody to wait for
+            if (enqueue(END_OF_STREAM)) {
+                writerThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the phenopacket writer");
+        } finally {
+            delegate.close();
+        }
+        throwIfFailed();
+    }
+}
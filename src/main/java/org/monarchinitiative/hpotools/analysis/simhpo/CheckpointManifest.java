@@ -0,0 +1,74 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Records which parts of a (sharded) simulation have been written completely, so that an interrupted run can be
+ * resumed. The first line holds a fingerprint of the run parameters; each further line records one completed
+ * part as {@code part<TAB>index<TAB>number of phenopackets}. A line is only appended after the part has been
+ * moved to its final location, so every recorded part is complete.
+ */
+public class CheckpointManifest {
+    private final static Logger LOGGER = LoggerFactory.getLogger(CheckpointManifest.class);
+    private final static String HEADER_PREFIX = "#hpotools-simhpo\t";
+    private final static String PART = "part";
+
+    private final Path path;
+    private final BitSet completed;
+
+    private CheckpointManifest(Path path, BitSet completed) {
+        this.path = path;
+        this.completed = completed;
+    }
+
+    /**
+     * Open the manifest at {@code path}, or create it if it does not exist.
+     * @param fingerprint description of all parameters that influence the output of the run
+     * @throws PhenolRuntimeException if the manifest exists but was written by a run with other parameters
+     */
+    public static CheckpointManifest open(Path path, String fingerprint) throws IOException {
+        BitSet completed = new BitSet();
+        if (Files.exists(path)) {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(HEADER_PREFIX + fingerprint)) {
+                throw new PhenolRuntimeException("Checkpoint manifest " + path
+                        + " was written by a run with different parameters; delete it (and the output parts) to start over");
+            }
+            for (String line : lines.subList(1, lines.size())) {
+                String[] fields = line.split("\t");
+                if (fields.length == 3 && fields[0].equals(PART)) {
+                    completed.set(Integer.parseInt(fields[1]));
+                } else if (!line.isBlank()) {
+                    // a line that was cut off when the previous run was killed
+                    LOGGER.warn("Ignoring malformed line in checkpoint manifest {}: {}", path, line);
+                }
+            }
+            LOGGER.info("Resuming from checkpoint manifest {} with {} completed parts", path, completed.cardinality());
+        } else {
+            Files.writeString(path, HEADER_PREFIX + fingerprint + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.DSYNC);
+        }
+        return new CheckpointManifest(path, completed);
+    }
+
+    public boolean isComplete(int part) {
+        return completed.get(part);
+    }
+
+    /** Durably record that the part has been written completely. */
+    public void markComplete(int part, long nPhenopackets) throws IOException {
+        Files.writeString(path, PART + "\t" + part + "\t" + nPhenopackets + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+        completed.set(part);
+    }
+}
@@ -0,0 +1,174 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+/**
+ * Simulate a fixed number of cases for each disease of a list, or a cohort of a given size whose diseases are
+ * drawn by a {@link DiseaseSampler}, using all available cores.
+ * The diseases (or batches of cases) are simulated in parallel by a pool of worker threads. The results are written
+ * to the {@link PhenopacketSink} in order by the calling thread. At most a fixed window of
+ * tasks is in flight at any time, so memory use does not grow with the size of the cohort. Because
+ * every case draws from its own random stream (see {@link SimulatedHpoDiseaseGenerator#substream(TermId, long)})
+ * and the generator writes a fixed creation time, runs with the same seed and creation time produce identical
+ * output regardless of the number of threads.
+ */
+public class CohortSimulator {
+    private final static Logger LOGGER = LoggerFactory.getLogger(CohortSimulator.class);
+    /** Number of diseases (or batches) that may be queued or in progress per worker thread. */
+    private final static int WINDOW_PER_THREAD = 4;
+    /** Number of cases per task when simulating a sampled cohort. */
+    private final static int CASES_PER_BATCH = 64;
+
+    private final SimulatedHpoDiseaseGenerator generator;
+    private final int casesPerDisease;
+    private final int nTerms;
+    private final int nThreads;
+
+    /**
+     * @param casesPerDisease number of cases per disease for {@link #simulate(List, PhenopacketSink)} (not used
+     *                        for {@link #simulate(DiseaseSampler, long, PhenopacketSink)})
+     */
+    public CohortSimulator(SimulatedHpoDiseaseGenerator generator, int casesPerDisease, int nTerms, int nThreads) {
+        if (nThreads < 1) {
+            throw new PhenolRuntimeException("Number of threads must be at least 1 but was " + nThreads);
+        }
+        this.generator = generator;
+        this.casesPerDisease = casesPerDisease;
+        this.nTerms = nTerms;
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * @param diseaseIds diseases to simulate, in output order
+     * @param sink destination of the simulated phenopackets
+     * @return number of phenopackets written
+     */
+    public long simulate(List<TermId> diseaseIds, PhenopacketSink sink) throws IOException {
+        if (casesPerDisease < 1) {
+            throw new PhenolRuntimeException("Number of cases per disease must be at least 1 but was " + casesPerDisease);
+        }
+        Iterator<Callable<List<Phenopacket>>> tasks = diseaseIds.stream()
+                .<Callable<List<Phenopacket>>>map(diseaseId -> () -> simulateDisease(diseaseId))
+                .iterator();
+        long written = run(tasks, sink);
+        LOGGER.info("Simulated {} phenopackets for {} diseases", written, diseaseIds.size());
+        return written;
+    }
+
+    /**
+     * Simulate a cohort in one streaming pass, drawing the disease of each case from the sampler. The diseases are
+     * drawn by the calling thread (so the sequence of diseases depends only on the sampler's random stream) and
+     * the case with index i draws its phenotype from {@code substream(disease, i)}.
+     * @param sampler draws the disease of each case
+     * @param cohortSize number of cases
+     * @param sink destination of the simulated phenopackets
+     * @return number of phenopackets written
+     */
+    public long simulate(DiseaseSampler sampler, long cohortSize, PhenopacketSink sink) throws IOException {
+        if (cohortSize < 1) {
+            throw new PhenolRuntimeException("Cohort size must be at least 1 but was " + cohortSize);
+        }
+        Iterator<Callable<List<Phenopacket>>> tasks = new Iterator<>() {
+            private long next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < cohortSize;
+            }
+
+            @Override
+            public Callable<List<Phenopacket>> next() {
+                long first = next;
+                int n = (int) Math.min(CASES_PER_BATCH, cohortSize - first);
+                TermId[] diseaseIds = new TermId[n];
+                for (int i = 0; i < n; i++) {
+                    diseaseIds[i] = sampler.sample();
+                }
+                next += n;
+                return () -> simulateBatch(diseaseIds, first);
+            }
+        };
+        long written = run(tasks, sink);
+        LOGGER.info("Simulated {} phenopackets for a cohort of {} cases", written, cohortSize);
+        return written;
+    }
+
+    /**
+     * Run the tasks on the worker threads and write their results in order, with at most a fixed window of tasks
+     * in flight.
+     */
+    private long run(Iterator<Callable<List<Phenopacket>>> tasks, PhenopacketSink sink) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        Deque<Future<List<Phenopacket>>> window = new ArrayDeque<>();
+        int maxInFlight = nThreads * WINDOW_PER_THREAD;
+        long written = 0;
+        try {
+            while (tasks.hasNext()) {
+                if (window.size() >= maxInFlight) {
+                    written += drain(window.removeFirst(), sink);
+                }
+                window.addLast(executor.submit(tasks.next()));
+            }
+            while (!window.isEmpty()) {
+                written += drain(window.removeFirst(), sink);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return written;
+    }
+
+    private List<Phenopacket> simulateBatch(TermId[] diseaseIds, long firstCaseIndex) {
+        List<Phenopacket> phenopackets = new ArrayList<>(diseaseIds.length);
+        for (int i = 0; i < diseaseIds.length; i++) {
+            long caseIndex = firstCaseIndex + i;
+            String identifier = String.format("SIM-%s-%d", diseaseIds[i].getValue(), caseIndex);
+            generator.generateSimulatedPhenopacket(diseaseIds[i], nTerms, identifier,
+                    generator.substream(diseaseIds[i], caseIndex)).ifPresent(phenopackets::add);
+        }
+        return phenopackets;
+    }
+
+    private List<Phenopacket> simulateDisease(TermId diseaseId) {
+        List<Phenopacket> phenopackets = new ArrayList<>(casesPerDisease);
+        for (int caseIndex = 0; caseIndex < casesPerDisease; caseIndex++) {
+            String identifier = String.format("SIM-%s-%d", diseaseId.getValue(), caseIndex);
+            Optional<Phenopacket> opt = generator.generateSimulatedPhenopacket(diseaseId, nTerms, identifier,
+                    generator.substream(diseaseId, caseIndex));
+            if (opt.isEmpty()) {
+                break; // the generator has already logged the reason
+            }
+            phenopackets.add(opt.get());
+        }
+        return phenopackets;
+    }
+
+    private int drain(Future<List<Phenopacket>> future, PhenopacketSink sink) throws IOException {
+        List<Phenopacket> phenopackets;
+        try {
+            phenopackets = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PhenolRuntimeException("Interrupted while simulating phenopackets", e);
+        } catch (ExecutionException e) {
+            throw new PhenolRuntimeException("Could not simulate phenopackets: " + e.getCause().getMessage(), e.getCause());
+        }
+        for (Phenopacket phenopacket : phenopackets) {
+            sink.write(phenopacket);
+        }
+        return phenopackets.size();
+    }
+}
@@ -0,0 +1,31 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Writes phenopackets as length-delimited binary protobuf messages. This is much more compact and faster to
+ * write and read than JSON; the file can be read back by calling {@code Phenopacket.parseDelimitedFrom}
+ * until it returns {@code null}.
+ */
+public class DelimitedProtobufPhenopacketSink implements PhenopacketSink {
+
+    private final OutputStream out;
+
+    public DelimitedProtobufPhenopacketSink(Path path, boolean gzip) throws IOException {
+        this.out = PhenopacketOutputFormat.openStream(path, gzip);
+    }
+
+    @Override
+    public void write(Phenopacket phenopacket) throws IOException {
+        phenopacket.writeDelimitedTo(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,495 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.monarchinitiative.phenol.annotations.base.temporal.TemporalInterval;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotation;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Precompiled sampling tables for all diseases, in struct-of-arrays layout. The annotations of disease
+ * {@code d} occupy the slots {@code annotationOffsets[d] .. annotationOffsets[d+1]-1} of the per-annotation
+ * arrays (term, frequency and alias table); modifiers are stored in the same way per annotation. All HPO terms
+ * are stored once in a dictionary and referred to by index.
+ * <p>
+ * The store is built once from {@link HpoDiseases} and can be written to and read back from a compact binary
+ * file, so that repeated simulations neither recompute the probability tables nor need to parse phenotype.hpoa.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class DiseaseModelStore {
+    private final static Logger LOGGER = LoggerFactory.getLogger(DiseaseModelStore.class);
+    /** "HPDM" */
+    private final static int MAGIC = 0x4850444D;
+    private final static int FORMAT_VERSION = 1;
+    private final static TermId X_LINKED_RECESSIVE = TermId.of("HP:0001419");
+    /** Marks a disease without onset information in {@link #onsetStart}. */
+    private final static int NO_ONSET = -1;
+
+    /** Identifies the input the store was built from, e.g., a hash of phenotype.hpoa. */
+    private final String sourceKey;
+    private final TermId[] terms;
+    private final TermId[] diseaseIds;
+    private final Map<TermId, Integer> diseaseIndex;
+    private final int[] annotationOffsets;
+    private final int[] annotationTerms;
+    private final double[] frequencies;
+    private final double[] aliasProb;
+    private final int[] aliasIndex;
+    /** Number of annotations with a positive frequency per disease. */
+    private final int[] positiveCounts;
+    private final int[] modifierOffsets;
+    private final int[] modifierTerms;
+    private final int[] onsetStart;
+    private final int[] onsetEnd;
+    private final boolean[] xLinkedRecessive;
+
+    private DiseaseModelStore(String sourceKey,
+                              TermId[] terms,
+                              TermId[] diseaseIds,
+                              int[] annotationOffsets,
+                              int[] annotationTerms,
+                              double[] frequencies,
+                              double[] aliasProb,
+                              int[] aliasIndex,
+                              int[] positiveCounts,
+                              int[] modifierOffsets,
+                              int[] modifierTerms,
+                              int[] onsetStart,
+                              int[] onsetEnd,
+                              boolean[] xLinkedRecessive) {
+        this.sourceKey = sourceKey;
+        this.terms = terms;
+        this.diseaseIds = diseaseIds;
+        this.annotationOffsets = annotationOffsets;
+        this.annotationTerms = annotationTerms;
+        this.frequencies = frequencies;
+        this.aliasProb = aliasProb;
+        this.aliasIndex = aliasIndex;
+        this.positiveCounts = positiveCounts;
+        this.modifierOffsets = modifierOffsets;
+        this.modifierTerms = modifierTerms;
+        this.onsetStart = onsetStart;
+        this.onsetEnd = onsetEnd;
+        this.xLinkedRecessive = xLinkedRecessive;
+        this.diseaseIndex = new HashMap<>();
+        for (int d = 0; d < diseaseIds.length; d++) {
+            diseaseIndex.put(diseaseIds[d], d);
+        }
+    }
+
+    public static DiseaseModelStore of(HpoDiseases hpoDiseases) {
+        return of(hpoDiseases, "");
+    }
+
+    /**
+     * Compile the sampling tables for all diseases.
+     * @param hpoDiseases diseases with their annotations
+     * @param sourceKey identifier of the input, stored with the tables and checked by {@link #read(Path, String)}
+     */
+    public static DiseaseModelStore of(HpoDiseases hpoDiseases, String sourceKey) {
+        List<HpoDisease> diseases = hpoDiseases.hpoDiseases()
+                .sorted(Comparator.comparing(d -> d.id().getValue()))
+                .toList();
+        int nDiseases = diseases.size();
+        int nAnnotations = 0;
+        int nModifiers = 0;
+        for (HpoDisease disease : diseases) {
+            for (HpoDiseaseAnnotation annotation : disease.annotations()) {
+                nAnnotations++;
+                nModifiers += annotation.modifiers().size();
+            }
+        }
+        Map<TermId, Integer> termIndex = new HashMap<>();
+        List<TermId> termList = new ArrayList<>();
+        TermId[] diseaseIds = new TermId[nDiseases];
+        int[] annotationOffsets = new int[nDiseases + 1];
+        int[] annotationTerms = new int[nAnnotations];
+        double[] frequencies = new double[nAnnotations];
+        int[] positiveCounts = new int[nDiseases];
+        int[] modifierOffsets = new int[nAnnotations + 1];
+        int[] modifierTerms = new int[nModifiers];
+        int[] onsetStart = new int[nDiseases];
+        int[] onsetEnd = new int[nDiseases];
+        boolean[] xLinkedRecessive = new boolean[nDiseases];
+        int a = 0;
+        int m = 0;
+        for (int d = 0; d < nDiseases; d++) {
+            HpoDisease disease = diseases.get(d);
+            diseaseIds[d] = disease.id();
+            annotationOffsets[d] = a;
+            for (HpoDiseaseAnnotation annotation : disease.annotations()) {
+                annotationTerms[a] = termIndex.computeIfAbsent(annotation.id(), t -> addTerm(termList, t));
+                frequencies[a] = annotation.frequency();
+                if (frequencies[a] > 0) {
+                    positiveCounts[d]++;
+                }
+                modifierOffsets[a] = m;
+                for (TermId modifier : annotation.modifiers()) {
+                    modifierTerms[m++] = termIndex.computeIfAbsent(modifier, t -> addTerm(termList, t));
+                }
+                a++;
+            }
+            Optional<TemporalInterval> optOnset = disease.diseaseOnset();
+            if (optOnset.isPresent()) {
+                onsetStart[d] = optOnset.get().start().days();
+                onsetEnd[d] = optOnset.get().end().days();
+            } else {
+                onsetStart[d] = NO_ONSET;
+                onsetEnd[d] = NO_ONSET;
+            }
+            xLinkedRecessive[d] = disease.modesOfInheritance().contains(X_LINKED_RECESSIVE);
+        }
+        annotationOffsets[nDiseases] = a;
+        modifierOffsets[nAnnotations] = m;
+        double[] aliasProb = new double[nAnnotations];
+        int[] aliasIndex = new int[nAnnotations];
+        buildAliasTables(annotationOffsets, frequencies, positiveCounts, aliasProb, aliasIndex);
+        LOGGER.info("Compiled sampling tables for {} diseases with {} annotations", nDiseases, nAnnotations);
+        return new DiseaseModelStore(sourceKey, termList.toArray(new TermId[0]), diseaseIds, annotationOffsets,
+                annotationTerms, frequencies, aliasProb, aliasIndex, positiveCounts, modifierOffsets, modifierTerms,
+                onsetStart, onsetEnd, xLinkedRecessive);
+    }
+
+    private static int addTerm(List<TermId> termList, TermId termId) {
+        termList.add(termId);
+        return termList.size() - 1;
+    }
+
+    private static void buildAliasTables(int[] annotationOffsets, double[] frequencies, int[] positiveCounts,
+                                         double[] aliasProb, int[] aliasIndex) {
+        double[] normalized = new double[frequencies.length];
+        for (int d = 0; d < positiveCounts.length; d++) {
+            int from = annotationOffsets[d];
+            int to = annotationOffsets[d + 1];
+            if (positiveCounts[d] == 0) {
+                continue; // nothing to sample proportionally
+            }
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += frequencies[i];
+            }
+            for (int i = from; i < to; i++) {
+                normalized[i] = frequencies[i] / sum;
+            }
+            AliasMethodSampler.buildAliasTable(normalized, from, to - from, aliasProb, aliasIndex);
+        }
+    }
+
+    public String sourceKey() {
+        return sourceKey;
+    }
+
+    public int diseaseCount() {
+        return diseaseIds.length;
+    }
+
+    /** @return the disease ids, sorted by their string value */
+    public List<TermId> diseaseIds() {
+        return List.of(diseaseIds);
+    }
+
+    /** @return the index of the disease in this store, or -1 if the store does not contain it */
+    public int indexOf(TermId diseaseId) {
+        return diseaseIndex.getOrDefault(diseaseId, -1);
+    }
+
+    public TermId diseaseId(int disease) {
+        return diseaseIds[disease];
+    }
+
+    public int annotationCount(int disease) {
+        return annotationOffsets[disease + 1] - annotationOffsets[disease];
+    }
+
+    /**
+     * The annotations of a disease have the consecutive (global) indices {@code firstAnnotation(disease)} to
+     * {@code firstAnnotation(disease) + annotationCount(disease) - 1}.
+     */
+    public int firstAnnotation(int disease) {
+        return annotationOffsets[disease];
+    }
+
+    /** @param annotation index of an annotation as returned by {@link #sampleAnnotations} */
+    public TermId annotationTermId(int annotation) {
+        return terms[annotationTerms[annotation]];
+    }
+
+    /** @return the modifiers of the annotation (usually none) */
+    public List<TermId> modifiers(int annotation) {
+        int from = modifierOffsets[annotation];
+        int to = modifierOffsets[annotation + 1];
+        if (from == to) {
+            return List.of();
+        }
+        List<TermId> modifiers = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            modifiers.add(terms[modifierTerms[i]]);
+        }
+        return modifiers;
+    }
+
+    public boolean hasOnset(int disease) {
+        return onsetStart[disease] != NO_ONSET;
+    }
+
+    /** @return earliest onset of the disease in days (only meaningful if {@link #hasOnset(int)}) */
+    public int onsetStartDays(int disease) {
+        return onsetStart[disease];
+    }
+
+    /** @return latest onset of the disease in days (only meaningful if {@link #hasOnset(int)}) */
+    public int onsetEndDays(int disease) {
+        return onsetEnd[disease];
+    }
+
+    public boolean isXLinkedRecessive(int disease) {
+        return xLinkedRecessive[disease];
+    }
+
+    /**
+     * Draw {@code n} distinct annotations of a disease in proportion to their frequencies (successive sampling
+     * without replacement). While the requested number does not exceed the number of annotations with a positive
+     * frequency, we draw from the precompiled alias table and reject repeats, which is equivalent to renormalizing
+     * the remaining frequencies after each draw but costs O(1) per draw. If there are too many rejections (because
+     * most of the probability mass has already been drawn), or if annotations with frequency zero are needed, the
+     * remaining draws are made with a {@link FenwickSamplerWithoutReplacement}.
+     * @param disease index of the disease
+     * @param n number of annotations to draw; must not exceed {@link #annotationCount(int)}
+     * @param random random stream
+     * @param out buffer of length at least {@code n} for the (global) annotation indices
+     * @return the number of annotations written to {@code out}
+     */
+    public int sampleAnnotations(int disease, int n, RandomGenerator random, int[] out) {
+        int from = annotationOffsets[disease];
+        int size = annotationOffsets[disease + 1] - from;
+        if (n > size) {
+            throw new IllegalArgumentException("Cannot draw " + n + " of " + size + " annotations of " + diseaseIds[disease].getValue());
+        }
+        int k = 0;
+        if (n <= positiveCounts[disease]) {
+            int maxAttempts = 8 * n + 16;
+            for (int attempt = 0; attempt < maxAttempts && k < n; attempt++) {
+                int column = from + random.nextInt(size);
+                int annotation = random.nextDouble() < aliasProb[column] ? column : from + aliasIndex[column];
+                if (!contains(out, k, annotation)) {
+                    out[k++] = annotation;
+                }
+            }
+        }
+        if (k < n) {
+            k = sampleRemaining(from, size, n, k, random, out);
+        }
+        return k;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int sampleRemaining(int from, int size, int n, int k, RandomGenerator random, int[] out) {
+        List<Integer> remaining = new ArrayList<>(size - k);
+        for (int i = from; i < from + size; i++) {
+            if (!contains(out, k, i)) {
+                remaining.add(i);
+            }
+        }
+        double[] weights = new double[remaining.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = frequencies[remaining.get(i)];
+        }
+        FenwickSamplerWithoutReplacement<Integer> sampler = new FenwickSamplerWithoutReplacement<>(remaining, weights, random);
+        while (k < n) {
+            out[k++] = remaining.get(sampler.sampleIndex());
+        }
+        return k;
+    }
+
+    /**
+     * Write the store to a binary file.
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(sourceKey);
+            writeTermIds(out, terms);
+            writeTermIds(out, diseaseIds);
+            writeInts(out, annotationOffsets);
+            writeInts(out, annotationTerms);
+            writeDoubles(out, frequencies);
+            writeDoubles(out, aliasProb);
+            writeInts(out, aliasIndex);
+            writeInts(out, positiveCounts);
+            writeInts(out, modifierOffsets);
+            writeInts(out, modifierTerms);
+            writeInts(out, onsetStart);
+            writeInts(out, onsetEnd);
+            out.writeInt(xLinkedRecessive.length);
+            for (boolean b : xLinkedRecessive) {
+                out.writeBoolean(b);
+            }
+        }
+        LOGGER.info("Wrote disease sampling tables to {}", path.toAbsolutePath());
+    }
+
+    /**
+     * Read a store previously written by {@link #write(Path)}.
+     * @param path file to read
+     * @param expectedSourceKey the key of the current input; the file is ignored if it was built from another input
+     * @return the store, or an empty Optional if the file is missing, stale or unreadable
+     */
+    public static Optional<DiseaseModelStore> read(Path path, String expectedSourceKey) {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.warn("Ignoring {}: not a disease sampling table file of the current format", path);
+                return Optional.empty();
+            }
+            String sourceKey = in.readUTF();
+            if (!sourceKey.equals(expectedSourceKey)) {
+                LOGGER.info("Ignoring stale disease sampling tables at {}", path);
+                return Optional.empty();
+            }
+            // every count is checked against the file size, so that a damaged file cannot cause huge allocations
+            long max = Files.size(path);
+            TermId[] terms = readTermIds(in, max);
+            TermId[] diseaseIds = readTermIds(in, max);
+            int[] annotationOffsets = readInts(in, max);
+            int[] annotationTerms = readInts(in, max);
+            double[] frequencies = readDoubles(in, max);
+            double[] aliasProb = readDoubles(in, max);
+            int[] aliasIndex = readInts(in, max);
+            int[] positiveCounts = readInts(in, max);
+            int[] modifierOffsets = readInts(in, max);
+            int[] modifierTerms = readInts(in, max);
+            int[] onsetStart = readInts(in, max);
+            int[] onsetEnd = readInts(in, max);
+            boolean[] xLinkedRecessive = new boolean[count(in, max)];
+            for (int i = 0; i < xLinkedRecessive.length; i++) {
+                xLinkedRecessive[i] = in.readBoolean();
+            }
+            int nDiseases = diseaseIds.length;
+            int nAnnotations = annotationTerms.length;
+            check(annotationOffsets.length == nDiseases + 1 && positiveCounts.length == nDiseases
+                    && onsetStart.length == nDiseases && onsetEnd.length == nDiseases
+                    && xLinkedRecessive.length == nDiseases, "number of diseases");
+            check(frequencies.length == nAnnotations && aliasProb.length == nAnnotations
+                    && aliasIndex.length == nAnnotations && modifierOffsets.length == nAnnotations + 1, "number of annotations");
+            checkOffsets(annotationOffsets, nAnnotations, "annotation offsets");
+            checkOffsets(modifierOffsets, modifierTerms.length, "modifier offsets");
+            checkIndices(annotationTerms, terms.length, "annotation term");
+            checkIndices(modifierTerms, terms.length, "modifier term");
+            for (int d = 0; d < nDiseases; d++) {
+                int size = annotationOffsets[d + 1] - annotationOffsets[d];
+                int positive = 0;
+                for (int i = annotationOffsets[d]; i < annotationOffsets[d + 1]; i++) {
+                    check(frequencies[i] >= 0 && frequencies[i] <= 1, "frequency");
+                    check(aliasProb[i] >= 0 && aliasProb[i] <= 1, "alias probability");
+                    check(aliasIndex[i] >= 0 && aliasIndex[i] < size, "alias index");
+                    if (frequencies[i] > 0) {
+                        positive++;
+                    }
+                }
+                check(positiveCounts[d] == positive, "number of positive frequencies");
+            }
+            LOGGER.info("Read disease sampling tables for {} diseases from {}", diseaseIds.length, path);
+            return Optional.of(new DiseaseModelStore(sourceKey, terms, diseaseIds, annotationOffsets, annotationTerms,
+                    frequencies, aliasProb, aliasIndex, positiveCounts, modifierOffsets, modifierTerms, onsetStart,
+                    onsetEnd, xLinkedRecessive));
+        } catch (IOException | RuntimeException e) {
+            // a damaged file can fail in many ways (end of file, invalid term id, invalid count, ...)
+            LOGGER.warn("Could not read disease sampling tables from {}: {}", path, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /** Read a count, which cannot exceed the size of the file. */
+    private static int count(DataInputStream in, long max) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > max) {
+            throw new PhenolRuntimeException("Invalid count " + n);
+        }
+        return n;
+    }
+
+    private static void check(boolean valid, String what) {
+        if (!valid) {
+            throw new PhenolRuntimeException("Invalid " + what);
+        }
+    }
+
+    /** Offsets must start at 0, not decrease and end at the length of the array they refer to. */
+    private static void checkOffsets(int[] offsets, int length, String what) {
+        check(offsets[0] == 0 && offsets[offsets.length - 1] == length, what);
+        for (int i = 1; i < offsets.length; i++) {
+            check(offsets[i - 1] <= offsets[i], what);
+        }
+    }
+
+    private static void checkIndices(int[] indices, int length, String what) {
+        for (int index : indices) {
+            check(index >= 0 && index < length, what);
+        }
+    }
+
+    private static void writeTermIds(DataOutputStream out, TermId[] termIds) throws IOException {
+        out.writeInt(termIds.length);
+        for (TermId tid : termIds) {
+            out.writeUTF(tid.getValue());
+        }
+    }
+
+    private static TermId[] readTermIds(DataInputStream in, long max) throws IOException {
+        TermId[] termIds = new TermId[count(in, max)];
+        for (int i = 0; i < termIds.length; i++) {
+            termIds[i] = TermId.of(in.readUTF());
+        }
+        return termIds;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, long max) throws IOException {
+        int[] values = new int[count(in, max / 4)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) {
+            out.writeDouble(v);
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in, long max) throws IOException {
+        double[] values = new double[count(in, max / 8)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,115 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws the diseases of a simulated cohort in proportion to per-disease weights, e.g., prevalences.
+ * The weights are compiled into an {@link AliasMethodSampler}, so each draw takes O(1) time.
+ */
+public class DiseaseSampler {
+    private final static Logger LOGGER = LoggerFactory.getLogger(DiseaseSampler.class);
+
+    /** How the diseases of a cohort are weighted. */
+    public enum Weighting {
+        /** All diseases are equally likely. */
+        UNIFORM,
+        /** Diseases are weighted by their number of HPO annotations. */
+        ANNOTATIONS,
+        /** Diseases are weighted by the prevalences given in a TSV file. */
+        PREVALENCE
+    }
+
+    private final AliasMethodSampler<TermId> sampler;
+
+    private DiseaseSampler(List<TermId> diseaseIds, double[] weights, RandomGenerator random) {
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (!(weights[i] >= 0.0) || Double.isInfinite(weights[i])) {
+                throw new PhenolRuntimeException("Invalid weight " + weights[i] + " for " + diseaseIds.get(i).getValue());
+            }
+            sum += weights[i];
+        }
+        if (sum <= 0.0) {
+            throw new PhenolRuntimeException("Cannot sample diseases: no disease has a positive weight");
+        }
+        this.sampler = new AliasMethodSampler<>(diseaseIds, weights, random);
+    }
+
+    /** All diseases are equally likely. */
+    public static DiseaseSampler uniform(List<TermId> diseaseIds, RandomGenerator random) {
+        double[] weights = new double[diseaseIds.size()];
+        Arrays.fill(weights, 1.0);
+        return new DiseaseSampler(diseaseIds, weights, random);
+    }
+
+    /** Each disease is weighted by its number of annotations in the store (diseases not in the store get zero). */
+    public static DiseaseSampler byAnnotationCount(List<TermId> diseaseIds, DiseaseModelStore diseaseModels, RandomGenerator random) {
+        double[] weights = new double[diseaseIds.size()];
+        for (int i = 0; i < weights.length; i++) {
+            int d = diseaseModels.indexOf(diseaseIds.get(i));
+            weights[i] = d < 0 ? 0.0 : diseaseModels.annotationCount(d);
+        }
+        return new DiseaseSampler(diseaseIds, weights, random);
+    }
+
+    /**
+     * Weight the diseases by the prevalences in a tab-separated file with the disease (a CURIE such as OMIM:163950,
+     * or the bare OMIM number) in the first and the prevalence in the second column. Blank lines, lines starting
+     * with # and a header line are skipped. Diseases that are not listed in the file are never drawn.
+     * @param path prevalence file
+     * @param diseaseIds the diseases that may be drawn
+     */
+    public static DiseaseSampler fromPrevalenceFile(Path path, List<TermId> diseaseIds, RandomGenerator random) throws IOException {
+        Map<TermId, Double> prevalences = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\t");
+                if (fields.length < 2) {
+                    throw new PhenolRuntimeException("Malformed line " + lineNumber + " in " + path + ": " + line);
+                }
+                double prevalence;
+                try {
+                    prevalence = Double.parseDouble(fields[1].trim());
+                } catch (NumberFormatException e) {
+                    if (lineNumber == 1) continue; // header
+                    throw new PhenolRuntimeException("Malformed prevalence on line " + lineNumber + " in " + path + ": " + fields[1]);
+                }
+                String id = fields[0].trim();
+                prevalences.put(id.contains(":") ? TermId.of(id) : TermId.of("OMIM", id), prevalence);
+            }
+        }
+        double[] weights = new double[diseaseIds.size()];
+        int found = 0;
+        for (int i = 0; i < weights.length; i++) {
+            Double prevalence = prevalences.get(diseaseIds.get(i));
+            if (prevalence != null) {
+                weights[i] = prevalence;
+                found++;
+            }
+        }
+        LOGGER.info("Found prevalences for {} of {} diseases in {}", found, diseaseIds.size(), path);
+        if (found < prevalences.size()) {
+            LOGGER.warn("Ignoring {} diseases in {} that are not available for simulation", prevalences.size() - found, path);
+        }
+        return new DiseaseSampler(diseaseIds, weights, random);
+    }
+
+    public TermId sample() {
+        return sampler.sample();
+    }
+}
@@ -0,0 +1,182 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Proportional sampler without replacement that keeps the weights in a Fenwick (binary indexed) tree.
+ * Each draw locates the sampled element by descending the tree and then sets its weight to zero,
+ * so that a draw costs O(log n) and nothing is copied. In contrast to
+ * {@link ProportionalSamplerWithoutReplacement}, {@link #getElements()} returns all elements
+ * (including those that were already drawn).
+ * @param <E> type of the elements to be sampled
+ */
+public class FenwickSamplerWithoutReplacement<E> extends AbstractProportionalSampler<E> implements IProportionalSampler<E> {
+    /** Current weight of each element (zero once the element has been drawn). */
+    private final double[] weights;
+    /** One-based Fenwick tree over {@link #weights}. */
+    private final double[] tree;
+    /** Whether element i has already been drawn. */
+    private final boolean[] drawn;
+    /** Highest power of two not greater than the number of elements, used to descend the tree. */
+    private final int topBit;
+    private int remaining;
+
+    public FenwickSamplerWithoutReplacement(List<E> elements, double[] probabilities, RandomGenerator random) {
+        super(elements, probabilities, random);
+        if (elements.size() != probabilities.length) {
+            throw new IllegalArgumentException("The number of elements (" + elements.size()
+                    + ") does not match the number of probabilities (" + probabilities.length + ").");
+        }
+        int n = probabilities.length;
+        this.weights = new double[n];
+        this.tree = new double[n + 1];
+        this.drawn = new boolean[n];
+        this.topBit = n == 0 ? 0 : Integer.highestOneBit(n);
+        for (double p : probabilities) {
+            if (!(p >= 0) || Double.isInfinite(p)) {
+                throw new IllegalArgumentException("Probabilities must be finite and non-negative but got " + p);
+            }
+        }
+        resetTree();
+    }
+
+    /**
+     * Put all elements back into the pool. This reuses the existing arrays and does not allocate.
+     */
+    @Override
+    public void reset() {
+        resetTree();
+    }
+
+    /** Not overridable, so that the constructor can call it before a subclass is initialized. */
+    private void resetTree() {
+        System.arraycopy(initialProbabilities, 0, weights, 0, weights.length);
+        Arrays.fill(drawn, false);
+        remaining = weights.length;
+        buildTree();
+    }
+
+    /** Build the Fenwick tree from {@link #weights} in O(n). */
+    private void buildTree() {
+        int n = weights.length;
+        for (int i = 1; i <= n; i++) {
+            tree[i] = weights[i - 1];
+        }
+        for (int i = 1; i <= n; i++) {
+            int parent = i + (i & -i);
+            if (parent <= n) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /** @return the sum of the weights of all elements that have not yet been drawn */
+    private double totalWeight() {
+        double sum = 0;
+        for (int i = weights.length; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Descend the tree to find the first (zero-based) index whose cumulative weight exceeds {@code target}.
+     * @return the index, or {@code weights.length} if rounding error pushed {@code target} past the total
+     */
+    private int findIndex(double target) {
+        int pos = 0;
+        for (int step = topBit; step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= weights.length && tree[next] <= target) {
+                pos = next;
+                target -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    /** Remove the weight of element {@code index} from the tree and mark it as drawn. */
+    private void remove(int index) {
+        double w = weights[index];
+        weights[index] = 0;
+        drawn[index] = true;
+        remaining--;
+        for (int i = index + 1; i <= weights.length; i += i & -i) {
+            tree[i] -= w;
+        }
+    }
+
+    /**
+     * Draw the index of an element and remove it from the pool in O(log n).
+     * If all remaining elements have zero weight, one of them is chosen uniformly at random.
+     * @return index into {@link #getElements()} of the sampled element
+     */
+    @Override
+    public int sampleIndex() {
+        if (remaining == 0) {
+            throw new IllegalStateException("The list of elements is empty.");
+        }
+        double total = totalWeight();
+        int index = -1;
+        if (total > 0) {
+            index = findIndex(random.nextDouble() * total);
+            if (index >= weights.length || drawn[index] || weights[index] == 0) {
+                // accumulated rounding error in the tree -- rebuild it and try once more
+                buildTree();
+                index = findIndex(random.nextDouble() * totalWeight());
+                if (index >= weights.length || drawn[index] || weights[index] == 0) {
+                    index = -1;
+                }
+            }
+        }
+        if (index < 0) {
+            index = uniformRemainingIndex();
+        }
+        remove(index);
+        return index;
+    }
+
+    /** @return a uniformly chosen index among the elements that have not yet been drawn */
+    private int uniformRemainingIndex() {
+        int k = random.nextInt(remaining);
+        for (int i = 0; i < drawn.length; i++) {
+            if (!drawn[i] && k-- == 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Could not find a remaining element (should never happen)");
+    }
+
+    /** @return the number of elements that can still be drawn */
+    public int remaining() {
+        return remaining;
+    }
+
+    @Override
+    public E sample() {
+        return elements.get(sampleIndex());
+    }
+
+    @Override
+    public List<E> sample(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("The number of samples must be non-negative.");
+        } else if (n > remaining) {
+            throw new IllegalArgumentException("The number of samples must be less than the number of elements.");
+        }
+        List<E> selectedElements = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            selectedElements.add(sample());
+        }
+        return selectedElements;
+    }
+
+    @Override
+    public int sampleIndices(int n, int[] out) {
+        if (n > remaining) {
+            throw new IllegalArgumentException("The number of samples must be less than the number of elements.");
+        }
+        return super.sampleIndices(n, out);
+    }
+}
@@ -0,0 +1,41 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import com.google.protobuf.util.JsonFormat;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes each phenopacket to its own JSON file in a directory. The file name is derived from the phenopacket id.
+ */
+public class JsonDirectoryPhenopacketSink implements PhenopacketSink {
+
+    private final Path directory;
+    private final boolean gzip;
+    private final JsonFormat.Printer printer = JsonFormat.printer();
+
+    public JsonDirectoryPhenopacketSink(Path directory, boolean gzip) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.gzip = gzip;
+    }
+
+    @Override
+    public void write(Phenopacket phenopacket) throws IOException {
+        String fileName = phenopacket.getId().replaceAll("[^A-Za-z0-9._-]", "_") + (gzip ? ".json.gz" : ".json");
+        try (Writer writer = new OutputStreamWriter(
+                PhenopacketOutputFormat.openStream(directory.resolve(fileName), gzip), StandardCharsets.UTF_8)) {
+            printer.appendTo(phenopacket, writer);
+            writer.write("\n");
+        }
+    }
+
+    @Override
+    public void close() {
+        // each file is closed as soon as it has been written
+    }
+}
@@ -0,0 +1,34 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import com.google.protobuf.util.JsonFormat;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Writes phenopackets as JSON Lines, i.e., one compact JSON object per line.
+ */
+public class JsonLinesPhenopacketSink implements PhenopacketSink {
+
+    private final Writer writer;
+    private final JsonFormat.Printer printer = JsonFormat.printer().omittingInsignificantWhitespace();
+
+    public JsonLinesPhenopacketSink(Path path, boolean gzip) throws IOException {
+        this.writer = new OutputStreamWriter(PhenopacketOutputFormat.openStream(path, gzip), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(Phenopacket phenopacket) throws IOException {
+        printer.appendTo(phenopacket, writer);
+        writer.write("\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,32 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+
+/**
+ * Parameters of the phenotypic noise added to simulated cases, to mimic the imprecision of real clinical data.
+ * @param ancestorRate probability that a sampled term is replaced by one of its ancestors (below Phenotypic abnormality)
+ * @param dropRate probability that a sampled term is dropped (at least one term is always kept)
+ * @param randomTerms number of random terms added that are unrelated to the annotations of the disease
+ */
+public record NoiseModel(double ancestorRate, double dropRate, int randomTerms) {
+
+    /** No noise: the simulated cases only contain annotated terms. */
+    public static final NoiseModel NONE = new NoiseModel(0.0, 0.0, 0);
+
+    public NoiseModel {
+        if (ancestorRate < 0.0 || ancestorRate > 1.0) {
+            throw new PhenolRuntimeException("Ancestor replacement rate must be between 0 and 1 but was " + ancestorRate);
+        }
+        if (dropRate < 0.0 || dropRate > 1.0) {
+            throw new PhenolRuntimeException("Drop rate must be between 0 and 1 but was " + dropRate);
+        }
+        if (randomTerms < 0) {
+            throw new PhenolRuntimeException("Number of random terms must be non-negative but was " + randomTerms);
+        }
+    }
+
+    /** @return true if this model changes the sampled terms at all */
+    public boolean isActive() {
+        return ancestorRate > 0.0 || dropRate > 0.0 || randomTerms > 0;
+    }
+}
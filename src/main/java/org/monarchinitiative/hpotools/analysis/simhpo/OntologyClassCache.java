@@ -0,0 +1,60 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.Term;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.phenopackets.schema.v2.core.OntologyClass;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prebuilt {@link OntologyClass} messages for all terms of one ontology release. Protobuf messages are immutable,
+ * so a single instance per term can be referenced from any number of phenopackets, and building a phenopacket
+ * no longer needs to look up labels or allocate a new message for every feature. Identifiers that are not in the
+ * ontology (e.g., disease identifiers) are added with an empty label the first time they are requested.
+ * Instances are safe to share between threads.
+ */
+public class OntologyClassCache {
+
+    private final String ontologyVersion;
+    private final Map<TermId, OntologyClass> ontologyClassMap;
+
+    public OntologyClassCache(Ontology ontology) {
+        this.ontologyVersion = ontology.version().orElse("n/a");
+        this.ontologyClassMap = new ConcurrentHashMap<>(2 * ontology.getTerms().size());
+        for (Term term : ontology.getTerms()) {
+            OntologyClass ontologyClass = OntologyClass.newBuilder()
+                    .setId(term.id().getValue())
+                    .setLabel(term.getName())
+                    .build();
+            ontologyClassMap.put(term.id(), ontologyClass);
+            // obsolete ids resolve to the current term, as in Ontology#getTermLabel
+            for (TermId altId : term.getAltTermIds()) {
+                ontologyClassMap.putIfAbsent(altId, OntologyClass.newBuilder()
+                        .setId(altId.getValue())
+                        .setLabel(term.getName())
+                        .build());
+            }
+        }
+    }
+
+    /** @return version of the ontology whose terms are cached */
+    public String ontologyVersion() {
+        return ontologyVersion;
+    }
+
+    /**
+     * @param termId a term of the ontology or any other identifier
+     * @return the shared OntologyClass message for the identifier
+     */
+    public OntologyClass get(TermId termId) {
+        OntologyClass ontologyClass = ontologyClassMap.get(termId);
+        if (ontologyClass != null) {
+            return ontologyClass;
+        }
+        return ontologyClassMap.computeIfAbsent(termId, tid -> OntologyClass.newBuilder()
+                .setId(tid.getValue())
+                .build());
+    }
+}
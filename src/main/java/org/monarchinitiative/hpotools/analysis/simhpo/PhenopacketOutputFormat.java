@@ -0,0 +1,62 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output formats for simulated phenopackets.
+ */
+public enum PhenopacketOutputFormat {
+    /** Protobuf text format, all phenopackets in one file. */
+    TEXT,
+    /** One JSON file per phenopacket in a directory. */
+    JSON,
+    /** JSON Lines: one phenopacket per line in a single file. */
+    JSONL,
+    /** Length-delimited binary protobuf messages in a single file (see {@code Phenopacket.parseDelimitedFrom}). */
+    PROTOBUF;
+
+    private final static int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @param path output file, or output directory for {@link #JSON}
+     * @param gzip whether to gzip-compress the output
+     * @return a sink that writes phenopackets in this format
+     */
+    public PhenopacketSink open(Path path, boolean gzip) throws IOException {
+        return switch (this) {
+            case TEXT -> new TextPhenopacketSink(path, gzip);
+            case JSON -> new JsonDirectoryPhenopacketSink(path, gzip);
+            case JSONL -> new JsonLinesPhenopacketSink(path, gzip);
+            case PROTOBUF -> new DelimitedProtobufPhenopacketSink(path, gzip);
+        };
+    }
+
+    /**
+     * @param gzip whether the output is gzip-compressed
+     * @return the default name of the output, e.g., simulated_phenopackets.jsonl.gz (a directory for {@link #JSON},
+     * whose files get the .gz suffix instead)
+     */
+    public String defaultOutputName(boolean gzip) {
+        String name = switch (this) {
+            case TEXT -> "simulated_phenopackets.txt";
+            case JSON -> "simulated_phenopackets";
+            case JSONL -> "simulated_phenopackets.jsonl";
+            case PROTOBUF -> "simulated_phenopackets.pb";
+        };
+        return gzip && this != JSON ? name + ".gz" : name;
+    }
+
+    /** Open a buffered, optionally gzip-compressed, output stream. */
+    static OutputStream openStream(Path path, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        if (gzip) {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,15 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination for simulated phenopackets. Implementations are written to by a single thread
+ * and receive the phenopackets in the order in which they were simulated.
+ */
+public interface PhenopacketSink extends Closeable {
+
+    void write(Phenopacket phenopacket) throws IOException;
+}
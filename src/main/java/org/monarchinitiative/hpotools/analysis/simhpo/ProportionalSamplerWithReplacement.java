@@ -1,26 +1,42 @@
 package org.monarchinitiative.hpotools.analysis.simhpo;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 public class ProportionalSamplerWithReplacement<E> extends AbstractProportionalSampler<E> implements IProportionalSampler<E> {
 
-    public ProportionalSamplerWithReplacement(List<E> elements, double[] probabilities, Random random) {
+    public ProportionalSamplerWithReplacement(List<E> elements, double[] probabilities, RandomGenerator random) {
         super(elements, probabilities, random);
     }
 
-    public E sample() {
+    /**
+     * Binary search of the cumulative probabilities for the first entry that is at least as large as
+     * a uniform random number.
+     * @return index of the sampled element in the current list of elements
+     */
+    protected int sampleCurrentIndex() {
         double r = random.nextDouble();
-        int selectedIndex = 0;
-        Iterator<Double> probIterator = Arrays.stream(cumulativeProbabilities).iterator();
-        int i = 0;
-        while (probIterator.hasNext()) {
-            if (r <= probIterator.next()) {
-                selectedIndex = i;
-                break;
+        int lo = 0;
+        int hi = cumulativeProbabilities.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (r <= cumulativeProbabilities[mid]) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
             }
-            i++;
         }
-        return elements.get(selectedIndex);
+        // r above the last (rounded) cumulative probability, or all-NaN probabilities: keep the first element
+        return r <= cumulativeProbabilities[lo] ? lo : 0;
+    }
+
+    @Override
+    public int sampleIndex() {
+        return sampleCurrentIndex();
+    }
+
+    public E sample() {
+        return elements.get(sampleCurrentIndex());
     }
 
     public List<E> sample(int n) {
@@ -31,4 +47,3 @@ public class ProportionalSamplerWithReplacement<E> extends AbstractProportionalS
         return selectedElements;
     }
 }
-
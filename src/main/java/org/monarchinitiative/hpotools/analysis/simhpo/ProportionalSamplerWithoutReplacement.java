@@ -1,45 +1,65 @@
 package org.monarchinitiative.hpotools.analysis.simhpo;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 public class ProportionalSamplerWithoutReplacement<E> extends ProportionalSamplerWithReplacement<E> implements IProportionalSampler<E> {
+    /** Index in {@link #initialElements} of each element that has not yet been sampled. */
+    private int[] initialIndices;
 
-    public ProportionalSamplerWithoutReplacement(List<E> elements, double[] probabilities, Random random) {
+    public ProportionalSamplerWithoutReplacement(List<E> elements, double[] probabilities, RandomGenerator random) {
         super(elements, probabilities, random);
+        this.initialIndices = identityIndices(elements.size());
+    }
+
+    private static int[] identityIndices(int n) {
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            indices[i] = i;
+        }
+        return indices;
     }
 
     @Override
-    public E sample() {
+    public int sampleIndex() {
         if (elements.isEmpty()) {
             throw new IllegalStateException("The list of elements is empty.");
         } else if (elements.size() == 1) {
-            E element = elements.get(0);
+            int index = initialIndices[0];
             elements = new ArrayList<E>();
-            return element;
+            initialIndices = new int[0];
+            return index;
         }
-        E sampled = super.sample();
-
-        int selectedIndex = elements.indexOf(sampled);
+        int selectedIndex = sampleCurrentIndex();
+        int sampled = initialIndices[selectedIndex];
 
         elements = new ArrayList<E>(elements);
         elements.remove(selectedIndex);
 
         double[] newProbabilities = new double[probabilities.length - 1];
+        int[] newInitialIndices = new int[initialIndices.length - 1];
         int j = 0;
         for (int i = 0; i < probabilities.length; i++) {
             if (i != selectedIndex) {
                 newProbabilities[j] = probabilities[i];
+                newInitialIndices[j] = initialIndices[i];
                 j++;
             }
         }
 
         probabilities = newProbabilities;
+        initialIndices = newInitialIndices;
 
         cumulativeProbabilities = cumulativeProbabilities();
 
         return sampled;
     }
 
+    @Override
+    public E sample() {
+        return elementAt(sampleIndex());
+    }
+
     @Override
     public List<E> sample(int n) {
         if (n < 0) {
@@ -54,5 +74,20 @@ public class ProportionalSamplerWithoutReplacement<E> extends ProportionalSample
         return selectedElements;
     }
 
-}
+    @Override
+    public int sampleIndices(int n, int[] out) {
+        if (n > elements.size()) {
+            throw new IllegalArgumentException("The number of samples must be less than the number of elements.");
+        }
+        return super.sampleIndices(n, out);
+    }
 
+    @Override
+    public void reset() {
+        elements = initialElements;
+        probabilities = initialProbabilities.clone();
+        initialIndices = identityIndices(elements.size());
+        cumulativeProbabilities = cumulativeProbabilities();
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Simulates the diseases of one {@link SimulationShard} in parts of {@link #DISEASES_PER_PART} diseases. Each part
+ * is written to a temporary file (or directory, for {@link PhenopacketOutputFormat#JSON}) that is renamed to
+ * {@code <prefix>.<shard>.part-NNNNN} when complete and then recorded in the {@link CheckpointManifest}
+ * {@code <prefix>.<shard>.manifest}. If the run is interrupted, rerunning it with the same parameters skips all
+ * recorded parts. Concatenating the parts in order gives the output of an unsharded run of the same diseases.
+ */
+public class ShardedCohortSimulation {
+    private final static Logger LOGGER = LoggerFactory.getLogger(ShardedCohortSimulation.class);
+    private final static int DISEASES_PER_PART = 100;
+    private final static String TMP_SUFFIX = ".tmp";
+
+    private final CohortSimulator simulator;
+    private final PhenopacketOutputFormat format;
+    private final boolean gzip;
+    private final int sinkQueueCapacity;
+
+    public ShardedCohortSimulation(CohortSimulator simulator, PhenopacketOutputFormat format, boolean gzip, int sinkQueueCapacity) {
+        this.simulator = simulator;
+        this.format = format;
+        this.gzip = gzip;
+        this.sinkQueueCapacity = sinkQueueCapacity;
+    }
+
+    /**
+     * @param diseaseIds the diseases of this shard, see {@link SimulationShard#select(List, long)}
+     * @param prefix path prefix of the parts and the manifest
+     * @param shard the shard that is simulated
+     * @param fingerprint description of the run parameters, to refuse resuming a run with other parameters
+     * @return number of phenopackets written by this invocation (excluding parts completed by earlier runs)
+     */
+    public long run(List<TermId> diseaseIds, Path prefix, SimulationShard shard, String fingerprint) throws IOException {
+        String base = prefix.getFileName() + "." + shard.label();
+        CheckpointManifest manifest = CheckpointManifest.open(prefix.resolveSibling(base + ".manifest"),
+                fingerprint + "\t" + shard.label() + "\t" + diseaseIds.size());
+        int nParts = (diseaseIds.size() + DISEASES_PER_PART - 1) / DISEASES_PER_PART;
+        long written = 0;
+        for (int part = 0; part < nParts; part++) {
+            if (manifest.isComplete(part)) {
+                LOGGER.debug("Skipping completed part {} of {}", part, shard.label());
+                continue;
+            }
+            List<TermId> partIds = diseaseIds.subList(part * DISEASES_PER_PART,
+                    Math.min(diseaseIds.size(), (part + 1) * DISEASES_PER_PART));
+            Path target = prefix.resolveSibling(String.format("%s.part-%05d", base, part));
+            Path tmp = target.resolveSibling(target.getFileName() + TMP_SUFFIX);
+            deleteRecursively(tmp); // left over from an interrupted run
+            long n;
+            try (PhenopacketSink sink = new AsyncPhenopacketSink(format.open(tmp, gzip), sinkQueueCapacity)) {
+                n = simulator.simulate(partIds, sink);
+            }
+            deleteRecursively(target);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            manifest.markComplete(part, n);
+            LOGGER.info("Completed part {} of {} ({} of {} parts)", part, shard.label(), part + 1, nParts);
+            written += n;
+        }
+        return written;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package org.monarchinitiative.hpotools.analysis.simhpo;
 
 import com.google.protobuf.Timestamp;
-import org.monarchinitiative.phenol.annotations.base.temporal.TemporalInterval;
-import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
-import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotation;
+import org.monarchinitiative.hpotools.analysis.graph.AncestorIndex;
 import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.phenopackets.phenopackettools.builder.PhenopacketBuilder;
@@ -14,29 +13,194 @@ import org.phenopackets.schema.v2.core.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.random.RandomGenerator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class SimulatedHpoDiseaseGenerator {
     private final static Logger LOGGER = LoggerFactory.getLogger(SimulatedHpoDiseaseGenerator.class);
     private final static int DEFAULT_NUMBER_OF_TERMS = 5;
-    private final static int DEFAULT_SEED = 42;
+    private final static long DEFAULT_SEED = 42;
+    private final static TermId PHENOTYPIC_ABNORMALITY = TermId.of("HP:0000118");
+    /** Maximum number of candidates tried for each unrelated random (or excluded) term. */
+    private final static int MAX_RANDOM_TERM_ATTEMPTS = 100;
+    /** Creation time if the HPO version contains no release date: 2000-01-01T00:00:00Z. */
+    private final static long FALLBACK_REFERENCE_SECONDS = 946_684_800L;
+    private final static Pattern RELEASE_DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private final static OntologyClass HOMO_SAPIENS = OntologyClass.newBuilder()
+            .setId("NCBITaxon:9606")
+            .setLabel("Homo Sapiens Sapiens")
+            .build();
+    /** The resources are the same for every simulated phenopacket. */
+    private final static List<Resource> RESOURCES = List.of(
+            Resource.newBuilder()
+                    .setId("hp")
+                    .setName("Human Phenotype Ontology")
+                    .setNamespacePrefix("HP")
+                    .setUrl("http://www.human-phenotype-ontology.org")
+                    .setIriPrefix("http://purl.obolibrary.org/obo/HP_")
+                    .build(),
+            Resource.newBuilder()
+                    .setId("omim")
+                    .setName("Online Mendeian Inheritance in Man")
+                    .setNamespacePrefix("OMIM")
+                    .setUrl("https://omim.org/")
+                    .setIriPrefix("https://omim.org/entry/") // TODO @pnrobinson: is this the correct IRI prefix?
+                    .build(),
+            Resource.newBuilder()
+                    .setId("ncbitaxon")
+                    .setName("NCBI Taxonomy")
+                    .setNamespacePrefix("NCBITaxon")
+                    .setUrl("https://www.ncbi.nlm.nih.gov/taxonomy")
+                    .setIriPrefix("https://www.ncbi.nlm.nih.gov/Taxonomy/Browser/wwwtax.cgi?id=")
+                    .build());
 
-    private final HpoDiseases hpoDiseases;
+    private final DiseaseModelStore diseaseModels;
 
     private final Ontology hpoOntology;
-    private final Random random;
+    /** Shared OntologyClass messages for the HPO terms and modifiers (and the simulated diseases). */
+    private final OntologyClassCache ontologyClasses;
+    /** Shared by all phenopackets of this generator, because the creation time is fixed. */
+    private final MetaData metaData;
+    /** All random streams are derived from this seed, see {@link #substream(TermId, long)}. */
+    private final long masterSeed;
+    /** Creation time (epoch seconds) written to every phenopacket, fixed so that reruns are reproducible. */
+    private final long referenceSeconds;
+    private final NoiseModel noise;
+    /** Number of excluded (negated) phenotypic features added to each case. */
+    private final int excludedTerms;
+    /** Ancestors of the Phenotypic abnormality terms, only built if noise or excluded terms need them. */
+    private final AncestorIndex ancestorIndex;
+    /**
+     * For each disease (lazily), the terms of {@link #ancestorIndex} that are annotated to the disease or are
+     * ancestors of an annotated term, i.e., the terms that must not be excluded.
+     */
+    private final AtomicReferenceArray<BitSet> annotationClosures;
 
-    private static int idCounter = 0;
+    private final AtomicInteger idCounter = new AtomicInteger();
 
     public SimulatedHpoDiseaseGenerator(HpoDiseases hpoDiseases, Ontology hpoOntology) {
-        this.hpoDiseases = hpoDiseases;
+        this(hpoDiseases, hpoOntology, DEFAULT_SEED);
+    }
+
+    public SimulatedHpoDiseaseGenerator(HpoDiseases hpoDiseases, Ontology hpoOntology, long masterSeed) {
+        this(hpoDiseases, hpoOntology, masterSeed, releaseSeconds(hpoOntology));
+    }
+
+    /**
+     * The default creation time of the simulated phenopackets. It is derived from the ontology rather than taken
+     * from the clock, so that two runs with the same seed write identical phenopackets.
+     * @return midnight (UTC) of the release date in the version of the ontology (e.g., 2024-01-01 or
+     * hp/releases/2024-01-01/hp.json), or of 2000-01-01 if the version contains no date
+     */
+    public static long releaseSeconds(Ontology hpoOntology) {
+        Optional<String> version = hpoOntology.version();
+        if (version.isPresent()) {
+            Matcher matcher = RELEASE_DATE.matcher(version.get());
+            if (matcher.find()) {
+                try {
+                    return LocalDate.parse(matcher.group()).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+                } catch (DateTimeException e) {
+                    LOGGER.warn("Could not parse the release date of HPO version {}", version.get());
+                }
+            }
+        }
+        return FALLBACK_REFERENCE_SECONDS;
+    }
+
+    /**
+     * @param masterSeed seed from which the random stream of each simulated case is derived
+     * @param referenceSeconds creation time (seconds since the epoch) recorded in the simulated phenopackets
+     */
+    public SimulatedHpoDiseaseGenerator(HpoDiseases hpoDiseases, Ontology hpoOntology, long masterSeed, long referenceSeconds) {
+        this(DiseaseModelStore.of(hpoDiseases), hpoOntology, masterSeed, referenceSeconds);
+    }
+
+    /**
+     * @param diseaseModels precompiled sampling tables, e.g., read from a file with {@link DiseaseModelStore#read}
+     * @param masterSeed seed from which the random stream of each simulated case is derived
+     * @param referenceSeconds creation time (seconds since the epoch) recorded in the simulated phenopackets
+     */
+    public SimulatedHpoDiseaseGenerator(DiseaseModelStore diseaseModels, Ontology hpoOntology, long masterSeed, long referenceSeconds) {
+        this(diseaseModels, hpoOntology, masterSeed, referenceSeconds, NoiseModel.NONE);
+    }
+
+    /**
+     * @param diseaseModels precompiled sampling tables, e.g., read from a file with {@link DiseaseModelStore#read}
+     * @param masterSeed seed from which the random stream of each simulated case is derived
+     * @param referenceSeconds creation time (seconds since the epoch) recorded in the simulated phenopackets
+     * @param noise phenotypic noise added to each simulated case
+     */
+    public SimulatedHpoDiseaseGenerator(DiseaseModelStore diseaseModels, Ontology hpoOntology, long masterSeed,
+                                        long referenceSeconds, NoiseModel noise) {
+        this(diseaseModels, hpoOntology, masterSeed, referenceSeconds, noise, 0);
+    }
+
+    /**
+     * @param diseaseModels precompiled sampling tables, e.g., read from a file with {@link DiseaseModelStore#read}
+     * @param masterSeed seed from which the random stream of each simulated case is derived
+     * @param referenceSeconds creation time (seconds since the epoch) recorded in the simulated phenopackets
+     * @param noise phenotypic noise added to each simulated case
+     * @param excludedTerms number of excluded phenotypic features added to each simulated case
+     */
+    public SimulatedHpoDiseaseGenerator(DiseaseModelStore diseaseModels, Ontology hpoOntology, long masterSeed,
+                                        long referenceSeconds, NoiseModel noise, int excludedTerms) {
+        if (excludedTerms < 0) {
+            throw new PhenolRuntimeException("Number of excluded terms must be non-negative but was " + excludedTerms);
+        }
+        this.diseaseModels = diseaseModels;
         this.hpoOntology = hpoOntology;
-        this.random = new Random(DEFAULT_SEED);
+        this.masterSeed = masterSeed;
+        this.referenceSeconds = referenceSeconds;
+        this.ontologyClasses = new OntologyClassCache(hpoOntology);
+        this.metaData = buildMetaData(referenceSeconds);
+        this.noise = noise;
+        this.excludedTerms = excludedTerms;
+        this.ancestorIndex = noise.isActive() || excludedTerms > 0
+                ? new AncestorIndex(hpoOntology, PHENOTYPIC_ABNORMALITY)
+                : null;
+        this.annotationClosures = new AtomicReferenceArray<>(diseaseModels.diseaseCount());
+    }
+
+    /**
+     * Get the random stream for one simulated case. The stream depends only on the master seed, the disease
+     * and the case index (and not on which thread asks for it, or in which order), so that a cohort simulated
+     * on one thread is identical to one simulated on many threads.
+     * @param diseaseId disease to be simulated
+     * @param caseIndex index of the case among the cases simulated for this disease
+     * @return a generator seeded deterministically from the master seed, disease and case index
+     */
+    public RandomGenerator.SplittableGenerator substream(TermId diseaseId, long caseIndex) {
+        long seed = mix64(masterSeed);
+        seed = mix64(seed ^ diseaseId.getValue().hashCode());
+        seed = mix64(seed ^ caseIndex);
+        return new SplittableRandom(seed);
     }
 
+    /** SplitMix64 finalizer, used to decorrelate the seeds of neighbouring substreams. */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
 
     public Optional<Phenopacket > generateSimulatedPhenopacket(TermId omimId) {
-        return generateSimulatedPhenopacket(omimId, DEFAULT_NUMBER_OF_TERMS, "SIM-" + SimulatedHpoDiseaseGenerator.idCounter++);
+        int caseIndex = idCounter.getAndIncrement();
+        return generateSimulatedPhenopacket(omimId, DEFAULT_NUMBER_OF_TERMS, "SIM-" + caseIndex, substream(omimId, caseIndex));
+    }
+
+    /**
+     * Generates a simulated Phenopacket using a random stream derived from the disease and the identifier.
+     * @see #generateSimulatedPhenopacket(TermId, int, String, RandomGenerator)
+     */
+    public Optional<Phenopacket > generateSimulatedPhenopacket(TermId omimId, int nTerms, String identifier) {
+        return generateSimulatedPhenopacket(omimId, nTerms, identifier, substream(omimId, identifier.hashCode()));
     }
 
     /**
@@ -51,23 +215,22 @@ public class SimulatedHpoDiseaseGenerator {
      *
      * @param omimId The OMIM ID representing the disease.
      * @param nTerms The number of HPO terms to select randomly from the disease annotations.
+     * @param identifier The identifier of the simulated phenopacket and individual.
+     * @param random The random stream for this case, usually obtained from {@link #substream(TermId, long)}.
      * @return An Optional containing the generated Phenopacket if successful, otherwise an empty Optional.
      */
-    public Optional<Phenopacket > generateSimulatedPhenopacket(TermId omimId, int nTerms, String identifier) {
+    public Optional<Phenopacket > generateSimulatedPhenopacket(TermId omimId, int nTerms, String identifier, RandomGenerator random) {
         long age = 0;
         int sex = 0;
         long onset = 0;
-        List<HpoDiseaseAnnotation> annotations;
-        if (hpoDiseases.diseaseById().containsKey(omimId)) {
-            HpoDisease disease = hpoDiseases.diseaseById().get(omimId);
-
+        int[] annotations;
+        int d = diseaseModels.indexOf(omimId);
+        if (d >= 0) {
             // Add onset to the phenopacket if possible
-            Optional<TemporalInterval> optOnsetRange = disease.diseaseOnset();
-            if (optOnsetRange.isPresent()) {
-                TemporalInterval onsetRange = optOnsetRange.get();
+            if (diseaseModels.hasOnset(d)) {
                 // choose a random onset from the range
-                int start = onsetRange.start().days();
-                int end = onsetRange.end().days();
+                int start = diseaseModels.onsetStartDays(d);
+                int end = diseaseModels.onsetEndDays(d);
                 onset = random.nextInt(start, end + 1);
             } else {
                 LOGGER.debug("No onset information available for disease {}", omimId.getValue());
@@ -79,52 +242,38 @@ public class SimulatedHpoDiseaseGenerator {
             }
 
             // Add random sex except for X-chromosomal recessive inheritance, in which case add male
-            List<TermId> modeOfInheritance = disease.modesOfInheritance();
-            String xChromosomalRecessiveHPO = "HP:0001419";
             int male = 2;
-            if (modeOfInheritance.contains(TermId.of(xChromosomalRecessiveHPO))) {
+            if (diseaseModels.isXLinkedRecessive(d)) {
                 sex = male;
             } else {
                 sex = random.nextInt(1, 3);
             }
 
-            double sum = disease.annotations().stream().mapToDouble(HpoDiseaseAnnotation::frequency).sum();
-
-            double[] probabilities = disease.annotations().stream()
-                    .mapToDouble(pf -> pf.frequency() / sum)
-                    .toArray();
-
             // Add annotations to the phenopacket
-            List<HpoDiseaseAnnotation> allAnnotations = (List<HpoDiseaseAnnotation>) disease.annotations();
-            ProportionalSamplerWithoutReplacement<HpoDiseaseAnnotation> prs = new ProportionalSamplerWithoutReplacement<>(allAnnotations, probabilities, random);
-
-            if (nTerms > allAnnotations.size()) {
+            int nAnnotations = diseaseModels.annotationCount(d);
+            if (nTerms > nAnnotations) {
                 LOGGER.warn("Requested number of terms ({}) is greater than the number of annotations ({}) for disease {}",
-                        nTerms, allAnnotations.size(), omimId.getValue());
-                nTerms = allAnnotations.size();
+                        nTerms, nAnnotations, omimId.getValue());
+                nTerms = nAnnotations;
             }
 
-            annotations = prs.sample(nTerms);
+            annotations = new int[nTerms];
+            diseaseModels.sampleAnnotations(d, nTerms, random, annotations);
         } else {
             LOGGER.error("Could not find OMIM identifier {}", omimId.getValue());
             return Optional.empty();
         }
-        long currentSeconds = System.currentTimeMillis() / 1000;
+        long currentSeconds = referenceSeconds;
         Individual subject = Individual.newBuilder()
                 .setId(identifier)
                 .setDateOfBirth(Timestamp.newBuilder().setSeconds(currentSeconds - (age / 24 / 60 / 60)))
                 .setSex(Sex.forNumber(sex))
-                .setTaxonomy(OntologyClass.newBuilder()
-                        .setId("NCBITaxon:9606")
-                        .setLabel("Homo Sapiens Sapiens")
-                        .build())
+                .setTaxonomy(HOMO_SAPIENS)
                 .build();
         Disease disease;
         if (onset > 0) {
             disease = Disease.newBuilder()
-                    .setTerm(OntologyClass.newBuilder()
-                            .setId(omimId.getValue())
-                            .build())
+                    .setTerm(ontologyClasses.get(omimId))
                     .setOnset(TimeElement.newBuilder()
                             .setTimestamp(Timestamp.newBuilder()
                                     .setSeconds(currentSeconds - onset / 24 / 60 / 60)  // days to seconds
@@ -133,33 +282,22 @@ public class SimulatedHpoDiseaseGenerator {
                     .build();
         } else {
             disease = Disease.newBuilder()
-                    .setTerm(OntologyClass.newBuilder()
-                            .setId(omimId.getValue())
-                            .build())
+                    .setTerm(ontologyClasses.get(omimId))
                     .build();
         }
-        List<PhenotypicFeature> phenotypicFeatures = new ArrayList<>();
-        for (HpoDiseaseAnnotation annotation : annotations) {
-            TermId hpoTerm = annotation.id();
-            OntologyClass type = OntologyClass.newBuilder()
-                    .setId(hpoTerm.getValue())
-                    .setLabel(hpoOntology.getTermLabel(hpoTerm).orElse(""))
-                    .build();
-
-            List<OntologyClass> modifiers = annotation.modifiers()
-                    .stream()
-                    .map(modifier -> OntologyClass.newBuilder()
-                        .setId(modifier.getValue())
-                        .setLabel(hpoOntology.getTermLabel(modifier).orElse(""))
-                        .build()
-                    ).toList();
-            // TODO: could still add simulated onset and resolution in the future, is present in HpoDiseaseAnnotation
-            phenotypicFeatures.add(PhenotypicFeature.newBuilder()
-                    .setType(type)
-                    .addAllModifiers(modifiers)
-                    .build());
+        List<PhenotypicFeature> phenotypicFeatures;
+        if (noise.isActive()) {
+            phenotypicFeatures = noisyFeatures(d, annotations, random);
+        } else {
+            phenotypicFeatures = new ArrayList<>(annotations.length);
+            for (int annotation : annotations) {
+                phenotypicFeatures.add(feature(diseaseModels.annotationTermId(annotation), diseaseModels.modifiers(annotation)));
+            }
+        }
+        if (excludedTerms > 0) {
+            addExcludedFeatures(d, phenotypicFeatures, random);
         }
-        PhenopacketBuilder builder = PhenopacketBuilder.create(identifier, buildMetaData(currentSeconds))
+        PhenopacketBuilder builder = PhenopacketBuilder.create(identifier, metaData)
                 .individual(subject) // TODO: @pnrobinson for all other fields it's add... for individual it isn't?
                 .addDisease(disease)
                 .addPhenotypicFeatures(phenotypicFeatures);
@@ -167,34 +305,175 @@ public class SimulatedHpoDiseaseGenerator {
         return Optional.of(phenopacket); // return the phenopacket unless there is an error
     }
 
-    private MetaData buildMetaData(long currentSeconds) {
+    private PhenotypicFeature feature(TermId termId, List<TermId> modifiers) {
+        PhenotypicFeature.Builder feature = PhenotypicFeature.newBuilder()
+                .setType(ontologyClasses.get(termId));
+        for (TermId modifier : modifiers) {
+            feature.addModifiers(ontologyClasses.get(modifier));
+        }
+        // TODO: could still add simulated onset and resolution in the future, is present in HpoDiseaseAnnotation
+        return feature.build();
+    }
+
+    /**
+     * Apply the {@link NoiseModel} to the sampled annotations: each term is dropped (but at least one is kept) or
+     * replaced by a random ancestor with the configured probabilities, and then random terms that are unrelated to
+     * any annotation of the disease are added. The random stream is consumed in the same order regardless of
+     * threading, so noisy cohorts remain reproducible.
+     */
+    private List<PhenotypicFeature> noisyFeatures(int disease, int[] annotations, RandomGenerator random) {
+        List<PhenotypicFeature> features = new ArrayList<>(annotations.length + noise.randomTerms());
+        for (int i = 0; i < annotations.length; i++) {
+            int annotation = annotations[i];
+            boolean isLast = i == annotations.length - 1;
+            if (noise.dropRate() > 0.0 && random.nextDouble() < noise.dropRate() && !(isLast && features.isEmpty())) {
+                continue;
+            }
+            TermId termId = diseaseModels.annotationTermId(annotation);
+            if (noise.ancestorRate() > 0.0 && random.nextDouble() < noise.ancestorRate()) {
+                termId = randomAncestor(termId, random);
+            }
+            features.add(feature(termId, diseaseModels.modifiers(annotation)));
+        }
+        if (noise.randomTerms() > 0) {
+            int[] related = annotatedTermIndices(disease);
+            int[] added = new int[noise.randomTerms()];
+            int nAdded = 0;
+            for (int attempt = 0; attempt < MAX_RANDOM_TERM_ATTEMPTS * noise.randomTerms() && nAdded < added.length; attempt++) {
+                int candidate = random.nextInt(ancestorIndex.size());
+                if (ancestorIndex.termId(candidate).equals(PHENOTYPIC_ABNORMALITY)
+                        || isRelatedToAny(candidate, related, related.length)
+                        || isRelatedToAny(candidate, added, nAdded)) {
+                    continue;
+                }
+                added[nAdded++] = candidate;
+                features.add(feature(ancestorIndex.termId(candidate), List.of()));
+            }
+            if (nAdded < added.length) {
+                LOGGER.debug("Could only add {} of {} unrelated random terms for disease {}",
+                        nAdded, added.length, diseaseModels.diseaseId(disease).getValue());
+            }
+        }
+        return features;
+    }
+
+    /**
+     * Add {@link #excludedTerms} excluded features, chosen uniformly among the Phenotypic abnormality terms that are
+     * neither annotated to the disease nor ancestors of an annotated term (nor of one of the observed features,
+     * which may include random noise terms). We draw candidates from the whole subtree and reject those in the
+     * annotation closure of the disease. Since the closure is small compared to the subtree, this takes O(N)
+     * draws per case and never materializes the complement.
+     */
+    private void addExcludedFeatures(int disease, List<PhenotypicFeature> features, RandomGenerator random) {
+        BitSet closure = annotationClosure(disease);
+        int[] observed = new int[features.size()];
+        int nObserved = 0;
+        for (PhenotypicFeature feature : features) {
+            int index = ancestorIndex.indexOf(TermId.of(feature.getType().getId()));
+            if (index >= 0) {
+                observed[nObserved++] = index;
+            }
+        }
+        int[] excluded = new int[excludedTerms];
+        int nExcluded = 0;
+        for (int attempt = 0; attempt < MAX_RANDOM_TERM_ATTEMPTS * excludedTerms && nExcluded < excluded.length; attempt++) {
+            int candidate = random.nextInt(ancestorIndex.size());
+            if (closure.get(candidate)
+                    || isAncestorOrSelfOfAny(candidate, observed, nObserved)
+                    || contains(excluded, nExcluded, candidate)) {
+                continue;
+            }
+            excluded[nExcluded++] = candidate;
+            features.add(PhenotypicFeature.newBuilder()
+                    .setType(ontologyClasses.get(ancestorIndex.termId(candidate)))
+                    .setExcluded(true)
+                    .build());
+        }
+        if (nExcluded < excluded.length) {
+            LOGGER.debug("Could only add {} of {} excluded terms for disease {}",
+                    nExcluded, excluded.length, diseaseModels.diseaseId(disease).getValue());
+        }
+    }
+
+    /** @return the annotated terms of the disease and all of their ancestors (and the root), computed once per disease */
+    private BitSet annotationClosure(int disease) {
+        BitSet closure = annotationClosures.get(disease);
+        if (closure == null) {
+            closure = new BitSet(ancestorIndex.size());
+            closure.set(ancestorIndex.indexOf(PHENOTYPIC_ABNORMALITY));
+            for (int index : annotatedTermIndices(disease)) {
+                closure.set(index);
+                for (int k = 0; k < ancestorIndex.ancestorCount(index); k++) {
+                    closure.set(ancestorIndex.ancestor(index, k));
+                }
+            }
+            // if another thread was faster, use its (identical) closure
+            if (!annotationClosures.compareAndSet(disease, null, closure)) {
+                closure = annotationClosures.get(disease);
+            }
+        }
+        return closure;
+    }
+
+    private boolean isAncestorOrSelfOfAny(int candidate, int[] terms, int length) {
+        for (int i = 0; i < length; i++) {
+            if (candidate == terms[i] || ancestorIndex.isProperAncestor(candidate, terms[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return a uniformly chosen ancestor of the term below Phenotypic abnormality, or the term itself if there is none */
+    private TermId randomAncestor(TermId termId, RandomGenerator random) {
+        int index = ancestorIndex.indexOf(termId);
+        if (index < 0 || ancestorIndex.ancestorCount(index) == 0) {
+            return termId;
+        }
+        return ancestorIndex.termId(ancestorIndex.ancestor(index, random.nextInt(ancestorIndex.ancestorCount(index))));
+    }
+
+    /** @return the indices in {@link #ancestorIndex} of the terms annotated to the disease (except those outside the subtree) */
+    private int[] annotatedTermIndices(int disease) {
+        int from = diseaseModels.firstAnnotation(disease);
+        int n = diseaseModels.annotationCount(disease);
+        int[] indices = new int[n];
+        int k = 0;
+        for (int a = from; a < from + n; a++) {
+            int index = ancestorIndex.indexOf(diseaseModels.annotationTermId(a));
+            if (index >= 0) {
+                indices[k++] = index;
+            }
+        }
+        return Arrays.copyOf(indices, k);
+    }
+
+    private boolean isRelatedToAny(int candidate, int[] terms, int length) {
+        for (int i = 0; i < length; i++) {
+            if (ancestorIndex.areRelated(candidate, terms[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MetaData buildMetaData(long currentSeconds) {
         return MetaData.newBuilder()
                 .setCreated(Timestamp
                         .newBuilder()
                         .setSeconds(currentSeconds))
                 .setCreatedBy("SimulatedHpoDiseaseGenerator")
                 .setPhenopacketSchemaVersion("2.0")
-                .addResources(Resource.newBuilder()
-                        .setId("hp")
-                        .setName("Human Phenotype Ontology")
-                        .setNamespacePrefix("HP")
-                        .setUrl("http://www.human-phenotype-ontology.org")
-                        .setIriPrefix("http://purl.obolibrary.org/obo/HP_")
-                        .build())
-                .addResources(1, Resource.newBuilder()
-                        .setId("omim")
-                        .setName("Online Mendeian Inheritance in Man")
-                        .setNamespacePrefix("OMIM")
-                        .setUrl("https://omim.org/")
-                        .setIriPrefix("https://omim.org/entry/") // TODO @pnrobinson: is this the correct IRI prefix?
-                        .build())
-                .addResources(2, Resource.newBuilder()
-                        .setId("ncbitaxon")
-                        .setName("NCBI Taxonomy")
-                        .setNamespacePrefix("NCBITaxon")
-                        .setUrl("https://www.ncbi.nlm.nih.gov/taxonomy")
-                        .setIriPrefix("https://www.ncbi.nlm.nih.gov/Taxonomy/Browser/wwwtax.cgi?id=")
-                        .build())
+                .addAllResources(RESOURCES)
                 .build();
     }
 
@@ -0,0 +1,81 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * One of {@code count} shards of a simulation campaign, so that the diseases can be simulated by several
+ * processes or machines. The diseases are assigned to shards by shuffling the disease list with the master
+ * seed and dealing the shuffled list round-robin, which gives shards of (almost) equal size that depend only
+ * on the disease list and the seed.
+ * @param index one-based index of this shard
+ * @param count total number of shards
+ */
+public record SimulationShard(int index, int count) {
+
+    /** The whole campaign in a single shard. */
+    public static final SimulationShard ALL = new SimulationShard(1, 1);
+
+    public SimulationShard {
+        if (count < 1 || index < 1 || index > count) {
+            throw new PhenolRuntimeException("Invalid shard " + index + "/" + count
+                    + ": expected i/N with 1 <= i <= N");
+        }
+    }
+
+    /**
+     * @param shard a shard in the form {@code i/N}, e.g., {@code 2/8}
+     */
+    public static SimulationShard parse(String shard) {
+        String[] fields = shard.trim().split("/");
+        if (fields.length != 2) {
+            throw new PhenolRuntimeException("Malformed shard \"" + shard + "\": expected i/N, e.g., 2/8");
+        }
+        try {
+            return new SimulationShard(Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new PhenolRuntimeException("Malformed shard \"" + shard + "\": expected i/N, e.g., 2/8");
+        }
+    }
+
+    /**
+     * @param diseaseIds all diseases of the campaign
+     * @param seed master seed of the campaign
+     * @return the diseases of this shard, in the order of the complete list
+     */
+    public List<TermId> select(List<TermId> diseaseIds, long seed) {
+        int n = diseaseIds.size();
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutation[i] = i;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+        int[] selected = new int[(n + count - 1) / count];
+        int k = 0;
+        for (int p = index - 1; p < n; p += count) {
+            selected[k++] = permutation[p];
+        }
+        Arrays.sort(selected, 0, k);
+        List<TermId> shardIds = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            shardIds.add(diseaseIds.get(selected[i]));
+        }
+        return shardIds;
+    }
+
+    /** @return a label for file names, e.g., {@code shard-2-of-8} */
+    public String label() {
+        return "shard-" + index + "-of-" + count;
+    }
+}
@@ -0,0 +1,50 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import com.google.protobuf.TextFormat;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Writes phenopackets in the protobuf text format to a single file (or to standard output). Each phenopacket
+ * is preceded by a comment line with its identifier.
+ */
+public class TextPhenopacketSink implements PhenopacketSink {
+
+    private final Writer writer;
+    private final boolean closeWriter;
+
+    public TextPhenopacketSink(Path path) throws IOException {
+        this(path, false);
+    }
+
+    public TextPhenopacketSink(Path path, boolean gzip) throws IOException {
+        this.writer = new OutputStreamWriter(PhenopacketOutputFormat.openStream(path, gzip), StandardCharsets.UTF_8);
+        this.closeWriter = true;
+    }
+
+    /** Write to standard output, which is flushed but not closed by {@link #close()}. */
+    public TextPhenopacketSink() {
+        this.writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        this.closeWriter = false;
+    }
+
+    @Override
+    public void write(Phenopacket phenopacket) throws IOException {
+        writer.write("# ");
+        writer.write(phenopacket.getId());
+        writer.write("\n");
+        TextFormat.printer().print(phenopacket, writer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeWriter) {
+            writer.close();
+        } else {
+            writer.flush();
+        }
+    }
+}
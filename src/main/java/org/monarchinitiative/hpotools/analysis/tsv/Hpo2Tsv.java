@@ -1,5 +1,6 @@
 package org.monarchinitiative.hpotools.analysis.tsv;
 
+import org.monarchinitiative.hpotools.analysis.graph.CsrOntologyGraph;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
 import org.monarchinitiative.phenol.ontology.data.*;
 import org.slf4j.Logger;
@@ -17,20 +18,27 @@ public class Hpo2Tsv {
     private final File outfile;
     private final Ontology ontology;
     private final TermId targetTermId;
+    private final CsrOntologyGraph graph;
 
 
     public Hpo2Tsv(File outfile, Ontology ontology, TermId targetTermId) {
         this.outfile = outfile;
         this.ontology = ontology;
         this.targetTermId = targetTermId;
+        this.graph = CsrOntologyGraph.of(ontology);
     }
 
     public void createTsvFile() {
         List<String> lineList = new ArrayList<>();
         Optional<Term> targetOpt = ontology.termForTermId(targetTermId);
         targetOpt.ifPresent(term -> lineList.add(getTsvLine(term)));
-        Iterable<TermId> children = ontology.graph().getDescendants(targetTermId);
-        for (TermId tid : children) {
+        int target = graph.indexOf(targetTermId);
+        if (target < 0) {
+            throw new PhenolRuntimeException("Could not find " + targetTermId.getValue() + " in the ontology");
+        }
+        // level order, so that each term comes after the more general terms above it
+        for (int i : graph.descendantsInLevelOrder(target)) {
+            TermId tid = graph.termId(i);
             Optional<Term> opt = ontology.termForTermId(tid);
             if (opt.isPresent()) {
                 lineList.add(getTsvLine(opt.get()));
@@ -60,26 +68,15 @@ public class Hpo2Tsv {
         String label = term.getName();
         String id = term.id().getValue();
         String synString = term.getSynonyms().stream().map(TermSynonym::getValue).collect(Collectors.joining(", "));
-        Set<TermId> parent_id_set = ontology.graph().getParents(term.id());
-        Set<String> parent_label_set = new HashSet<>();
-        for (TermId parentId : parent_id_set) {
-            Optional<String> opt = ontology.getTermLabel(parentId);
-            if (opt.isPresent()) {
-                parent_label_set.add(opt.get());
-            } else {
-                throw new PhenolRuntimeException("Could not get label for " + parentId.getValue() + " (should never happen)");
-            }
+        int index = graph.indexOf(term.id());
+        Set<String> parent_label_set = new LinkedHashSet<>();
+        for (int k = 0; k < graph.parentCount(index); k++) {
+            parent_label_set.add(getLabel(graph.termId(graph.parent(index, k))));
         }
         String parentString = String.join(", ", parent_label_set);
-        Set<TermId> child_id_set = ontology.graph().getChildren(term.id());
-        Set<String> child_label_set = new HashSet<>();
-        for (TermId childId : child_id_set) {
-            Optional<String> opt = ontology.getTermLabel(childId);
-            if (opt.isPresent()) {
-                child_label_set.add(opt.get());
-            } else {
-                throw new PhenolRuntimeException("Could not get label for " + childId.getValue() + " (should never happen)");
-            }
+        Set<String> child_label_set = new LinkedHashSet<>();
+        for (int k = 0; k < graph.childCount(index); k++) {
+            child_label_set.add(getLabel(graph.termId(graph.child(index, k))));
         }
         String childString = String.join(", ", child_label_set);
         String definition = term.getDefinition();
@@ -94,4 +91,12 @@ public class Hpo2Tsv {
         List<String> items = List.of(label, id, synString, parentString, childString, definition, comment, pmidString);
         return String.join("\t", items);
     }
+
+    private String getLabel(TermId termId) {
+        Optional<String> opt = ontology.getTermLabel(termId);
+        if (opt.isPresent()) {
+            return opt.get();
+        }
+        throw new PhenolRuntimeException("Could not get label for " + termId.getValue() + " (should never happen)");
+    }
 }
@@ -0,0 +1,61 @@
+package org.monarchinitiative.hpotools.cmd;
+
+import org.monarchinitiative.hpotools.serve.ServeProtocol;
+import picocli.CommandLine;
+
+import java.io.*;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(name = "client",
+        mixinStandardHelpOptions = true,
+        description = "Run a subcommand on a running hpotools server (see serve)")
+public class ClientCommand implements Callable<Integer> {
+
+    @CommandLine.Option(names={"--socket"}, description = "Unix-domain socket of the server (default: ${DEFAULT-VALUE})")
+    private Path socket = ServeProtocol.defaultSocket();
+
+    @CommandLine.Parameters(arity = "1..*", paramLabel = "ARGS", description = "subcommand and its arguments")
+    private List<String> args;
+
+    @Override
+    public Integer call() throws IOException {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            System.err.println("[ERROR] No hpotools server is listening on " + socket + "; start one with: hpotools serve");
+            return 1;
+        }
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            ServeProtocol.writeRequest(out, Path.of("").toAbsolutePath().toString(), args);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[1 << 13];
+            while (true) {
+                byte frame = in.readByte();
+                if (frame == ServeProtocol.EXIT) {
+                    System.out.flush();
+                    return in.readInt();
+                }
+                PrintStream target = frame == ServeProtocol.STDERR ? System.err : System.out;
+                int remaining = in.readInt();
+                while (remaining > 0) {
+                    int n = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                    if (n < 0) {
+                        throw new EOFException("Connection to server closed");
+                    }
+                    target.write(buffer, 0, n);
+                    remaining -= n;
+                }
+            }
+        } catch (EOFException e) {
+            System.err.println("[ERROR] The server closed the connection before the command finished");
+            return 1;
+        }
+    }
+}
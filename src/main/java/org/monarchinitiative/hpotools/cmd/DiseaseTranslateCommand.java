@@ -1,29 +1,14 @@
 package org.monarchinitiative.hpotools.cmd;
 
 
+import org.monarchinitiative.hpotools.analysis.mondo.DiseaseTranslator;
 import org.monarchinitiative.hpotools.analysis.mondo.MondoFromOmimMapper;
-import org.monarchinitiative.hpotools.analysis.mondo.NarrowAndBroadTerms;
-import org.monarchinitiative.hpotools.analysis.mondo.PpktResolver;
-import org.monarchinitiative.hpotools.analysis.mondo.PpktStoreItem;
-import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
-import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
-import org.monarchinitiative.phenol.annotations.io.hpo.DiseaseDatabase;
-import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoader;
-import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaderOptions;
-import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaders;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
-import org.monarchinitiative.phenol.io.OntologyLoader;
-import org.monarchinitiative.phenol.ontology.data.Ontology;
-import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
 import java.io.*;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
 import java.util.concurrent.Callable;
 
 @CommandLine.Command(name = "onset",
@@ -41,40 +26,29 @@ public class DiseaseTranslateCommand extends HPOCommand implements Callable<Inte
     private String infilePath;
     @CommandLine.Option(names={"--outfile"}, description = "path to outfile")
     private String outfilePath = "disease_mappings.tsv";
+    @CommandLine.Option(names={"--misses"}, description = "path to file for lines that could not be translated")
+    private String missesPath = "disease_mappings_misses.tsv";
+    @CommandLine.Option(names={"-t", "--threads"}, description = "number of worker threads (default: all cores)")
+    private int threads = Runtime.getRuntime().availableProcessors();
 
     @Override
     public Integer call() throws Exception {
-
-        Ontology mondo = OntologyLoader.loadOntology(new File(mondopath));
-        MondoFromOmimMapper mapper = new MondoFromOmimMapper(mondo);
-        List<String> rowList = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(infilePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String [] fields = line.split("\t");
-                if (fields.length != 2) {
-                    System.err.println("malformed line " + line);
-                } else {
-                    List<String> items = mapper.getMappings(fields[0], fields[1]);
-                    String row = String.join("\t", items);
-                    rowList.add(row);
-                }
-            }
+        // the mappings only need the xrefs and labels, so mondo.json is only loaded if they are not cached
+        File mondoFile = file(mondopath);
+        MondoFromOmimMapper mapper = new MondoFromOmimMapper(loadMondoXrefIndex(mondoFile, () -> loadOntology(mondoFile)));
+        DiseaseTranslator translator = new DiseaseTranslator(mapper, threads);
+        DiseaseTranslator.Stats stats;
+        try (BufferedReader br = new BufferedReader(new FileReader(file(infilePath)), 1 << 16);
+             BufferedWriter bw = new BufferedWriter(new FileWriter(file(outfilePath)), 1 << 16);
+             BufferedWriter missWriter = new BufferedWriter(new FileWriter(file(missesPath)))) {
+            stats = translator.translate(br, bw, missWriter);
         } catch (IOException e) {
             throw new PhenolRuntimeException(e);
         }
-        for (String line : rowList) {
-            System.out.println(line);
-        }
-
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outfilePath))) {
-            for (String line : rowList) {
-                bw.write(line + "\n");
-            }
-        }
+        System.out.printf("Wrote %d mappings to %s and %d lines that could not be translated (%d with an ambiguous OMIM id) to %s.\n",
+                stats.mapped(), outfilePath, stats.missed(), stats.ambiguous(), missesPath);
         return 0;
     }
 
 
 }
-
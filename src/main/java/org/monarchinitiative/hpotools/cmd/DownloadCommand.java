@@ -7,7 +7,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
-import java.nio.file.Path;
 import java.util.concurrent.Callable;
 
 
@@ -44,7 +43,7 @@ public final class DownloadCommand extends HPOCommand implements Callable<Intege
     @Override
     public Integer call()  {
         try {
-            BioDownloader downloader = BioDownloader.builder(Path.of(downloadDirectory))
+            BioDownloader downloader = BioDownloader.builder(path(downloadDirectory))
                     .overwrite(overwrite)
                     .hpoJson()
                     .mondoJson()
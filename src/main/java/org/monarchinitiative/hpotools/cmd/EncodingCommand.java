@@ -1,6 +1,7 @@
 package org.monarchinitiative.hpotools.cmd;
 
 import org.monarchinitiative.hpotools.analysis.EncodingCheck;
+import org.monarchinitiative.hpotools.serve.RequestDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -26,6 +27,7 @@ public class EncodingCommand  implements Callable<Integer> {
 
     @Override
     public Integer call() {
+        File hpoOwlFile = RequestDirectory.resolve(this.hpoOwlFile);
         if (! hpoOwlFile.isFile()) {
             System.err.printf("[ERROR] could not find hp-edit.owl file at %s\n.", hpoOwlFile.getAbsolutePath());
         }
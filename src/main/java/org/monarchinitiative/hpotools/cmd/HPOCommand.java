@@ -1,14 +1,29 @@
 package org.monarchinitiative.hpotools.cmd;
 
 
+import org.monarchinitiative.hpotools.analysis.OntologySnapshot;
+import org.monarchinitiative.hpotools.analysis.mondo.MondoXrefCache;
+import org.monarchinitiative.hpotools.analysis.mondo.MondoXrefIndex;
+import org.monarchinitiative.hpotools.serve.RequestDirectory;
+import org.monarchinitiative.hpotools.serve.ResidentCache;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
 import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Super class for all commands, i.e. the classes implementing one HpoWorkbench execution step.
@@ -16,6 +31,7 @@ import java.util.Map;
  * @author <a href="mailto:peter.robinson@jax.org">Peter Robinson</a>
  */
 public abstract class HPOCommand {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HPOCommand.class);
 
     @CommandLine.Option(names={"-d","--download"},description = "directory to download HPO data")
     protected String downloadDirectory="data";
@@ -23,6 +39,8 @@ public abstract class HPOCommand {
     protected String annotpath="data/phenotype.hpoa";
     @CommandLine.Option(names={"--hpo"}, description = "path to hp.json")
     protected String hpopath ="data/hp.json";
+    @CommandLine.Option(names={"--no-snapshot"}, description = "always parse the ontology JSON files (do not read or write binary snapshots and caches)")
+    protected boolean noSnapshot = false;
 
     protected Map<String,String> defaults=new HashMap<>();
 
@@ -32,8 +50,21 @@ public abstract class HPOCommand {
         return this;
     }
 
+    /**
+     * @return the path given in an option; when running as a server, a relative path is resolved against the
+     * working directory of the client
+     * @see RequestDirectory
+     */
+    protected static Path path(String path) {
+        return RequestDirectory.resolve(path);
+    }
+
+    protected static File file(String path) {
+        return path(path).toFile();
+    }
+
     protected File getHpoJsonFile() {
-        File f = new File(hpopath);
+        File f = file(hpopath);
         if (! f.isFile()) {
             throw new PhenolRuntimeException("Could not find hp.json file at " + hpopath);
         }
@@ -42,7 +73,145 @@ public abstract class HPOCommand {
 
     protected Ontology getHpOntology() {
         File f = getHpoJsonFile();
-        return OntologyLoader.loadOntology(f);
+        return loadOntology(f);
+    }
+
+    /**
+     * Load an ontology JSON file (hp.json, mondo.json), from its binary snapshot if there is an up-to-date one.
+     * When running as a server, the ontology is loaded once and shared by all requests.
+     * @see OntologySnapshot
+     * @see ResidentCache
+     */
+    protected Ontology loadOntology(File jsonFile) {
+        return ResidentCache.get("ontology", jsonFile.toPath(), "", () -> {
+            if (noSnapshot) {
+                return OntologyLoader.loadOntology(jsonFile);
+            }
+            return OntologySnapshot.load(jsonFile);
+        });
+    }
+
+    /**
+     * Get the xref index of mondo.json, from its {@link MondoXrefCache} if there is an up-to-date one (then the
+     * ontology is not needed). When running as a server, the index is built once and shared by all Mondo-related
+     * requests.
+     * @param mondo supplies the ontology loaded from {@code mondoJson} if the index must be built
+     * @see MondoXrefIndex
+     */
+    protected MondoXrefIndex loadMondoXrefIndex(File mondoJson, Supplier<Ontology> mondo) {
+        return ResidentCache.get("mondo xrefs", mondoJson.toPath(), "", () -> {
+            if (noSnapshot) {
+                return MondoXrefIndex.of(mondo.get());
+            }
+            return MondoXrefCache.load(mondoJson, mondo);
+        });
+    }
+
+    /**
+     * Start reading the (possibly gzipped) annotation file into memory, so that this overlaps with loading the
+     * ontology that is needed to parse it. When running as a server, the parsed annotations are usually resident,
+     * so the file is then only read if it is actually needed.
+     */
+    protected static LoadingStage.Step<byte[]> readAnnotations(LoadingStage loading, Path annotPath) {
+        return ResidentCache.isEnabled()
+                ? loading.defer(annotPath.toString(), () -> readAnnotationFile(annotPath))
+                : loading.submit(annotPath.toString(), () -> readAnnotationFile(annotPath));
+    }
+
+    /** @return the contents of the annotation file, decompressed if it is gzipped */
+    protected static byte[] readAnnotationFile(Path annotPath) throws IOException {
+        byte[] bytes = Files.readAllBytes(annotPath);
+        if (bytes.length > 1 && (bytes[0] & 0xff) == 0x1f && (bytes[1] & 0xff) == 0x8b) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                return in.readAllBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Runs the independent loading steps of a command (parsing ontology JSON files, reading annotation or TSV
+     * files, indexing directories) concurrently, so that the command waits roughly as long as the slowest step
+     * instead of the sum of all steps. Steps that depend on each other are chained by the command, e.g., by
+     * joining the ontology step inside a later step.
+     * <pre>
+     * try (LoadingStage loading = new LoadingStage()) {
+     *     LoadingStage.Step&lt;Ontology&gt; mondo = loading.submit("mondo.json", () -&gt; loadOntology(mondoFile));
+     *     LoadingStage.Step&lt;List&lt;PpktStoreItem&gt;&gt; items = loading.submit("phenopackets", () -&gt; parse(tsv));
+     *     ...  mondo.join() ... items.join()
+     * }
+     * </pre>
+     */
+    protected static final class LoadingStage implements AutoCloseable {
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        /** The result of one loading step. */
+        public static final class Step<T> {
+            private final String description;
+            private final Future<T> future;
+            /** Non-null for a deferred step, which is run by the first call to {@link #join()}. */
+            private final RunnableFuture<T> deferred;
+
+            private Step(String description, Future<T> future, RunnableFuture<T> deferred) {
+                this.description = description;
+                this.future = future;
+                this.deferred = deferred;
+            }
+
+            /**
+             * Wait for the step to complete.
+             * @return the loaded input
+             * @throws RuntimeException the exception thrown by the step (checked exceptions are wrapped into a
+             * {@link PhenolRuntimeException})
+             */
+            public T join() {
+                if (deferred != null) {
+                    deferred.run(); // no-op if it has already run
+                }
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new PhenolRuntimeException("Interrupted while loading " + description, e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException re) {
+                        throw re;
+                    } else if (cause instanceof Error err) {
+                        throw err;
+                    }
+                    throw new PhenolRuntimeException("Could not load " + description + ": " + cause.getMessage(), cause);
+                }
+            }
+        }
+
+        /**
+         * Start a loading step in the background.
+         * @param description what is loaded, for log and error messages
+         */
+        public <T> Step<T> submit(String description, Callable<T> loader) {
+            return new Step<>(description, executor.submit(() -> {
+                long start = System.nanoTime();
+                T value = loader.call();
+                LOGGER.info("Loaded {} in {} ms", description, (System.nanoTime() - start) / 1_000_000);
+                return value;
+            }), null);
+        }
+
+        /**
+         * A step that is only run (in the calling thread) when its result is needed, for inputs that are often not
+         * needed at all, e.g., because a cached result is available.
+         */
+        public <T> Step<T> defer(String description, Callable<T> loader) {
+            FutureTask<T> task = new FutureTask<>(loader);
+            return new Step<>(description, task, task);
+        }
+
+        /** Interrupts the steps that are still running, e.g., if another step failed. */
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
     }
 
-}
\ No newline at end of file
+}
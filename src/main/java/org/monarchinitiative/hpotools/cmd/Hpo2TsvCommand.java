@@ -46,7 +46,7 @@ public class Hpo2TsvCommand extends HPOCommand implements Callable<Integer> {
         String name = targetTerm.getName().replaceAll(" ", "_");
         String id = targetTerm.id().getValue().replaceAll(":", "_");
         String outfilename = String.format("%s_%s.tsv", name, id);
-        Hpo2Tsv tsv = new Hpo2Tsv(new File(outfilename), hpOntology, targetTerm.id());
+        Hpo2Tsv tsv = new Hpo2Tsv(file(outfilename), hpOntology, targetTerm.id());
         tsv.createTsvFile();
         return 0;
     }
@@ -2,8 +2,8 @@ package org.monarchinitiative.hpotools.cmd;
 
 import org.monarchinitiative.hpotools.analysis.mondo.*;
 import org.monarchinitiative.hpotools.analysis.OntologyTerm;
+import org.monarchinitiative.hpotools.serve.RequestDirectory;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
-import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.Term;
 import org.monarchinitiative.phenol.ontology.data.TermId;
@@ -37,14 +37,31 @@ public class MondoCommand extends HPOCommand implements Callable<Integer> {
 
     @Override
     public Integer call() {
+        File all_phenopackets = RequestDirectory.resolve(this.all_phenopackets);
         File all_ppkt_tsv = new File(all_phenopackets + File.separator + "all_phenopackets.tsv");
         if (!all_ppkt_tsv.exists()) {
             throw new PhenolRuntimeException("Could not find all_phenopackets.tsv");
         }
-        List<PpktStoreItem> ppktList = parseNewPhenopackets(all_ppkt_tsv);
-        PpktResolver resolver = new PpktResolver(all_phenopackets, ppktList);
-        Ontology mondo = OntologyLoader.loadOntology(new File(mondopath));
-        NarrowAndBroadTerms nbterms = new NarrowAndBroadTerms(mondo);
+        List<PpktStoreItem> ppktList;
+        PpktResolver resolver;
+        Ontology mondo;
+        NarrowAndBroadTerms nbterms;
+        // parsing mondo.json and indexing the phenopacket files are independent, run them concurrently
+        try (LoadingStage loading = new LoadingStage()) {
+            LoadingStage.Step<Ontology> mondoStep = loading.submit(mondopath, () -> loadOntology(file(mondopath)));
+            LoadingStage.Step<MondoXrefIndex> xrefStep = loading.submit("Mondo xrefs",
+                    () -> loadMondoXrefIndex(file(mondopath), mondoStep::join));
+            LoadingStage.Step<NarrowAndBroadTerms> nbStep = loading.submit("narrow/broad Mondo terms",
+                    () -> new NarrowAndBroadTerms(mondoStep.join(), xrefStep.join()));
+            LoadingStage.Step<List<PpktStoreItem>> ppktStep = loading.submit(all_ppkt_tsv.getPath(),
+                    () -> parseNewPhenopackets(all_ppkt_tsv));
+            LoadingStage.Step<PpktResolver> resolverStep = loading.submit("phenopacket files",
+                    () -> new PpktResolver(all_phenopackets, ppktStep.join()));
+            ppktList = ppktStep.join();
+            resolver = resolverStep.join();
+            mondo = mondoStep.join();
+            nbterms = nbStep.join();
+        }
         LOGGER.info("Mondo version {}", mondo.version().orElse("n/a"));
         List<MondoClintlrItem> mcItemList = new ArrayList<>();
         for (PpktStoreItem item : ppktList) {
@@ -80,7 +97,7 @@ public class MondoCommand extends HPOCommand implements Callable<Integer> {
                 }
             }
         }
-        resolver.outputFiles("candidates", mcItemList);
+        resolver.outputFiles(path("candidates").toString(), mcItemList);
         showDescriptiveStats(mcItemList);
         return 0;
     }
@@ -118,8 +135,7 @@ public class MondoCommand extends HPOCommand implements Callable<Integer> {
                 opt.ifPresent(items::add);
             }
         } catch (IOException e) {
-            LOGGER.error("Could not find file at {}", all_phenopackets);
-            System.exit(1);
+            throw new PhenolRuntimeException("Could not read file at " + all_phenopackets + ": " + e.getMessage(), e);
         }
         System.out.printf("Parsed %d new phenopackets.\n", items.size());
         return items;
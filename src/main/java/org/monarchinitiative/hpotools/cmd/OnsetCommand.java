@@ -1,6 +1,8 @@
 package org.monarchinitiative.hpotools.cmd;
+import org.monarchinitiative.hpotools.analysis.KeywordMatcher;
+import org.monarchinitiative.hpotools.analysis.graph.CsrOntologyGraph;
+import org.monarchinitiative.hpotools.analysis.graph.SubsumptionOracle;
 import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
-import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotation;
 import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
 import org.monarchinitiative.phenol.annotations.io.hpo.DiseaseDatabase;
 import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoader;
@@ -8,11 +10,11 @@ import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaderOptions;
 import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaders;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
-import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.ontology.data.Term;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.monarchinitiative.hpotools.serve.ResidentCache;
 import picocli.CommandLine;
 
 import java.io.*;
@@ -29,9 +31,11 @@ public class OnsetCommand extends HPOCommand implements Callable<Integer> {
     private static final Logger LOGGER = LoggerFactory.getLogger(OnsetCommand.class);
     /** Terms such as Polydactyly that have a certain assignment to an age of onset (Congenital is taken
      * here to comprise also antenatal). The map is derived from the file {@code term2onset.txt} in the
-     * resources section.
+     * resources section. Their descendants are also congenital, see {@link #congenitalOracle}.
      */
     private Set<TermId> termIdToCongenitalOnsetSet;
+    /** Decides whether an annotation is one of the congenital terms or a descendant of one. */
+    private SubsumptionOracle congenitalOracle;
 
     /** Congenital onset HP:0003577 */
     private final String CONGENITAL_ONSET = "HP:0003577";
@@ -47,11 +51,24 @@ public class OnsetCommand extends HPOCommand implements Callable<Integer> {
     @CommandLine.Option(names={"--outfile"}, description = "path to outfile")
     private String outfilePath = "predictedCongenital.hpoa";
 
+    @CommandLine.Option(names={"--keywords"},
+            description = "TSV file with keywords and the onset (HPO term) they indicate (default: built-in list)")
+    private String keywordPath = null;
+
     public OnsetCommand() {
 
     }
 
 
+    private HpoDiseases loadHpoDiseases(Ontology ontology, HpoDiseaseLoaderOptions options, LoadingStage.Step<byte[]> annotations) {
+        HpoDiseaseLoader loader = HpoDiseaseLoaders.defaultLoader(ontology, options);
+        try {
+            return loader.load(new ByteArrayInputStream(annotations.join()));
+        } catch (IOException e) {
+            throw new PhenolRuntimeException("Could not load " + annotpath + ": " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public Integer call() throws Exception {
         if (hpopath==null) {
@@ -61,12 +78,27 @@ public class OnsetCommand extends HPOCommand implements Callable<Integer> {
             throw new PhenolRuntimeException("Need to specify annotpath path");
         }
 
-        // Load everything
-        Ontology ontology = OntologyLoader.loadOntology(new File(hpopath));
+        // Load everything; phenotype.hpoa is read while hp.json is parsed, and the congenital terms are
+        // collected while phenotype.hpoa is parsed
+        HpoDiseases diseases;
         HpoDiseaseLoaderOptions options =
                 HpoDiseaseLoaderOptions.of(Set.of(DiseaseDatabase.OMIM), false, 5);
-        HpoDiseaseLoader loader = HpoDiseaseLoaders.defaultLoader(ontology, options);
-        HpoDiseases diseases = loader.load(Path.of(annotpath));
+        try (LoadingStage loading = new LoadingStage()) {
+            LoadingStage.Step<Ontology> ontologyStep = loading.submit(hpopath, () -> loadOntology(file(hpopath)));
+            LoadingStage.Step<byte[]> annotations = readAnnotations(loading, path(annotpath));
+            LoadingStage.Step<HpoDiseases> diseaseStep = loading.submit("disease annotations", () -> {
+                Ontology hpo = ontologyStep.join();
+                return ResidentCache.get("annotations", path(annotpath), options + "|" + hpo.version().orElse("n/a"),
+                        () -> loadHpoDiseases(hpo, options, annotations));
+            });
+            LoadingStage.Step<Set<TermId>> congenitalStep = loading.submit("congenital terms",
+                    () -> parseHpoTermToHpoOnsetMap(ontologyStep.join()));
+            LoadingStage.Step<SubsumptionOracle> oracleStep = loading.submit("HPO graph",
+                    () -> new SubsumptionOracle(CsrOntologyGraph.of(ontologyStep.join())));
+            diseases = diseaseStep.join();
+            termIdToCongenitalOnsetSet = congenitalStep.join();
+            congenitalOracle = oracleStep.join();
+        }
 
 
         // Count current diseases with onset annotation in the phenotype.hpoa file and output
@@ -78,8 +110,6 @@ public class OnsetCommand extends HPOCommand implements Callable<Integer> {
         System.out.println("[INFO] Current number of diseases without onset information: " +
                 diseasesWithoutOnsetInformation);
 
-        // Parse Congenital terms from the text file and get the descendants of these HPO terms
-        termIdToCongenitalOnsetSet = parseHpoTermToHpoOnsetMap(ontology);
         // Update diseases that have any of these HPO terms with congenital age of onset
         Set<HpoDisease> congenitalDiseaseSet = inferCongenitalDiseases(diseases, termIdToCongenitalOnsetSet);
         System.out.println(String.format("[INFO] Inferred %d congenital onsets.", congenitalDiseaseSet.size()));
@@ -122,33 +152,57 @@ public class OnsetCommand extends HPOCommand implements Callable<Integer> {
             LOGGER.error(e.getMessage());
         }
 
-        // Get all agenesis terms
+        // Get all terms whose label or a synonym contains a keyword such as agenesis
+        KeywordMatcher<TermId> matcher = KeywordMatcher.of(parseOnsetKeywords());
+        TermId congenitalOnset = TermId.of(CONGENITAL_ONSET);
+        Map<TermId, Integer> termsPerOnset = new HashMap<>();
+        Set<TermId> onsets = new HashSet<>();
         for (Term term : ontology.getTerms()) {
-            Set<String> labels = new HashSet<>();
-            labels.add(term.getName().toLowerCase(Locale.ROOT));
+            onsets.clear();
+            matcher.findValues(term.getName(), onsets);
             for (var syn : term.getSynonyms()) {
-                labels.add(syn.getValue().toLowerCase(Locale.ROOT));
+                matcher.findValues(syn.getValue(), onsets);
             }
-            for (var lbl : labels) {
-                if (lbl.contains("agenesis") || lbl.contains("aplasia") || lbl.contains("supernumerary")
-                        || lbl.contains("situs inversus") || lbl.contains("situs ambiguous")) {
-                    termSet.add(term.id());
-                }
+            for (TermId onset : onsets) {
+                termsPerOnset.merge(onset, 1, Integer::sum);
+            }
+            if (onsets.contains(congenitalOnset)) {
+                termSet.add(term.id());
             }
         }
+        termsPerOnset.forEach((onset, n) -> LOGGER.info("{} terms match the keywords for onset {}", n, onset.getValue()));
+
 
+        return termSet;
+    }
 
-        // Get descendants of congenital terms, as these are also congenital
-        Set<TermId> TermSetWithDescendants = new HashSet<>();
-        for (TermId tid : termSet) {
-            TermSetWithDescendants.add(tid);
-            for (var hpoId: ontology.graph().getDescendants(tid)) {
-                TermSetWithDescendants.add(hpoId);
+    /**
+     * Parse the keyword file (or the built-in {@code onsetKeywords.txt}): one keyword and the HPO onset term it
+     * indicates per line, separated by a tab. A header line and lines starting with # are skipped.
+     * @return map from keyword to onset
+     */
+    private Map<String, TermId> parseOnsetKeywords() {
+        Map<String, TermId> keywords = new LinkedHashMap<>();
+        try (BufferedReader br = keywordPath != null
+                ? new BufferedReader(new FileReader(file(keywordPath)))
+                : new BufferedReader(new InputStreamReader(
+                        Objects.requireNonNull(OnsetCommand.class.getResourceAsStream("onsetKeywords.txt"))))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#") || line.startsWith("keyword\t")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length != 2) {
+                    throw new PhenolRuntimeException("Malformed keyword line with " + fields.length + " fields: " + line);
+                }
+                keywords.put(fields[0].trim(), TermId.of(fields[1].trim()));
             }
+        } catch (IOException e) {
+            throw new PhenolRuntimeException("Could not read onset keywords: " + e.getMessage(), e);
         }
-
-
-        return TermSetWithDescendants;
+        LOGGER.info("Read {} onset keywords", keywords.size());
+        return keywords;
     }
 
     /**
@@ -182,13 +236,32 @@ public class OnsetCommand extends HPOCommand implements Callable<Integer> {
      * Identifies and returns diseases inferred to have a congenital onset based on their HPO annotations.
      *
      * @param diseases The HpoDiseases collection to analyze.
-     * @param congenitalOnsetTermIds A set of TermIds representing known congenital terms.
+     * @param congenitalOnsetTermIds A set of TermIds representing known congenital terms (their descendants are
+     *                               also congenital).
      * @return A set of HpoDisease objects inferred to have congenital onset.
      */
     private Set<HpoDisease> inferCongenitalDiseases(HpoDiseases diseases, Set<TermId> congenitalOnsetTermIds) {
+        CsrOntologyGraph graph = congenitalOracle.graph();
+        int[] congenitalSeeds = new int[congenitalOnsetTermIds.size()];
+        int n = 0;
+        for (TermId tid : congenitalOnsetTermIds) {
+            int index = graph.indexOf(tid);
+            if (index < 0) {
+                throw new PhenolRuntimeException("Could not find " + tid.getValue() + " in the HPO graph");
+            }
+            congenitalSeeds[n++] = index;
+        }
+        // many seeds (e.g., the agenesis terms) lie below other seeds; only the topmost seeds need to be checked
+        BitSet belowSeeds = graph.descendantsOfAll(congenitalSeeds);
+        int[] topSeeds = Arrays.stream(congenitalSeeds).filter(i -> !belowSeeds.get(i)).toArray();
+        for (int seed : congenitalSeeds) {
+            belowSeeds.set(seed);
+        }
+        LOGGER.info("{} congenital terms with {} seed terms, of which {} are not below another seed",
+                belowSeeds.cardinality(), congenitalSeeds.length, topSeeds.length);
         Set<HpoDisease> congenitalDiseaseSet = new HashSet<>();
         for (HpoDisease disease : diseases) {
-            if (disease.diseaseOnset().isEmpty() && hasCongenitalAnnotation(disease, congenitalOnsetTermIds)) {
+            if (disease.diseaseOnset().isEmpty() && hasCongenitalAnnotation(disease, topSeeds)) {
                 congenitalDiseaseSet.add(disease);
             }
         }
@@ -200,14 +273,15 @@ public class OnsetCommand extends HPOCommand implements Callable<Integer> {
      * Checks if a disease has an HPO annotation that indicates congenital onset.
      *
      * @param disease The HpoDisease to check.
-     * @param congenitalOnsetTermIds A set of TermIds representing known congenital terms.
+     * @param congenitalSeeds graph indices of the known congenital terms
      * @return True if the disease has a congenital annotation, false otherwise.
      */
-    private boolean hasCongenitalAnnotation(HpoDisease disease, Set<TermId> congenitalOnsetTermIds) {
+    private boolean hasCongenitalAnnotation(HpoDisease disease, int[] congenitalSeeds) {
+        CsrOntologyGraph graph = congenitalOracle.graph();
         return disease.annotations().stream()
                 .filter(annotation -> annotation.frequency() > 0)
-                .map(HpoDiseaseAnnotation::id)
-                .anyMatch(congenitalOnsetTermIds::contains);
+                .mapToInt(annotation -> graph.indexOf(annotation.id()))
+                .anyMatch(index -> index >= 0 && congenitalOracle.isDescendantOrSelfOfAny(index, congenitalSeeds));
     }
 
     /**
@@ -217,7 +291,7 @@ public class OnsetCommand extends HPOCommand implements Callable<Integer> {
      * @param outFilePath The path to the output file.
      */
     private void writeCongenitalDiseasesToFile(Set<HpoDisease> diseases, String outFilePath) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outfilePath))) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file(outfilePath)))) {
             diseases.stream()
                     .map(this::formatDiseaseData)
                     .forEachOrdered(line -> {
@@ -0,0 +1,52 @@
+package org.monarchinitiative.hpotools.cmd;
+
+import org.monarchinitiative.hpotools.Main;
+import org.monarchinitiative.hpotools.serve.CommandServer;
+import org.monarchinitiative.hpotools.serve.ResidentCache;
+import org.monarchinitiative.hpotools.serve.ServeProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(name = "serve",
+        mixinStandardHelpOptions = true,
+        description = "Keep ontologies and annotations loaded and run subcommands for hpotools client")
+public class ServeCommand extends HPOCommand implements Callable<Integer> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServeCommand.class);
+
+    @CommandLine.Option(names={"--socket"}, description = "Unix-domain socket to listen on (default: ${DEFAULT-VALUE})")
+    private Path socket = ServeProtocol.defaultSocket();
+
+    @CommandLine.Option(names={"--port"}, description = "also listen for HTTP requests on this loopback port")
+    private Integer port = null;
+
+    @CommandLine.Option(names={"--token-file"}, description = "file to which the token that HTTP requests must send is written (default: ${DEFAULT-VALUE})")
+    private Path tokenFile = ServeProtocol.defaultTokenFile();
+
+    @CommandLine.Option(names={"--mondo"}, description = "path to mondo.json to load at startup")
+    private String mondopath = null;
+
+    @Override
+    public Integer call() throws Exception {
+        ResidentCache.enable();
+        // load the inputs that most requests need now, rather than on the first request
+        if (new File(hpopath).isFile()) {
+            getHpOntology();
+        } else {
+            LOGGER.warn("Did not find hp.json at {}, it will be loaded on demand", hpopath);
+        }
+        if (mondopath != null) {
+            loadOntology(new File(mondopath));
+        }
+        CommandServer server = new CommandServer(Main::commandLine);
+        if (port != null) {
+            server.startHttp(port, tokenFile);
+        }
+        server.serve(socket);
+        return 0;
+    }
+}
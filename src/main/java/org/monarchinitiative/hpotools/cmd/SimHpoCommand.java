@@ -1,14 +1,17 @@
 package org.monarchinitiative.hpotools.cmd;
 
 
-import org.monarchinitiative.hpotools.analysis.simhpo.SimulatedHpoDiseaseGenerator;
+import org.monarchinitiative.hpotools.analysis.FileHash;
+import org.monarchinitiative.hpotools.analysis.HpoaIndex;
+import org.monarchinitiative.hpotools.analysis.LazyHpoDiseases;
+import org.monarchinitiative.hpotools.analysis.simhpo.*;
+import org.monarchinitiative.hpotools.serve.ResidentCache;
 import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
 import org.monarchinitiative.phenol.annotations.io.hpo.DiseaseDatabase;
 import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoader;
 import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaderOptions;
 import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaders;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
-import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.phenopackets.schema.v2.Phenopacket;
@@ -16,61 +19,311 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Optional;
-import java.util.Set;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
 import java.util.concurrent.Callable;
 
-@CommandLine.Command(name = "onset",
+@CommandLine.Command(name = "simhpo",
         mixinStandardHelpOptions = true,
-        description = "Calculate number of diseases with onset data")
+        description = "Simulate phenopackets from HPO disease annotations")
 public class SimHpoCommand extends HPOCommand implements Callable<Integer> {
     private final static Logger LOGGER = LoggerFactory.getLogger(SimHpoCommand.class);
+    /** Maximum number of simulated phenopackets waiting to be written. */
+    private final static int SINK_QUEUE_CAPACITY = 4096;
+    private final static HpoDiseaseLoaderOptions HPOA_OPTIONS =
+            HpoDiseaseLoaderOptions.of(Set.of(DiseaseDatabase.OMIM), false, 5);
 
     /** default Noonan syndrome 1	163950 */
-    @CommandLine.Option(names={"--disease"}, description = "OMIM identifer of disease to be simulated", required = true)
+    @CommandLine.Option(names={"--disease"}, description = "OMIM identifer of disease to be simulated")
     private String omimIdentifier = "163950";
 
     /** default simulate 5 HPO terms */
     @CommandLine.Option(names={"-n","--nterms"}, description = "number of HPO terms to be simulated", required = false)
     private int nterms = 5;
 
+    /** If greater than zero, we simulate this many cases per disease (bulk mode) */
+    @CommandLine.Option(names={"-k", "--cases"}, description = "number of cases to simulate per disease (bulk mode)")
+    private int casesPerDisease = 0;
+
+    @CommandLine.Option(names={"--cohort-size"}, description = "number of cases of a cohort whose diseases are drawn at random (bulk mode)")
+    private long cohortSize = 0;
+
+    @CommandLine.Option(names={"--disease-weights"}, description = "weighting of the diseases of a --cohort-size cohort: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private DiseaseSampler.Weighting diseaseWeighting = DiseaseSampler.Weighting.UNIFORM;
+
+    @CommandLine.Option(names={"--prevalence"}, description = "TSV file with disease and prevalence, for --disease-weights PREVALENCE")
+    private String prevalencePath = null;
+
+    @CommandLine.Option(names={"--disease-list"}, description = "file with one OMIM identifier per line (bulk mode, default: all diseases)")
+    private String diseaseListPath = null;
+
+    @CommandLine.Option(names={"-o", "--outfile"}, description = "output file (or directory for json) for bulk mode (default: simulated_phenopackets.txt, .jsonl or .pb, with .gz for --gzip, or the directory simulated_phenopackets for json)")
+    private String outfilePath = null;
+
+    @CommandLine.Option(names={"--format"}, description = "output format for bulk mode: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private PhenopacketOutputFormat outputFormat = PhenopacketOutputFormat.TEXT;
+
+    @CommandLine.Option(names={"--gzip"}, description = "gzip-compress the output of bulk mode")
+    private boolean gzip = false;
+
+    @CommandLine.Option(names={"-t", "--threads"}, description = "number of worker threads for bulk mode (default: all cores)")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(names={"--model-cache"}, description = "binary file in which to cache the precompiled disease sampling tables")
+    private String modelCachePath = null;
+
+    @CommandLine.Option(names={"--seed"}, description = "master random seed (default: ${DEFAULT-VALUE})")
+    private long seed = 42;
+
+    @CommandLine.Option(names={"--shard"}, description = "simulate only shard i of N (e.g., 2/8) of the diseases, resumably (bulk mode)")
+    private String shard = null;
+
+    @CommandLine.Option(names={"--excluded"}, description = "number of excluded (negated) HPO terms to add to each case (default: ${DEFAULT-VALUE})")
+    private int excludedTerms = 0;
+
+    @CommandLine.Option(names={"--noise-ancestor"}, description = "probability of replacing a term by a random ancestor (default: ${DEFAULT-VALUE})")
+    private double ancestorRate = 0.0;
+
+    @CommandLine.Option(names={"--noise-drop"}, description = "probability of dropping a term (default: ${DEFAULT-VALUE})")
+    private double dropRate = 0.0;
+
+    @CommandLine.Option(names={"--noise-random"}, description = "number of unrelated random terms to add to each case (default: ${DEFAULT-VALUE})")
+    private int randomTerms = 0;
+
+    @CommandLine.Option(names={"--reference-time"}, description = "creation time recorded in the phenopackets, as a date (2024-01-01) or in seconds since the epoch (default: the HPO release date)")
+    private String referenceTime = null;
+
+    /** Creation time of the phenopackets, see {@link #referenceSeconds(Ontology)}. */
+    private long referenceSeconds;
+
+    /** Version of the loaded HPO, part of the fingerprint of a shard. */
+    private String hpoVersion;
+
     @Override
     public Integer call() throws Exception {
         if (hpopath==null) {
             throw new PhenolRuntimeException("Need to specify hp.json path");
         }
-        File hpoFile = new File(hpopath);
+        File hpoFile = file(hpopath);
         LOGGER.info("HPO file: {}", hpoFile.getAbsolutePath());
         if (annotpath==null) {
             throw new PhenolRuntimeException("Need to specify annotpath path");
         }
-        File annotFile = new File(annotpath);
+        File annotFile = file(annotpath);
         if (!annotFile.exists()) {
             throw new PhenolRuntimeException("Did not find annotation file at " + annotpath);
         }
         LOGGER.info("Annotation file: {}", annotFile.getAbsolutePath());
-        Ontology ontology = OntologyLoader.loadOntology(hpoFile);
-        LOGGER.info("Loaded HPO file version: {}", ontology.version().orElse("n/a"));
-        HpoDiseaseLoaderOptions options = HpoDiseaseLoaderOptions.of(Set.of(DiseaseDatabase.OMIM), false, 5);
-        LOGGER.info("HPOA loader options: {}", options);
-        HpoDiseaseLoader loader = HpoDiseaseLoaders.defaultLoader(ontology, options);
-        Path annotpath = annotFile.toPath();
-        HpoDiseases diseases = loader.load(annotpath);
-
-        SimulatedHpoDiseaseGenerator generator = new SimulatedHpoDiseaseGenerator(diseases, ontology);
+        // single-disease and small-batch runs only parse the annotation lines of their diseases
+        List<TermId> requestedDiseases = requestedDiseases();
+        boolean lazy = requestedDiseases != null && modelCachePath == null && !ResidentCache.isEnabled()
+                && !annotpath.endsWith(".gz");
+        Ontology ontology;
+        DiseaseModelStore diseaseModels;
+        try (LoadingStage loading = new LoadingStage()) {
+            Path annotPath = annotFile.toPath();
+            LoadingStage.Step<Ontology> ontologyStep = loading.submit(hpopath, () -> loadOntology(hpoFile));
+            if (lazy) {
+                LoadingStage.Step<HpoaIndex> indexStep = loading.submit("index of " + annotpath, () -> HpoaIndex.load(annotPath, !noSnapshot));
+                ontology = ontologyStep.join();
+                LOGGER.info("Loaded HPO file version: {}", ontology.version().orElse("n/a"));
+                LazyHpoDiseases diseases = LazyHpoDiseases.open(annotPath, indexStep.join(), ontology, HPOA_OPTIONS);
+                diseaseModels = DiseaseModelStore.of(diseases.load(requestedDiseases));
+            } else {
+                // with a model cache, phenotype.hpoa is usually only hashed, not parsed
+                LoadingStage.Step<String> hashStep = modelCachePath == null
+                        ? loading.defer("hash of " + annotpath, () -> FileHash.sha256(annotPath))
+                        : loading.submit("hash of " + annotpath, () -> FileHash.sha256(annotPath));
+                LoadingStage.Step<byte[]> annotations = modelCachePath == null
+                        ? readAnnotations(loading, annotPath)
+                        : loading.defer(annotpath, () -> readAnnotationFile(annotPath));
+                ontology = ontologyStep.join();
+                LOGGER.info("Loaded HPO file version: {}", ontology.version().orElse("n/a"));
+                diseaseModels = ResidentCache.get("disease models", annotPath,
+                        ontology.version().orElse("n/a") + "|" + modelCachePath, () -> {
+                            try {
+                                return loadDiseaseModels(ontology, hashStep, annotations);
+                            } catch (IOException e) {
+                                throw new PhenolRuntimeException("Could not load " + annotFile + ": " + e.getMessage(), e);
+                            }
+                        });
+            }
+        }
+
+        if (outfilePath == null) {
+            outfilePath = outputFormat.defaultOutputName(gzip);
+        }
+        referenceSeconds = referenceSeconds(ontology);
+        hpoVersion = ontology.version().orElse("n/a");
+        NoiseModel noise = new NoiseModel(ancestorRate, dropRate, randomTerms);
+        SimulatedHpoDiseaseGenerator generator = new SimulatedHpoDiseaseGenerator(diseaseModels, ontology, seed,
+                referenceSeconds, noise, excludedTerms);
+        if (cohortSize > 0) {
+            return simulateSampledCohort(generator, diseaseModels);
+        } else if (casesPerDisease > 0) {
+            return simulateCohort(generator, diseaseModels);
+        }
         TermId diseaseId = TermId.of("OMIM", omimIdentifier);
         Optional<Phenopacket> opt = generator.generateSimulatedPhenopacket(diseaseId);
-        // When we get here, we want to output the simulated phenopackets to file
-        // now, the generator is just a skeleton and it always returns Optional.empty()!!!
         if (opt.isPresent()) {
             System.out.println(opt.get());
         } else {
             System.out.println("Could not retrieve phenopacket for \"" + omimIdentifier + "\"");
-            System.out.println("NEED TO IMPLEMENT generateSimulatedPhenopacket()");
         }
 
         return 0;
     }
+
+    /**
+     * @return the diseases of a single-disease run or of a bulk run with a disease list, or null if all diseases
+     * may be needed
+     */
+    private List<TermId> requestedDiseases() throws IOException {
+        if (cohortSize > 0) {
+            return null;
+        } else if (casesPerDisease > 0) {
+            return diseaseListPath == null ? null : parseDiseaseList(path(diseaseListPath));
+        }
+        return List.of(TermId.of("OMIM", omimIdentifier));
+    }
+
+    /**
+     * Get the precompiled sampling tables, from the cache file if it was built from the same phenotype.hpoa and
+     * HPO release, otherwise by parsing phenotype.hpoa (and then writing the cache file, if requested).
+     */
+    private DiseaseModelStore loadDiseaseModels(Ontology ontology, LoadingStage.Step<String> annotHash,
+                                                LoadingStage.Step<byte[]> annotations) throws IOException {
+        String sourceKey = "";
+        if (modelCachePath != null) {
+            sourceKey = annotHash.join() + "|" + ontology.version().orElse("n/a");
+            Optional<DiseaseModelStore> opt = DiseaseModelStore.read(path(modelCachePath), sourceKey);
+            if (opt.isPresent()) {
+                return opt.get();
+            }
+        }
+        LOGGER.info("HPOA loader options: {}", HPOA_OPTIONS);
+        HpoDiseaseLoader loader = HpoDiseaseLoaders.defaultLoader(ontology, HPOA_OPTIONS);
+        HpoDiseases diseases = loader.load(new ByteArrayInputStream(annotations.join()));
+        DiseaseModelStore diseaseModels = DiseaseModelStore.of(diseases, sourceKey);
+        if (modelCachePath != null) {
+            diseaseModels.write(path(modelCachePath));
+        }
+        return diseaseModels;
+    }
+
+    private int simulateCohort(SimulatedHpoDiseaseGenerator generator, DiseaseModelStore diseaseModels) throws IOException {
+        List<TermId> diseaseIds = diseaseListPath == null
+                ? diseaseModels.diseaseIds()
+                : parseDiseaseList(path(diseaseListPath));
+        LOGGER.info("Simulating {} cases for each of {} diseases with {} threads", casesPerDisease, diseaseIds.size(), threads);
+        CohortSimulator simulator = new CohortSimulator(generator, casesPerDisease, nterms, threads);
+        if (shard != null) {
+            return simulateShard(simulator, diseaseIds, SimulationShard.parse(shard));
+        }
+        try (PhenopacketSink sink = new AsyncPhenopacketSink(outputFormat.open(path(outfilePath), gzip), SINK_QUEUE_CAPACITY)) {
+            long n = simulator.simulate(diseaseIds, sink);
+            System.out.printf("[INFO] Wrote %d simulated phenopackets to %s\n", n, outfilePath);
+        }
+        return 0;
+    }
+
+    /**
+     * Simulate a cohort of {@link #cohortSize} cases whose diseases are drawn according to {@link #diseaseWeighting}.
+     */
+    private int simulateSampledCohort(SimulatedHpoDiseaseGenerator generator, DiseaseModelStore diseaseModels) throws IOException {
+        if (shard != null) {
+            throw new PhenolRuntimeException("--shard cannot be combined with --cohort-size");
+        }
+        List<TermId> diseaseIds = diseaseListPath == null
+                ? diseaseModels.diseaseIds()
+                : parseDiseaseList(path(diseaseListPath)).stream().filter(id -> diseaseModels.indexOf(id) >= 0).toList();
+        SplittableRandom random = new SplittableRandom(seed);
+        DiseaseSampler sampler = switch (diseaseWeighting) {
+            case UNIFORM -> DiseaseSampler.uniform(diseaseIds, random);
+            case ANNOTATIONS -> DiseaseSampler.byAnnotationCount(diseaseIds, diseaseModels, random);
+            case PREVALENCE -> {
+                if (prevalencePath == null) {
+                    throw new PhenolRuntimeException("Need to specify --prevalence file for --disease-weights PREVALENCE");
+                }
+                yield DiseaseSampler.fromPrevalenceFile(path(prevalencePath), diseaseIds, random);
+            }
+        };
+        LOGGER.info("Simulating a cohort of {} cases drawn from {} diseases ({} weights) with {} threads",
+                cohortSize, diseaseIds.size(), diseaseWeighting, threads);
+        CohortSimulator simulator = new CohortSimulator(generator, casesPerDisease, nterms, threads);
+        try (PhenopacketSink sink = new AsyncPhenopacketSink(outputFormat.open(path(outfilePath), gzip), SINK_QUEUE_CAPACITY)) {
+            long n = simulator.simulate(sampler, cohortSize, sink);
+            System.out.printf("[INFO] Wrote %d simulated phenopackets to %s\n", n, outfilePath);
+        }
+        return 0;
+    }
+
+    /**
+     * Simulate one shard of the diseases in parts, skipping the parts that an earlier (interrupted) run of the same
+     * shard has already completed.
+     */
+    private int simulateShard(CohortSimulator simulator, List<TermId> diseaseIds, SimulationShard simulationShard)
+            throws IOException {
+        List<TermId> shardIds = simulationShard.select(diseaseIds, seed);
+        LOGGER.info("Shard {} contains {} of {} diseases", simulationShard.label(), shardIds.size(), diseaseIds.size());
+        // everything that influences the simulated phenopackets, including the input files, so that a shard is not
+        // resumed with parts simulated from another phenotype.hpoa or hp.json
+        String fingerprint = String.join("\t",
+                "seed=" + seed,
+                "cases=" + casesPerDisease,
+                "nterms=" + nterms,
+                "excluded=" + excludedTerms,
+                "noise=" + ancestorRate + "/" + dropRate + "/" + randomTerms,
+                "format=" + outputFormat + (gzip ? "+gzip" : ""),
+                "diseases=" + diseaseIds.size() + "/" + String.join(",", diseaseIds.stream().map(TermId::getValue).toList()).hashCode(),
+                "created=" + referenceSeconds,
+                "annotations=" + FileHash.sha256(path(annotpath)),
+                "hpo=" + hpoVersion);
+        ShardedCohortSimulation simulation = new ShardedCohortSimulation(simulator, outputFormat, gzip, SINK_QUEUE_CAPACITY);
+        long n = simulation.run(shardIds, path(outfilePath), simulationShard, fingerprint);
+        System.out.printf("[INFO] Wrote %d simulated phenopackets for %s to %s.%s.part-*\n", n, simulationShard.label(),
+                outfilePath, simulationShard.label());
+        return 0;
+    }
+
+    /**
+     * The creation time is fixed rather than taken from the clock, so that runs with the same seed produce
+     * identical output.
+     * @return the {@code --reference-time} in seconds since the epoch, or the HPO release date if it is not given
+     */
+    private long referenceSeconds(Ontology ontology) {
+        if (referenceTime == null) {
+            return SimulatedHpoDiseaseGenerator.releaseSeconds(ontology);
+        }
+        try {
+            if (referenceTime.chars().allMatch(Character::isDigit)) {
+                return Long.parseLong(referenceTime);
+            }
+            return LocalDate.parse(referenceTime).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new PhenolRuntimeException("Invalid --reference-time " + referenceTime
+                    + " (expected a date such as 2024-01-01 or seconds since the epoch)");
+        }
+    }
+
+    /**
+     * Parse a file with one disease per line, either as a CURIE (OMIM:163950) or as the bare OMIM number.
+     * Blank lines and lines starting with # are skipped.
+     */
+    private List<TermId> parseDiseaseList(Path path) throws IOException {
+        List<TermId> ids = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            ids.add(line.contains(":") ? TermId.of(line) : TermId.of("OMIM", line));
+        }
+        return ids;
+    }
 }
@@ -1,14 +1,12 @@
 package org.monarchinitiative.hpotools.cmd;
 
 import org.monarchinitiative.hpotools.analysis.HpoStats;
-import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
-import java.io.File;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
@@ -28,7 +26,7 @@ import java.util.concurrent.Callable;
 
         @Override
         public Integer call() {
-            Ontology ontology = OntologyLoader.loadOntology(new File(hpopath));
+            Ontology ontology = loadOntology(file(hpopath));
             HpoStats stats = new HpoStats(ontology);
             stats.printStats();
             return 0;
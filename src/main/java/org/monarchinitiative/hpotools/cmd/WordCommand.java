@@ -61,7 +61,7 @@ public class WordCommand extends HPOCommand implements Callable<Integer> {
         }
         LOGGER.info("running Word command from {}", startTermId, getHpoJsonFile().getAbsolutePath());
         try {
-           Hpo2Word hpo2Word = new Hpo2Word(outfilename, targetTerm, hpOntology);
+           Hpo2Word hpo2Word = new Hpo2Word(path(outfilename).toString(), targetTerm, hpOntology);
         } catch (Exception e) {
             LOGGER.error(e.getMessage());
             return 1;
@@ -0,0 +1,230 @@
+package org.monarchinitiative.hpotools.serve;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs hpotools subcommands on behalf of clients, in a JVM that keeps the loaded inputs (see {@link ResidentCache}).
+ * Each request runs on its own virtual thread with a fresh {@link CommandLine}, and its standard output and error
+ * are routed back to the client (see {@link RequestOutput}), so the results are the same as those of the one-shot
+ * command line. Relative paths are resolved against the working directory of the client (see
+ * {@link RequestDirectory}). Requests are accepted on a Unix-domain socket that only the user can connect to (used by
+ * {@code hpotools client}) and optionally on a loopback HTTP port, where every request must present the token of
+ * the server.
+ */
+public class CommandServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandServer.class);
+    private static final int BUFFER_SIZE = 1 << 13;
+    public static final String TOKEN_HEADER = "X-Hpotools-Token";
+    public static final String WORKING_DIRECTORY_HEADER = "X-Working-Directory";
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private final Supplier<CommandLine> commandLines;
+    private final Path workingDirectory = Path.of("").toAbsolutePath();
+    /** Token that HTTP requests must send, set by {@link #startHttp(int, Path)}. */
+    private volatile byte[] token = null;
+
+    /**
+     * @param commandLines creates a new command line with all subcommands, for each request
+     */
+    public CommandServer(Supplier<CommandLine> commandLines) {
+        this.commandLines = commandLines;
+        RequestOutput.install();
+    }
+
+    /**
+     * Run one invocation on the current thread.
+     * @param workingDirectory the directory that relative paths are resolved against
+     * @return the exit code
+     */
+    public int execute(Path workingDirectory, List<String> args, OutputStream out, OutputStream err) {
+        RequestOutput.redirect(out, err);
+        RequestDirectory.set(workingDirectory);
+        PrintWriter outWriter = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), true);
+        PrintWriter errWriter = new PrintWriter(new OutputStreamWriter(err, StandardCharsets.UTF_8), true);
+        try {
+            if (!args.isEmpty() && args.get(0).equals("serve")) {
+                errWriter.println("Cannot start a server from a server");
+                return 2;
+            }
+            CommandLine commandLine = commandLines.get();
+            commandLine.setOut(outWriter);
+            commandLine.setErr(errWriter);
+            return commandLine.execute(args.toArray(new String[0]));
+        } finally {
+            outWriter.flush();
+            errWriter.flush();
+            RequestOutput.clear();
+            RequestDirectory.clear();
+        }
+    }
+
+    /**
+     * Accept requests on a Unix-domain socket until the JVM is stopped.
+     */
+    public void serve(Path socket) throws IOException {
+        if (Files.exists(socket)) {
+            if (isListening(socket)) {
+                throw new PhenolRuntimeException("A server is already listening on " + socket);
+            }
+            Files.delete(socket); // left over from a server that was killed
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            socket.toFile().deleteOnExit();
+            restrictToOwner(socket);
+            LOGGER.info("Listening on {}", socket);
+            while (true) {
+                SocketChannel channel = server.accept();
+                executor.submit(() -> handle(channel));
+            }
+        }
+    }
+
+    private static boolean isListening(Path socket) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Make a file readable and writable only by the user running the server, where the file system supports it. */
+    private static void restrictToOwner(Path path) throws IOException {
+        if (Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            Files.setPosixFilePermissions(path, OWNER_ONLY);
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            ServeProtocol.Request request = ServeProtocol.readRequest(in);
+            LOGGER.info("Request: {}", String.join(" ", request.args()));
+            OutputStream stdout = new BufferedOutputStream(new ServeProtocol.FrameOutputStream(out, ServeProtocol.STDOUT), BUFFER_SIZE);
+            OutputStream stderr = new ServeProtocol.FrameOutputStream(out, ServeProtocol.STDERR);
+            int exitCode = execute(Path.of(request.workingDirectory()), request.args(), stdout, stderr);
+            stdout.flush();
+            ServeProtocol.writeExit(out, exitCode);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not handle request: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Accept requests on {@code http://127.0.0.1:port/run}: the body of a POST request ({@code text/plain})
+     * contains one argument per line; the response contains the standard output and the header
+     * {@code X-Exit-Code}. The standard error of the command is written to the log of the server.
+     * <p>
+     * Any local process (and any web page, through the browser) can connect to a loopback port, so requests must
+     * send the token that is written to {@code tokenFile} (readable only by the user) in the header
+     * {@value #TOKEN_HEADER}, and requests from browsers (with an {@code Origin} header) are rejected. Relative paths
+     * are resolved against the absolute directory in the header {@value #WORKING_DIRECTORY_HEADER}, if given, and
+     * otherwise against the working directory of the server.
+     */
+    public HttpServer startHttp(int port, Path tokenFile) throws IOException {
+        token = writeToken(tokenFile);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/run", this::handleHttp);
+        server.start();
+        LOGGER.info("Listening on http://{}:{}/run", InetAddress.getLoopbackAddress().getHostAddress(), port);
+        return server;
+    }
+
+    private static byte[] writeToken(Path tokenFile) throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        String token = HexFormat.of().formatHex(random);
+        Files.deleteIfExists(tokenFile);
+        Files.createFile(tokenFile);
+        restrictToOwner(tokenFile);
+        Files.writeString(tokenFile, token + "\n");
+        tokenFile.toFile().deleteOnExit();
+        LOGGER.info("Wrote the token for HTTP requests to {}", tokenFile);
+        return token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** @return the HTTP status with which to reject the request, or 0 if it may be run */
+    int checkHttpRequest(String method, Headers headers) {
+        if (!method.equals("POST")) {
+            return 405;
+        }
+        if (headers.containsKey("Origin")) {
+            return 403; // sent by a browser on behalf of a web page
+        }
+        String sent = headers.getFirst(TOKEN_HEADER);
+        if (token == null || sent == null
+                || !MessageDigest.isEqual(token, sent.trim().getBytes(StandardCharsets.UTF_8))) {
+            return 401;
+        }
+        String contentType = headers.getFirst("Content-Type");
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("text/plain")) {
+            return 415;
+        }
+        String directory = headers.getFirst(WORKING_DIRECTORY_HEADER);
+        if (directory != null && !Path.of(directory).isAbsolute()) {
+            return 400;
+        }
+        return 0;
+    }
+
+    private void handleHttp(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int status = checkHttpRequest(exchange.getRequestMethod(), exchange.getRequestHeaders());
+            if (status != 0) {
+                LOGGER.warn("Rejected HTTP request from {} with status {}", exchange.getRemoteAddress(), status);
+                // read (and discard) the body first; if the server closed the exchange while the client is still
+                // sending, the client would see a reset connection instead of the status
+                exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            String directory = exchange.getRequestHeaders().getFirst(WORKING_DIRECTORY_HEADER);
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            List<String> args = Arrays.stream(body.split("\r?\n")).filter(arg -> !arg.isEmpty()).toList();
+            LOGGER.info("HTTP request: {}", String.join(" ", args));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            int exitCode = execute(directory == null ? workingDirectory : Path.of(directory), args, output, errors);
+            if (errors.size() > 0) {
+                LOGGER.info("Standard error of HTTP request:\n{}", errors.toString(StandardCharsets.UTF_8).stripTrailing());
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+            exchange.getResponseHeaders().add("X-Exit-Code", String.valueOf(exitCode));
+            exchange.sendResponseHeaders(200, output.size() == 0 ? -1 : output.size());
+            if (output.size() > 0) {
+                output.writeTo(exchange.getResponseBody());
+            }
+        }
+    }
+}
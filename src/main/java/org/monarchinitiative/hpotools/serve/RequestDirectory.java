@@ -0,0 +1,43 @@
+package org.monarchinitiative.hpotools.serve;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * The working directory of the client of the request that the current thread works on. The commands resolve the
+ * relative paths of their options (including the defaults, e.g., data/hp.json) against it, so that a command
+ * sent to the server reads and writes the same files as when it is run in the directory of the client. Like
+ * {@link RequestOutput}, the directory is inherited by threads that a request starts; threads that do not belong
+ * to a request resolve against the working directory of the JVM.
+ */
+public final class RequestDirectory {
+
+    private static final InheritableThreadLocal<Path> BASE = new InheritableThreadLocal<>();
+
+    private RequestDirectory() {
+    }
+
+    /** Resolve relative paths of the current thread (and of the threads it starts from now on) against the directory. */
+    public static void set(Path directory) {
+        BASE.set(directory.toAbsolutePath());
+    }
+
+    /** Resolve relative paths of the current thread against the working directory of the JVM again. */
+    public static void clear() {
+        BASE.remove();
+    }
+
+    /** @return the path, resolved against the directory of the current request if it is relative */
+    public static Path resolve(String path) {
+        return resolve(Path.of(path));
+    }
+
+    public static Path resolve(Path path) {
+        Path base = BASE.get();
+        return base == null || path.isAbsolute() ? path : base.resolve(path);
+    }
+
+    public static File resolve(File file) {
+        return resolve(file.toPath()).toFile();
+    }
+}
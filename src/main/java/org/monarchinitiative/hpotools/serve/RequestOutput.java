@@ -0,0 +1,74 @@
+package org.monarchinitiative.hpotools.serve;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Routes {@link System#out} and {@link System#err} to the client of the request that the current thread works
+ * on, so that concurrent requests of the server do not mix their output. The targets are inherited by threads
+ * that a request starts (e.g., the worker threads of a simulation). Threads that do not belong to a request
+ * write to the original streams.
+ */
+public final class RequestOutput {
+
+    private static final InheritableThreadLocal<OutputStream> OUT = new InheritableThreadLocal<>();
+    private static final InheritableThreadLocal<OutputStream> ERR = new InheritableThreadLocal<>();
+    private static boolean installed = false;
+
+    private RequestOutput() {
+    }
+
+    /** Replace System.out and System.err by streams that route to the current request (once per JVM). */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        System.setOut(new PrintStream(new Routed(OUT, System.out), true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(new Routed(ERR, System.err), true, StandardCharsets.UTF_8));
+        installed = true;
+    }
+
+    /** Route the output of the current thread (and of the threads it starts from now on) to the given streams. */
+    public static void redirect(OutputStream out, OutputStream err) {
+        OUT.set(out);
+        ERR.set(err);
+    }
+
+    /** Stop routing the output of the current thread. */
+    public static void clear() {
+        OUT.remove();
+        ERR.remove();
+    }
+
+    private static class Routed extends OutputStream {
+        private final ThreadLocal<OutputStream> target;
+        private final OutputStream fallback;
+
+        Routed(ThreadLocal<OutputStream> target, OutputStream fallback) {
+            this.target = target;
+            this.fallback = fallback;
+        }
+
+        private OutputStream target() {
+            OutputStream out = target.get();
+            return out == null ? fallback : out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+}
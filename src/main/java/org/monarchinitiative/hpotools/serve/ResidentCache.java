@@ -0,0 +1,103 @@
+package org.monarchinitiative.hpotools.serve;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps inputs that were loaded from files (ontologies, disease annotations) in memory while hpotools runs as a
+ * server, so that each file is parsed only once and shared by all requests. An entry is only reused while the
+ * file has the same size and modification time. If the cache is not enabled (i.e., for one-shot invocations),
+ * every call simply loads the input.
+ */
+public final class ResidentCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResidentCache.class);
+
+    /**
+     * @param kind what was loaded, e.g., "ontology"
+     * @param variant anything besides the file that influences the result, e.g., loader options
+     */
+    private record Key(String kind, Path path, String variant) {
+    }
+
+    private record Entry(long size, long lastModified, CompletableFuture<Object> value) {
+    }
+
+    private static final ConcurrentMap<Key, Entry> CACHE = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = false;
+
+    private ResidentCache() {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the input loaded from {@code path}, loading it if it is not cached or the file has changed. Concurrent
+     * requests for the same input wait for a single load.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(String kind, Path path, String variant, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(kind, path.toAbsolutePath().normalize(), variant);
+        long size;
+        long lastModified;
+        try {
+            size = Files.size(path);
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return loader.get(); // let the loader report the problem
+        }
+        while (true) {
+            Entry entry = CACHE.get(key);
+            if (entry != null && entry.size() == size && entry.lastModified() == lastModified) {
+                return (T) await(key, entry);
+            }
+            Entry fresh = new Entry(size, lastModified, new CompletableFuture<>());
+            boolean won = entry == null ? CACHE.putIfAbsent(key, fresh) == null : CACHE.replace(key, entry, fresh);
+            if (!won) {
+                continue; // another thread has just started a load
+            }
+            LOGGER.info("Loading {} from {}", kind, path);
+            try {
+                T value = loader.get();
+                fresh.value().complete(value);
+                return value;
+            } catch (RuntimeException e) {
+                CACHE.remove(key, fresh);
+                fresh.value().completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    private static Object await(Key key, Entry entry) {
+        try {
+            return entry.value().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PhenolRuntimeException("Interrupted while waiting for " + key.kind() + " " + key.path(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new PhenolRuntimeException("Could not load " + key.kind() + " " + key.path(), e.getCause());
+        }
+    }
+}
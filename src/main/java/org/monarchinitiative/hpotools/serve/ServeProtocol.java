@@ -0,0 +1,105 @@
+package org.monarchinitiative.hpotools.serve;
+
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The protocol between {@code hpotools client} and {@code hpotools serve} on a Unix-domain socket.
+ * The client sends the magic number, its working directory and the arguments. The server answers with a
+ * sequence of frames: standard output and standard error chunks ({@code channel, length, bytes}) and finally
+ * the exit code ({@code EXIT, code}).
+ */
+public final class ServeProtocol {
+    /** "HPTL" */
+    static final int MAGIC = 0x4850544C;
+    public static final byte STDOUT = 1;
+    public static final byte STDERR = 2;
+    public static final byte EXIT = 0;
+
+    private ServeProtocol() {
+    }
+
+    /** Default socket, in the temporary directory and specific to the user. */
+    public static Path defaultSocket() {
+        return Path.of(System.getProperty("java.io.tmpdir"), "hpotools-" + System.getProperty("user.name") + ".sock");
+    }
+
+    /** Default file with the token for HTTP requests, next to the default socket. */
+    public static Path defaultTokenFile() {
+        return Path.of(System.getProperty("java.io.tmpdir"), "hpotools-" + System.getProperty("user.name") + ".token");
+    }
+
+    public static void writeRequest(DataOutputStream out, String workingDirectory, List<String> args) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(workingDirectory);
+        out.writeInt(args.size());
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    /** A request: the working directory of the client and the arguments. */
+    public record Request(String workingDirectory, List<String> args) {
+    }
+
+    public static Request readRequest(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new PhenolRuntimeException("Not an hpotools client");
+        }
+        String workingDirectory = in.readUTF();
+        int n = in.readInt();
+        List<String> args = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            args.add(in.readUTF());
+        }
+        return new Request(workingDirectory, args);
+    }
+
+    /** Writes everything written to it as frames of one channel. Several frame streams may share the connection. */
+    static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte channel;
+
+        FrameOutputStream(DataOutputStream out, byte channel) {
+            this.out = out;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(channel);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    static void writeExit(DataOutputStream out, int exitCode) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(exitCode);
+            out.flush();
+        }
+    }
+}
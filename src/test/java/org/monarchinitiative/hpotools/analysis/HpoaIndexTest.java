@@ -0,0 +1,128 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HpoaIndexTest {
+
+    private static final String HEADER = "#description: test\n#version: 2024-01-01\n" +
+            "database_id\tdisease_name\tqualifier\thpo_id\n";
+    private static final String A1 = "OMIM:100001\tDisease A\t\tHP:0000101\n";
+    private static final String A2 = "OMIM:100001\tDisease A\t\tHP:0000202\n";
+    private static final String B1 = "OMIM:100002\tDisease B\t\tHP:0000303\n";
+    /** The last line has no newline. */
+    private static final String C1 = "ORPHA:3\tDisease C\t\tHP:0000304";
+
+    private static String excerpt(HpoaIndex index, Path hpoa, TermId... diseaseIds) throws IOException {
+        try (FileChannel channel = FileChannel.open(hpoa, StandardOpenOption.READ)) {
+            return new String(index.excerpt(channel, List.of(diseaseIds)), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testExcerpt() throws IOException {
+        Path dir = Files.createTempDirectory("hpoa");
+        Path hpoa = dir.resolve("phenotype.hpoa");
+        Path indexPath = HpoaIndex.indexPath(hpoa);
+        try {
+            // the lines of disease A are not contiguous
+            Files.writeString(hpoa, HEADER + A1 + B1 + A2 + C1);
+            HpoaIndex index = HpoaIndex.load(hpoa);
+            assertTrue(Files.exists(indexPath));
+            TermId a = TermId.of("OMIM:100001");
+            TermId b = TermId.of("OMIM:100002");
+            TermId c = TermId.of("ORPHA:3");
+            assertEquals(Set.of(a, b, c), index.diseaseIds());
+            assertEquals(HEADER + A1 + A2, excerpt(index, hpoa, a));
+            assertEquals(HEADER + C1 + "\n" + B1, excerpt(index, hpoa, c, b));
+            assertEquals(HEADER, excerpt(index, hpoa, TermId.of("OMIM:999999")));
+            HpoaIndex copy = HpoaIndex.read(indexPath, hpoa).orElseThrow();
+            assertEquals(HEADER + A1 + A2, excerpt(copy, hpoa, a));
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(hpoa);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testStaleIndexIsIgnored() throws IOException {
+        Path dir = Files.createTempDirectory("hpoa");
+        Path hpoa = dir.resolve("phenotype.hpoa");
+        Path indexPath = HpoaIndex.indexPath(hpoa);
+        try {
+            Files.writeString(hpoa, HEADER + A1);
+            HpoaIndex.load(hpoa);
+            assertTrue(HpoaIndex.read(indexPath, hpoa).isPresent());
+            Files.writeString(hpoa, HEADER + A1 + B1);
+            assertTrue(HpoaIndex.read(indexPath, hpoa).isEmpty());
+            assertTrue(HpoaIndex.load(hpoa).contains(TermId.of("OMIM:100002")));
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(hpoa);
+            Files.delete(dir);
+        }
+    }
+
+    /** A damaged index must be ignored and rebuilt, not cause exceptions or huge allocations. */
+    @Test
+    public void testCorruptIndexIsIgnored() throws IOException {
+        Path dir = Files.createTempDirectory("hpoa");
+        Path hpoa = dir.resolve("phenotype.hpoa");
+        Path indexPath = HpoaIndex.indexPath(hpoa);
+        try {
+            Files.writeString(hpoa, HEADER + A1 + B1 + A2 + C1);
+            HpoaIndex.load(hpoa);
+            byte[] original = Files.readAllBytes(indexPath);
+            // magic, format, size and modification time
+            int header = 4 + 4 + 8 + 8;
+            for (int pos = header; pos + 4 <= original.length; pos++) {
+                for (int value : new int[]{Integer.MAX_VALUE, -2, 1 << 20}) {
+                    byte[] corrupt = original.clone();
+                    ByteBuffer.wrap(corrupt).putInt(pos, value);
+                    Files.write(indexPath, corrupt);
+                    HpoaIndex.read(indexPath, hpoa); // must not throw
+                }
+            }
+            byte[] corrupt = original.clone();
+            ByteBuffer.wrap(corrupt).putInt(header + 4, Integer.MAX_VALUE); // number of diseases
+            Files.write(indexPath, corrupt);
+            assertTrue(HpoaIndex.read(indexPath, hpoa).isEmpty());
+            assertEquals(HEADER + A1 + A2, excerpt(HpoaIndex.load(hpoa), hpoa, TermId.of("OMIM:100001")));
+            assertArrayEquals(original, Files.readAllBytes(indexPath));
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(hpoa);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testLoadWithoutIndexFile() throws IOException {
+        Path dir = Files.createTempDirectory("hpoa");
+        Path hpoa = dir.resolve("phenotype.hpoa");
+        Path indexPath = HpoaIndex.indexPath(hpoa);
+        try {
+            Files.writeString(hpoa, HEADER + A1 + B1);
+            HpoaIndex index = HpoaIndex.load(hpoa, false);
+            assertTrue(index.contains(TermId.of("OMIM:100002")));
+            assertFalse(Files.exists(indexPath));
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(hpoa);
+            Files.delete(dir);
+        }
+    }
+}
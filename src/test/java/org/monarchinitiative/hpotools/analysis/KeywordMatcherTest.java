@@ -0,0 +1,57 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void testOverlappingKeywords() {
+        KeywordMatcher<String> matcher = KeywordMatcher.of(Map.of("he", "HE", "she", "SHE", "his", "HIS", "hers", "HERS"));
+        assertEquals(4, matcher.size());
+        assertEquals(Set.of("HE", "SHE", "HERS"), matcher.findValues("ushers"));
+        assertEquals(Set.of("HIS"), matcher.findValues("this"));
+        assertEquals(Set.of(), matcher.findValues("hx s"));
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        KeywordMatcher<String> matcher = KeywordMatcher.of(Map.of("Agenesis", "congenital", "situs inversus", "congenital"));
+        assertEquals(Set.of("congenital"), matcher.findValues("AGENESIS of the corpus callosum"));
+        assertEquals(Set.of("congenital"), matcher.findValues("Situs inversus totalis"));
+        assertTrue(matcher.findValues("situs ambiguous").isEmpty());
+    }
+
+    /** The matcher must find the same keywords as String.contains. */
+    @Test
+    public void testAgreesWithContains() {
+        Random random = new Random(42);
+        Map<String, String> keywords = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            String word = randomString(random, 1 + random.nextInt(4));
+            keywords.put(word, word);
+        }
+        KeywordMatcher<String> matcher = KeywordMatcher.of(keywords);
+        for (int i = 0; i < 500; i++) {
+            String text = randomString(random, random.nextInt(30));
+            Set<String> expected = new HashSet<>();
+            for (String word : keywords.keySet()) {
+                if (text.contains(word)) {
+                    expected.add(word);
+                }
+            }
+            assertEquals(expected, matcher.findValues(text));
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+}
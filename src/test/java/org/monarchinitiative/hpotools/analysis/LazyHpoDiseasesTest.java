@@ -0,0 +1,124 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
+import org.monarchinitiative.phenol.annotations.io.hpo.DiseaseDatabase;
+import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaderOptions;
+import org.monarchinitiative.phenol.annotations.io.hpo.HpoDiseaseLoaders;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyHpoDiseasesTest {
+
+    private static final TermId A = TermId.of("OMIM:100001");
+    private static final TermId B = TermId.of("OMIM:100002");
+    private static final TermId C = TermId.of("ORPHA:3");
+    private static final HpoDiseaseLoaderOptions OMIM_ONLY = HpoDiseaseLoaderOptions.of(Set.of(DiseaseDatabase.OMIM), false, 5);
+
+    private static final String HEADER = "#description: test\n#version: 2024-01-01\n" +
+            "database_id\tdisease_name\tqualifier\thpo_id\treference\tevidence\tonset\tfrequency\tsex\tmodifier\taspect\tbiocuration\n";
+
+    private static String line(TermId disease, String name, String hpoId, String frequency) {
+        return String.join("\t", disease.getValue(), name, "", hpoId, disease.getValue(), "TAS", "", frequency, "", "",
+                "P", "HPO:x[2024-01-01]") + "\n";
+    }
+
+    /** The lines of disease A are not contiguous, and disease C is not in OMIM. */
+    private static final String HPOA = HEADER
+            + line(A, "Disease A", "HP:0000101", "3/4")
+            + line(B, "Disease B", "HP:0000303", "")
+            + line(A, "Disease A", "HP:0000202", "1/2")
+            + line(C, "Disease C", "HP:0000303", "");
+
+    private static Ontology ontology() {
+        List<String> ids = List.of("HP:0000001", "HP:0000118", "HP:0000101", "HP:0000202", "HP:0000303");
+        List<Term> terms = new ArrayList<>();
+        for (String id : ids) {
+            terms.add(Term.of(TermId.of(id), id));
+        }
+        TermId root = TermId.of("HP:0000001");
+        TermId phenotypicAbnormality = TermId.of("HP:0000118");
+        List<Relationship> relationships = List.of(
+                new Relationship(phenotypicAbnormality, root, 1, RelationshipType.IS_A),
+                new Relationship(TermId.of("HP:0000101"), phenotypicAbnormality, 2, RelationshipType.IS_A),
+                new Relationship(TermId.of("HP:0000202"), phenotypicAbnormality, 3, RelationshipType.IS_A),
+                new Relationship(TermId.of("HP:0000303"), phenotypicAbnormality, 4, RelationshipType.IS_A));
+        return ImmutableOntology.builder().terms(terms).relationships(relationships).build();
+    }
+
+    private static Set<TermId> annotationIds(HpoDisease disease) {
+        return Set.copyOf(disease.annotationTermIdList());
+    }
+
+    @Test
+    public void testDiseaseById() throws IOException {
+        Path dir = Files.createTempDirectory("lazy");
+        Path hpoa = dir.resolve("phenotype.hpoa");
+        try {
+            Files.writeString(hpoa, HPOA);
+            Ontology hpo = ontology();
+            LazyHpoDiseases diseases = LazyHpoDiseases.open(hpoa, HpoaIndex.load(hpoa, false), hpo, OMIM_ONLY);
+            // only the configured databases are kept
+            assertEquals(List.of(A, B), List.copyOf(diseases.diseaseIds()));
+            assertEquals(2, diseases.size());
+            assertTrue(diseases.diseaseById(C).isEmpty());
+            assertTrue(diseases.diseaseById(TermId.of("OMIM:999999")).isEmpty());
+            assertEquals(Optional.of("2024-01-01"), diseases.version());
+            // the same diseases as parsing the whole file
+            HpoDiseases all = HpoDiseaseLoaders.defaultLoader(hpo, OMIM_ONLY).load(hpoa);
+            for (TermId id : List.of(A, B)) {
+                HpoDisease lazy = diseases.diseaseById(id).orElseThrow();
+                HpoDisease full = all.diseaseById(id).orElseThrow();
+                assertEquals(full.diseaseName(), lazy.diseaseName());
+                assertEquals(annotationIds(full), annotationIds(lazy));
+            }
+            assertEquals(Set.of(TermId.of("HP:0000101"), TermId.of("HP:0000202")),
+                    annotationIds(diseases.diseaseById(A).orElseThrow()));
+        } finally {
+            Files.deleteIfExists(hpoa);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testLoadSeveral() throws IOException {
+        Path dir = Files.createTempDirectory("lazy");
+        Path hpoa = dir.resolve("phenotype.hpoa");
+        try {
+            Files.writeString(hpoa, HPOA);
+            LazyHpoDiseases diseases = LazyHpoDiseases.open(hpoa, HpoaIndex.load(hpoa, false), ontology(), OMIM_ONLY);
+            HpoDiseases loaded = diseases.load(List.of(B, A, C, TermId.of("OMIM:999999"), B));
+            assertEquals(Optional.of("2024-01-01"), loaded.version());
+            assertEquals(List.of(B, A), loaded.hpoDiseases().map(HpoDisease::id).toList());
+        } finally {
+            Files.deleteIfExists(hpoa);
+            Files.delete(dir);
+        }
+    }
+
+    /** A disease is parsed when it is first requested, and then kept. */
+    @Test
+    public void testParsesOnDemand() throws IOException {
+        Path dir = Files.createTempDirectory("lazy");
+        Path hpoa = dir.resolve("phenotype.hpoa");
+        try {
+            Files.writeString(hpoa, HPOA);
+            LazyHpoDiseases diseases = LazyHpoDiseases.open(hpoa, HpoaIndex.load(hpoa, false), ontology(), OMIM_ONLY);
+            assertTrue(diseases.diseaseById(A).isPresent());
+            Files.delete(hpoa);
+            assertTrue(diseases.diseaseById(A).isPresent());
+            assertThrows(PhenolRuntimeException.class, () -> diseases.diseaseById(B));
+        } finally {
+            Files.deleteIfExists(hpoa);
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.monarchinitiative.hpotools.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.ontology.data.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OntologySnapshotTest {
+
+    private static final TermId ROOT = TermId.of("HP:0000001");
+    private static final TermId CHILD = TermId.of("HP:0000118");
+
+    private static Ontology ontology() {
+        Term root = Term.of(ROOT, "All");
+        Term child = Term.builder(CHILD)
+                .name("Phenotypic abnormality")
+                .definition("A phenotypic abnormality.")
+                .altTermIds(List.of(TermId.of("HP:0000999")))
+                .databaseXrefs(List.of(new SimpleXref("PMID:123")))
+                .synonyms(List.of(new TermSynonym("Organ abnormality", TermSynonymScope.EXACT, null, List.of(), "hp#layperson")))
+                .xrefs(List.of(new Dbxref("UMLS:C4021819", null, Map.of())))
+                .build();
+        return ImmutableOntology.builder()
+                .metaInfo(Map.of("release", "2024-01-01"))
+                .terms(List.of(root, child))
+                .relationships(List.of(new Relationship(CHILD, ROOT, 1, RelationshipType.IS_A)))
+                .build();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        Path source = dir.resolve("hp.json");
+        Path snapshot = OntologySnapshot.snapshotPath(source);
+        try {
+            Files.writeString(source, "{}");
+            OntologySnapshot.write(ontology(), snapshot, source);
+            Ontology copy = OntologySnapshot.read(snapshot, source).orElseThrow();
+            assertEquals(Optional.of("2024-01-01"), copy.version());
+            Term child = copy.termForTermId(CHILD).orElseThrow();
+            assertEquals("Phenotypic abnormality", child.getName());
+            assertEquals("A phenotypic abnormality.", child.getDefinition());
+            assertEquals(List.of(TermId.of("HP:0000999")), child.getAltTermIds());
+            assertEquals("PMID:123", child.getPmidXrefs().get(0).getCurie());
+            assertEquals("Organ abnormality", child.getSynonyms().get(0).getValue());
+            assertTrue(child.getSynonyms().get(0).isLayperson());
+            assertEquals("UMLS:C4021819", child.getXrefs().get(0).getName());
+            assertEquals(Set.of(ROOT), copy.graph().getParents(CHILD));
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(source);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testStaleSnapshotIsIgnored() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        Path source = dir.resolve("hp.json");
+        Path snapshot = OntologySnapshot.snapshotPath(source);
+        try {
+            Files.writeString(source, "{}");
+            OntologySnapshot.write(ontology(), snapshot, source);
+            // same content, new modification time: the hash still matches
+            Files.setLastModifiedTime(source, FileTime.fromMillis(0));
+            assertTrue(OntologySnapshot.read(snapshot, source).isPresent());
+            Files.writeString(source, "{ }");
+            assertTrue(OntologySnapshot.read(snapshot, source).isEmpty());
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(source);
+            Files.delete(dir);
+        }
+    }
+
+    /** A damaged snapshot must be ignored, not cause exceptions or huge allocations. */
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        Path source = dir.resolve("hp.json");
+        Path snapshot = OntologySnapshot.snapshotPath(source);
+        try {
+            Files.writeString(source, "{}");
+            OntologySnapshot.write(ontology(), snapshot, source);
+            byte[] original = Files.readAllBytes(snapshot);
+            // magic, format, size, modification time, hash length and hash
+            int header = 4 + 4 + 8 + 8 + 4 + 64;
+            for (int pos = header; pos + 4 <= original.length; pos += 4) {
+                for (int value : new int[]{Integer.MAX_VALUE, -2, 1 << 20}) {
+                    byte[] corrupt = original.clone();
+                    ByteBuffer.wrap(corrupt).putInt(pos, value);
+                    Files.write(snapshot, corrupt);
+                    OntologySnapshot.read(snapshot, source); // must not throw
+                }
+            }
+            byte[] corrupt = original.clone();
+            ByteBuffer.wrap(corrupt).putInt(header, Integer.MAX_VALUE); // size of the string table
+            Files.write(snapshot, corrupt);
+            assertTrue(OntologySnapshot.read(snapshot, source).isEmpty());
+            Files.write(snapshot, Arrays.copyOf(original, original.length / 2));
+            assertTrue(OntologySnapshot.read(snapshot, source).isEmpty());
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(source);
+            Files.delete(dir);
+        }
+    }
+}
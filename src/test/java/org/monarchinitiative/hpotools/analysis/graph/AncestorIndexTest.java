@@ -0,0 +1,50 @@
+package org.monarchinitiative.hpotools.analysis.graph;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.monarchinitiative.hpotools.analysis.graph.SyntheticHpo.*;
+
+public class AncestorIndexTest {
+
+    @Test
+    public void testSubtreeOnly() {
+        AncestorIndex index = new AncestorIndex(eyeOntology(), PHENOTYPIC_ABNORMALITY);
+        assertEquals(5, index.size());
+        assertEquals(-1, index.indexOf(ALL));
+        assertEquals(-1, index.indexOf(MODE_OF_INHERITANCE));
+        assertTrue(index.indexOf(IRIS_AND_LENS) >= 0);
+    }
+
+    @Test
+    public void testAncestorsExcludeRootAndSelf() {
+        AncestorIndex index = new AncestorIndex(eyeOntology(), PHENOTYPIC_ABNORMALITY);
+        int i = index.indexOf(IRIS_AND_LENS);
+        List<TermId> ancestors = new ArrayList<>();
+        for (int k = 0; k < index.ancestorCount(i); k++) {
+            ancestors.add(index.termId(index.ancestor(i, k)));
+        }
+        assertEquals(3, ancestors.size());
+        assertTrue(ancestors.containsAll(List.of(EYE, IRIS, LENS)));
+        assertEquals(0, index.ancestorCount(index.indexOf(EYE)));
+        assertEquals(0, index.ancestorCount(index.indexOf(PHENOTYPIC_ABNORMALITY)));
+    }
+
+    @Test
+    public void testRelated() {
+        AncestorIndex index = new AncestorIndex(eyeOntology(), PHENOTYPIC_ABNORMALITY);
+        int eye = index.indexOf(EYE);
+        int iris = index.indexOf(IRIS);
+        int lens = index.indexOf(LENS);
+        int irisAndLens = index.indexOf(IRIS_AND_LENS);
+        assertTrue(index.isProperAncestor(eye, irisAndLens));
+        assertFalse(index.isProperAncestor(irisAndLens, eye));
+        assertTrue(index.areRelated(iris, irisAndLens));
+        assertTrue(index.areRelated(lens, lens));
+        assertFalse(index.areRelated(iris, lens));
+    }
+}
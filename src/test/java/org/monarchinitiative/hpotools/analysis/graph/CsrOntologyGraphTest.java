@@ -0,0 +1,72 @@
+package org.monarchinitiative.hpotools.analysis.graph;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.monarchinitiative.hpotools.analysis.graph.SyntheticHpo.*;
+
+public class CsrOntologyGraphTest {
+
+    @Test
+    public void testParentsAndChildren() {
+        CsrOntologyGraph graph = CsrOntologyGraph.of(eyeOntology());
+        assertEquals(7, graph.size());
+        assertEquals(-1, graph.indexOf(TermId.of("HP:0009999")));
+        int eye = graph.indexOf(EYE);
+        assertEquals(1, graph.parentCount(eye));
+        assertEquals(PHENOTYPIC_ABNORMALITY, graph.termId(graph.parent(eye, 0)));
+        assertEquals(2, graph.childCount(eye));
+        // children are sorted by index, i.e., by term id
+        assertEquals(LENS, graph.termId(graph.child(eye, 0)));
+        assertEquals(IRIS, graph.termId(graph.child(eye, 1)));
+        assertEquals(2, graph.parentCount(graph.indexOf(IRIS_AND_LENS)));
+        assertEquals(0, graph.parentCount(graph.indexOf(ALL)));
+    }
+
+    @Test
+    public void testDescendants() {
+        CsrOntologyGraph graph = CsrOntologyGraph.of(eyeOntology());
+        List<TermId> descendants = graph.termIds(graph.descendants(graph.indexOf(EYE)));
+        assertEquals(List.of(LENS, IRIS, IRIS_AND_LENS), descendants);
+        assertTrue(graph.descendants(graph.indexOf(IRIS_AND_LENS)).isEmpty());
+    }
+
+    @Test
+    public void testDescendantsInLevelOrder() {
+        CsrOntologyGraph graph = CsrOntologyGraph.of(eyeOntology());
+        List<TermId> descendants = new ArrayList<>();
+        for (int i : graph.descendantsInLevelOrder(graph.indexOf(ALL))) {
+            descendants.add(graph.termId(i));
+        }
+        // IRIS_AND_LENS is reached from both LENS and IRIS but listed once
+        assertEquals(List.of(MODE_OF_INHERITANCE, PHENOTYPIC_ABNORMALITY, EYE, LENS, IRIS, IRIS_AND_LENS), descendants);
+        assertEquals(0, graph.descendantsInLevelOrder(graph.indexOf(IRIS_AND_LENS)).length);
+    }
+
+    @Test
+    public void testDescendantsOfAll() {
+        CsrOntologyGraph graph = CsrOntologyGraph.of(eyeOntology());
+        int eye = graph.indexOf(EYE);
+        int iris = graph.indexOf(IRIS);
+        int moi = graph.indexOf(MODE_OF_INHERITANCE);
+        // IRIS is below EYE, so it is contained, but EYE and MODE_OF_INHERITANCE are not
+        assertEquals(List.of(LENS, IRIS, IRIS_AND_LENS), graph.termIds(graph.descendantsOfAll(iris, eye, moi)));
+        assertEquals(graph.descendants(eye), graph.descendantsOfAll(eye, iris));
+        assertTrue(graph.descendantsOfAll().isEmpty());
+    }
+
+    @Test
+    public void testAncestors() {
+        CsrOntologyGraph graph = CsrOntologyGraph.of(eyeOntology());
+        int irisAndLens = graph.indexOf(IRIS_AND_LENS);
+        assertEquals(List.of(ALL, PHENOTYPIC_ABNORMALITY, EYE, LENS, IRIS),
+                graph.termIds(graph.ancestorSet(irisAndLens)));
+        assertTrue(graph.isProperAncestor(graph.indexOf(ALL), irisAndLens));
+        assertFalse(graph.isProperAncestor(graph.indexOf(MODE_OF_INHERITANCE), irisAndLens));
+        assertFalse(graph.isProperAncestor(irisAndLens, irisAndLens));
+    }
+}
@@ -0,0 +1,68 @@
+package org.monarchinitiative.hpotools.analysis.graph;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.ontology.data.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubsumptionOracleTest {
+
+    /**
+     * A random DAG with the root HP:0000001; every other term has one to three parents with smaller numbers.
+     */
+    private static Ontology randomOntology(int nTerms, long seed) {
+        Random random = new Random(seed);
+        List<Term> terms = new ArrayList<>();
+        List<SyntheticHpo.IsA> isA = new ArrayList<>();
+        for (int i = 1; i <= nTerms; i++) {
+            TermId tid = TermId.of(String.format("HP:%07d", i));
+            terms.add(Term.of(tid, "term " + i));
+            if (i == 1) {
+                continue;
+            }
+            int nParents = 1 + random.nextInt(Math.min(3, i - 1));
+            List<Integer> parents = new ArrayList<>();
+            while (parents.size() < nParents) {
+                int p = 1 + random.nextInt(i - 1);
+                if (!parents.contains(p)) {
+                    parents.add(p);
+                    isA.add(SyntheticHpo.isA(tid, TermId.of(String.format("HP:%07d", p))));
+                }
+            }
+        }
+        return SyntheticHpo.ontology(terms, isA);
+    }
+
+    @Test
+    public void testAgreesWithAncestorSets() {
+        CsrOntologyGraph graph = CsrOntologyGraph.of(randomOntology(200, 42));
+        SubsumptionOracle oracle = new SubsumptionOracle(graph);
+        for (int x = 0; x < graph.size(); x++) {
+            for (int s = 0; s < graph.size(); s++) {
+                boolean expected = x == s || graph.ancestorSet(x).get(s);
+                assertEquals(expected, oracle.isDescendantOrSelf(x, s));
+            }
+        }
+    }
+
+    @Test
+    public void testAnySeed() {
+        CsrOntologyGraph graph = CsrOntologyGraph.of(randomOntology(200, 7));
+        SubsumptionOracle oracle = new SubsumptionOracle(graph);
+        int[] seeds = {graph.indexOf(TermId.of("HP:0000010")), graph.indexOf(TermId.of("HP:0000050"))};
+        for (int x = 0; x < graph.size(); x++) {
+            boolean expected = false;
+            for (int s : seeds) {
+                expected |= x == s || graph.ancestorSet(x).get(s);
+            }
+            assertEquals(expected, oracle.isDescendantOrSelfOfAny(x, seeds));
+        }
+        // the root subsumes everything
+        assertTrue(oracle.isDescendantOrSelfOfAny(graph.indexOf(TermId.of("HP:0000200")),
+                new int[]{graph.indexOf(TermId.of("HP:0000001"))}));
+    }
+}
@@ -0,0 +1,61 @@
+package org.monarchinitiative.hpotools.analysis.graph;
+
+import org.monarchinitiative.phenol.ontology.data.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds small HPO-like ontologies for the tests of this package.
+ */
+final class SyntheticHpo {
+
+    static final TermId ALL = TermId.of("HP:0000001");
+    static final TermId PHENOTYPIC_ABNORMALITY = TermId.of("HP:0000118");
+    static final TermId EYE = TermId.of("HP:0000478");
+    static final TermId IRIS = TermId.of("HP:0000525");
+    static final TermId LENS = TermId.of("HP:0000517");
+    /** Child of both IRIS and LENS. */
+    static final TermId IRIS_AND_LENS = TermId.of("HP:0000600");
+    static final TermId MODE_OF_INHERITANCE = TermId.of("HP:0000005");
+
+    /** An is-a relationship from {@code child} to {@code parent}. */
+    record IsA(TermId child, TermId parent) {
+    }
+
+    private SyntheticHpo() {
+    }
+
+    static IsA isA(TermId child, TermId parent) {
+        return new IsA(child, parent);
+    }
+
+    static Ontology ontology(List<Term> terms, List<IsA> isA) {
+        List<Relationship> relationships = new ArrayList<>(isA.size());
+        for (IsA edge : isA) {
+            relationships.add(new Relationship(edge.child(), edge.parent(), relationships.size() + 1, RelationshipType.IS_A));
+        }
+        return ImmutableOntology.builder()
+                .terms(terms)
+                .relationships(relationships)
+                .build();
+    }
+
+    /**
+     * All -> Phenotypic abnormality -> Eye -> {Iris, Lens} -> IrisAndLens; All -> Mode of inheritance
+     */
+    static Ontology eyeOntology() {
+        List<Term> terms = new ArrayList<>();
+        for (TermId tid : List.of(ALL, PHENOTYPIC_ABNORMALITY, EYE, IRIS, LENS, IRIS_AND_LENS, MODE_OF_INHERITANCE)) {
+            terms.add(Term.of(tid, tid.getValue()));
+        }
+        return ontology(terms, List.of(
+                isA(PHENOTYPIC_ABNORMALITY, ALL),
+                isA(MODE_OF_INHERITANCE, ALL),
+                isA(EYE, PHENOTYPIC_ABNORMALITY),
+                isA(IRIS, EYE),
+                isA(LENS, EYE),
+                isA(IRIS_AND_LENS, IRIS),
+                isA(IRIS_AND_LENS, LENS)));
+    }
+}
@@ -0,0 +1,63 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiseaseIdMapperTest {
+
+    private static final TermId MONDO_A = TermId.of("MONDO:0000100");
+    private static final TermId MONDO_B = TermId.of("MONDO:0000200");
+    private static final TermId MONDO_C = TermId.of("MONDO:0007103");
+
+    private static DiseaseIdMapper mapper() {
+        MondoXrefIndex.Builder builder = new MondoXrefIndex.Builder();
+        builder.add(MONDO_A, "disease A", List.of("OMIM:100002", "OMIM:100001", "Orphanet:777", "UMLS:C0000002"));
+        builder.add(MONDO_B, "disease B", List.of("OMIM:100002", "Orphanet:777", "Orphanet:888"));
+        builder.add(MONDO_C, "disease C", List.of("OMIM:105400", "OMIM:not-a-number", "GARD:0000001"));
+        return DiseaseIdMapper.of(builder.build("test"));
+    }
+
+    @Test
+    public void testManyToMany() {
+        DiseaseIdMapper mapper = mapper();
+        assertEquals(List.of(MONDO_A), mapper.toMondo(TermId.of("OMIM:100001")));
+        // OMIM:100002 is an xref of two Mondo terms; both are kept
+        assertEquals(List.of(MONDO_A, MONDO_B), mapper.toMondo(TermId.of("OMIM:100002")));
+        assertTrue(mapper.isAmbiguous(TermId.of("OMIM:100002"), DiseaseNamespace.MONDO));
+        assertFalse(mapper.isAmbiguous(TermId.of("OMIM:100001"), DiseaseNamespace.MONDO));
+        assertEquals(1, mapper.ambiguousCount(DiseaseNamespace.OMIM));
+        assertEquals(1, mapper.ambiguousCount(DiseaseNamespace.ORPHANET));
+        // via Mondo, without duplicates
+        assertEquals(List.of(TermId.of("Orphanet:777"), TermId.of("Orphanet:888")),
+                mapper.map(TermId.of("OMIM:100002"), DiseaseNamespace.ORPHANET));
+        assertEquals(List.of(TermId.of("OMIM:100001"), TermId.of("OMIM:100002")),
+                mapper.map(TermId.of("MONDO:0000100"), DiseaseNamespace.OMIM));
+        assertTrue(mapper.map(TermId.of("Orphanet:888"), DiseaseNamespace.UMLS).isEmpty());
+        assertEquals(List.of(TermId.of("UMLS:C0000002")), mapper.map(TermId.of("OMIM:100001"), DiseaseNamespace.UMLS));
+        assertEquals(List.of(MONDO_A), mapper.toMondo(TermId.of("UMLS:C0000002")));
+        assertEquals(List.of(MONDO_C), mapper.toMondo(MONDO_C));
+        assertTrue(mapper.toMondo(TermId.of("MONDO:0009999")).isEmpty());
+        assertTrue(mapper.toMondo(TermId.of("OMIM:999999")).isEmpty());
+        assertTrue(mapper.toMondo(TermId.of("GARD:0000001")).isEmpty());
+    }
+
+    @Test
+    public void testBatch() {
+        DiseaseIdMapper mapper = mapper();
+        List<TermId> ids = List.of(TermId.of("OMIM:105400"), TermId.of("OMIM:999999"), TermId.of("OMIM:100002"),
+                TermId.of("Orphanet:777"), TermId.of("GARD:0000001"));
+        DiseaseIdMapper.Batch batch = mapper.mapAll(ids, DiseaseNamespace.MONDO);
+        assertEquals(5, batch.size());
+        assertEquals(1, batch.count(0));
+        assertEquals(MONDO_C, batch.get(0, 0));
+        assertArrayEquals(new int[]{1, 4}, batch.missingIndices());
+        assertArrayEquals(new int[]{2, 3}, batch.ambiguousIndices());
+        assertEquals(MONDO_A, batch.get(2, 0));
+        assertEquals(MONDO_B, batch.get(2, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.get(2, 2));
+    }
+}
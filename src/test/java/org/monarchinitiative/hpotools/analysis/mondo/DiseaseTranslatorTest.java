@@ -0,0 +1,77 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.ontology.data.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiseaseTranslatorTest {
+
+    private static final TermId AMBIGUOUS_TWIN = TermId.of("MONDO:0000999");
+
+    /**
+     * MONDO:0000100 ... MONDO:0000199 with the xrefs OMIM:100000 ... OMIM:100099; the terms with an even number
+     * also have the xref Orphanet:1000 ... Orphanet:1098. MONDO:0000999 also claims OMIM:100003, which makes it
+     * ambiguous.
+     */
+    private static MondoFromOmimMapper mapper() {
+        List<Term> terms = new ArrayList<>();
+        List<SyntheticMondo.IsA> isA = new ArrayList<>();
+        terms.add(SyntheticMondo.term(SyntheticMondo.ROOT, "disease"));
+        for (int i = 0; i < 100; i++) {
+            TermId tid = TermId.of(String.format("MONDO:%07d", 100 + i));
+            String omim = String.format("OMIM:%06d", 100000 + i);
+            terms.add(i % 2 == 0
+                    ? SyntheticMondo.term(tid, "disease " + i, omim, "Orphanet:" + (1000 + i))
+                    : SyntheticMondo.term(tid, "disease " + i, omim));
+            isA.add(SyntheticMondo.isA(tid, SyntheticMondo.ROOT));
+        }
+        terms.add(SyntheticMondo.term(AMBIGUOUS_TWIN, "duplicate of disease 3", "OMIM:100003"));
+        isA.add(SyntheticMondo.isA(AMBIGUOUS_TWIN, SyntheticMondo.ROOT));
+        Ontology mondo = SyntheticMondo.ontology(terms, isA);
+        return new MondoFromOmimMapper(mondo);
+    }
+
+    @Test
+    public void testOrderedOutputAndMisses() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        StringBuilder expectedMisses = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            int omim = 100000 + (i * 7) % 150; // every third id or so is unknown
+            String line = "GENE" + i + "\tOMIM:" + omim;
+            input.append(line).append('\n');
+            if (omim == 100003) {
+                expectedMisses.append(line).append("\tambiguous: MONDO:0000103,MONDO:0000999\n");
+            } else if (omim < 100100) {
+                int i100 = omim - 100000;
+                String orphanet = i100 % 2 == 0 ? "Orphanet:" + (1000 + i100) : "";
+                expected.append(line).append(String.format("\tMONDO:%07d\tdisease %d\t%s\n", omim - 99900, i100, orphanet));
+            } else {
+                expectedMisses.append(line).append("\tno Mondo term\n");
+            }
+        }
+        input.append("malformed\n");
+        expectedMisses.append("malformed\tmalformed line\n");
+        input.append("GENE\tOrphanet:1000\n");
+        expectedMisses.append("GENE\tOrphanet:1000\tno Mondo term\n");
+        StringWriter out = new StringWriter();
+        StringWriter misses = new StringWriter();
+        // small chunks so that the output order depends on reassembling many chunks
+        DiseaseTranslator translator = new DiseaseTranslator(mapper(), 4, 16);
+        DiseaseTranslator.Stats stats = translator.translate(
+                new BufferedReader(new StringReader(input.toString())), out, misses);
+        assertEquals(expected.toString(), out.toString());
+        assertEquals(expectedMisses.toString(), misses.toString());
+        assertEquals(1002, stats.mapped() + stats.missed());
+        // i * 7 % 150 == 3 for i = 129, 279, ..., 879
+        assertEquals(6, stats.ambiguous());
+    }
+}
@@ -0,0 +1,132 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.ontology.data.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MondoXrefIndexTest {
+
+    private static final TermId ROOT = SyntheticMondo.ROOT;
+    private static final TermId DISEASE_A = TermId.of("MONDO:0000100");
+    private static final TermId DISEASE_B = TermId.of("MONDO:0000200");
+    private static final TermId HP_TERM = TermId.of("HP:0000118");
+
+    private static Term term(TermId tid, String... xrefs) {
+        return SyntheticMondo.term(tid, "label of " + tid.getValue(), xrefs);
+    }
+
+    private static MondoXrefIndex index() {
+        List<Term> terms = List.of(
+                term(ROOT),
+                // xrefs of B are listed first to check that the terms of an xref are sorted
+                term(DISEASE_B, "OMIM:100002", "Orphanet:777", "UMLS:C0000002"),
+                term(DISEASE_A, "OMIM:100001", "OMIM:100002", "OMIMPS:100000", "Orphanet:777", "not-a-curie"),
+                term(HP_TERM, "UMLS:C0000001"));
+        Ontology mondo = SyntheticMondo.ontology(terms, List.of(
+                SyntheticMondo.isA(DISEASE_A, ROOT),
+                SyntheticMondo.isA(DISEASE_B, ROOT)));
+        return MondoXrefIndex.of(mondo);
+    }
+
+    @Test
+    public void testXrefToMondo() {
+        MondoXrefIndex index = index();
+        assertEquals(List.of(DISEASE_A), index.mondoIdsForXref("OMIM:100001"));
+        assertEquals(List.of(DISEASE_A, DISEASE_B), index.mondoIdsForXref(TermId.of("OMIM:100002")));
+        assertEquals(List.of(DISEASE_A, DISEASE_B), index.mondoIdsForXref("Orphanet:777"));
+        assertEquals(List.of(DISEASE_A), index.mondoIdsForXref("OMIMPS:100000"));
+        assertTrue(index.mondoIdsForXref("OMIM:999999").isEmpty());
+        // xrefs of terms of other ontologies are not indexed
+        assertTrue(index.mondoIdsForXref("UMLS:C0000001").isEmpty());
+        assertEquals(2, index.xrefCount("OMIM"));
+        assertEquals(0, index.xrefCount("GARD"));
+    }
+
+    @Test
+    public void testMondoToXref() {
+        MondoXrefIndex index = index();
+        assertEquals(List.of("OMIM:100001", "OMIM:100002"), index.xrefs(DISEASE_A, "OMIM"));
+        assertEquals(Optional.of("OMIM:100001"), index.firstXref(DISEASE_A, "OMIM"));
+        assertTrue(index.hasXref(DISEASE_A, "OMIMPS"));
+        assertFalse(index.hasXref(DISEASE_B, "OMIMPS"));
+        assertEquals(Optional.empty(), index.firstXref(ROOT, "OMIM"));
+        assertEquals(List.of(DISEASE_A, DISEASE_B), index.mondoIdsWithPrefix("OMIM"));
+        assertEquals(List.of(DISEASE_B), index.mondoIdsWithPrefix("UMLS"));
+        assertEquals(Set.of("OMIM", "OMIMPS", "Orphanet", "UMLS"), index.prefixes());
+    }
+
+    @Test
+    public void testCacheRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("mondo");
+        Path json = dir.resolve("mondo.json");
+        Path cachePath = MondoXrefCache.cachePath(json);
+        try {
+            Files.writeString(json, "{}");
+            MondoXrefIndex index = index();
+            MondoXrefCache.write(index, cachePath, json);
+            Optional<MondoXrefIndex> opt = MondoXrefCache.read(cachePath, json);
+            assertTrue(opt.isPresent());
+            MondoXrefIndex cached = opt.get();
+            assertEquals(index.mondoIds(), cached.mondoIds());
+            assertEquals(index.prefixes(), cached.prefixes());
+            for (TermId mondoId : index.mondoIds()) {
+                assertEquals(index.label(mondoId), cached.label(mondoId));
+                for (String prefix : index.prefixes()) {
+                    assertEquals(index.xrefs(mondoId, prefix), cached.xrefs(mondoId, prefix));
+                }
+            }
+            assertEquals(List.of(DISEASE_A, DISEASE_B), cached.mondoIdsForXref("OMIM:100002"));
+            assertEquals(Optional.of("label of MONDO:0000100"), cached.label(DISEASE_A));
+            // a cache of another mondo.json is ignored
+            Files.writeString(json, "{ }");
+            assertTrue(MondoXrefCache.read(cachePath, json).isEmpty());
+        } finally {
+            Files.deleteIfExists(cachePath);
+            Files.deleteIfExists(json);
+            Files.delete(dir);
+        }
+    }
+
+    /** A damaged cache must be ignored, not cause exceptions or huge allocations. */
+    @Test
+    public void testCorruptCacheIsIgnored() throws IOException {
+        Path dir = Files.createTempDirectory("mondo");
+        Path json = dir.resolve("mondo.json");
+        Path cachePath = MondoXrefCache.cachePath(json);
+        try {
+            Files.writeString(json, "{}");
+            MondoXrefCache.write(index(), cachePath, json);
+            byte[] original = Files.readAllBytes(cachePath);
+            // magic, format, size, modification time and hash
+            int header = 4 + 4 + 8 + 8 + 4 + 64;
+            for (int pos = header; pos + 4 <= original.length; pos++) {
+                for (int value : new int[]{Integer.MAX_VALUE, -2, -1, 1 << 20}) {
+                    byte[] corrupt = original.clone();
+                    ByteBuffer.wrap(corrupt).putInt(pos, value);
+                    Files.write(cachePath, corrupt);
+                    MondoXrefCache.read(cachePath, json); // must not throw
+                }
+            }
+            byte[] corrupt = original.clone();
+            ByteBuffer.wrap(corrupt).putInt(header, -2); // length of the version
+            Files.write(cachePath, corrupt);
+            assertTrue(MondoXrefCache.read(cachePath, json).isEmpty());
+            Files.write(cachePath, Arrays.copyOf(original, original.length / 2));
+            assertTrue(MondoXrefCache.read(cachePath, json).isEmpty());
+        } finally {
+            Files.deleteIfExists(cachePath);
+            Files.deleteIfExists(json);
+            Files.delete(dir);
+        }
+    }
+}
@@ -4,18 +4,76 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.monarchinitiative.hpotools.analysis.OntologyTerm;
 import org.monarchinitiative.phenol.io.OntologyLoader;
-import org.monarchinitiative.phenol.ontology.data.Ontology;
-import org.monarchinitiative.phenol.ontology.data.Term;
-import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.monarchinitiative.phenol.ontology.data.*;
 
 import java.io.File;
+import java.util.List;
 import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.monarchinitiative.hpotools.analysis.mondo.SyntheticMondo.*;
 
 public class NarrowAndBroadTermsTest {
 
+    private static final TermId NARROW = TermId.of("MONDO:0000100");
+    private static final TermId DISEASE = TermId.of("MONDO:0000200");
+    private static final TermId NARROW2 = TermId.of("MONDO:0000300");
+    private static final TermId DISEASE2 = TermId.of("MONDO:0000400");
+    private static final TermId BONE = TermId.of("MONDO:0005497");
+    private static final TermId SKELETAL = TermId.of("MONDO:0018230");
+    private static final TermId CONNECTIVE = TermId.of("MONDO:0023603");
+
+    /**
+     * root -> bone development disease (broad) -> skeletal dysplasia (broad) -> NARROW (OMIMPS) -> DISEASE;
+     * root -> hereditary disorder of connective tissue (broad) -> NARROW2 (OMIMPS), which is also a child of
+     * skeletal dysplasia; DISEASE2 is a child of both NARROW and NARROW2.
+     */
+    private static Ontology syntheticMondo() {
+        List<Term> terms = List.of(
+                term(ROOT, "disease"),
+                term(BONE, "bone development disease"),
+                term(SKELETAL, "skeletal dysplasia"),
+                term(CONNECTIVE, "hereditary disorder of connective tissue"),
+                term(NARROW, "narrow", "OMIMPS:100000"),
+                term(NARROW2, "narrow 2", "OMIMPS:200000"),
+                term(DISEASE, "disease 1", "OMIM:100001"),
+                term(DISEASE2, "disease 2", "OMIM:100002", "OMIM:100003"));
+        return ontology(terms, List.of(
+                isA(BONE, ROOT),
+                isA(SKELETAL, BONE),
+                isA(CONNECTIVE, ROOT),
+                isA(NARROW, SKELETAL),
+                isA(NARROW2, CONNECTIVE),
+                isA(NARROW2, SKELETAL),
+                isA(DISEASE, NARROW),
+                isA(DISEASE2, NARROW2),
+                isA(DISEASE2, NARROW)));
+    }
+
+    @Test
+    void testNarrowAndBroadResolution() {
+        NarrowAndBroadTerms nbterms = new NarrowAndBroadTerms(syntheticMondo());
+        assertTrue(nbterms.containsNarrowTermId(DISEASE));
+        assertEquals(NARROW, nbterms.getNarrowTermId(DISEASE).id());
+        assertEquals("narrow", nbterms.getNarrowTermId(DISEASE).label());
+        // two OMIMPS parents: the smaller id wins
+        assertEquals(NARROW, nbterms.getNarrowTermId(DISEASE2).id());
+        assertFalse(nbterms.containsNarrowTermId(NARROW));
+        assertNull(nbterms.getNarrowTermId(ROOT));
+        // the nearest broad ancestor is preferred over a more distant one
+        assertEquals(SKELETAL, nbterms.getBroadForNarrow(NARROW));
+        // two broad ancestors at the same distance: the smaller id wins
+        assertEquals(SKELETAL, nbterms.getBroadForNarrow(NARROW2));
+        // a broad term is its own nearest broad term
+        assertEquals(BONE, nbterms.getBroadForNarrow(BONE));
+        assertFalse(nbterms.containsNarrowToBroad(ROOT));
+        assertNull(nbterms.getBroadForNarrow(ROOT));
+        assertEquals(DISEASE, nbterms.omimToMondoId(TermId.of("OMIM:100001")));
+        // only the first OMIM xref of a term is used
+        assertEquals(DISEASE2, nbterms.omimToMondoId(TermId.of("OMIM:100002")));
+        assertFalse(nbterms.containsOmim(TermId.of("OMIM:100003")));
+    }
+
 
     @Test
     @Disabled("This test is disabled because it depends on mondo.json having been previously downloaded.")
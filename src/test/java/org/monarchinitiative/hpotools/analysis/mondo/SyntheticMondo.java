@@ -0,0 +1,46 @@
+package org.monarchinitiative.hpotools.analysis.mondo;
+
+import org.monarchinitiative.phenol.ontology.data.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds small Mondo-like ontologies for the tests of this package: terms with a label and xrefs, connected by
+ * is-a relationships.
+ */
+final class SyntheticMondo {
+
+    static final TermId ROOT = TermId.of("MONDO:0000001");
+
+    /** An is-a relationship from {@code child} to {@code parent}. */
+    record IsA(TermId child, TermId parent) {
+    }
+
+    private SyntheticMondo() {
+    }
+
+    static Term term(TermId tid, String name, String... xrefs) {
+        List<Dbxref> dbxrefs = new ArrayList<>();
+        for (String xref : xrefs) {
+            dbxrefs.add(new Dbxref(xref, null, Map.of()));
+        }
+        return Term.builder(tid).name(name).xrefs(dbxrefs).build();
+    }
+
+    static IsA isA(TermId child, TermId parent) {
+        return new IsA(child, parent);
+    }
+
+    static Ontology ontology(List<Term> terms, List<IsA> isA) {
+        List<Relationship> relationships = new ArrayList<>(isA.size());
+        for (IsA edge : isA) {
+            relationships.add(new Relationship(edge.child(), edge.parent(), relationships.size() + 1, RelationshipType.IS_A));
+        }
+        return ImmutableOntology.builder()
+                .terms(terms)
+                .relationships(relationships)
+                .build();
+    }
+}
@@ -0,0 +1,54 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AliasMethodSamplerTest {
+
+    @Test
+    void testFrequenciesMatchProbabilities() {
+        List<String> elements = List.of("A", "B", "C", "D");
+        double[] weights = {1.0, 2.0, 3.0, 4.0};
+        AliasMethodSampler<String> sampler = new AliasMethodSampler<>(elements, weights, new Random(42));
+        int nDraws = 100_000;
+        int[] counts = new int[elements.size()];
+        for (int i = 0; i < nDraws; i++) {
+            counts[sampler.sampleIndex()]++;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            assertEquals(weights[i] / 10.0, (double) counts[i] / nDraws, 0.01);
+        }
+    }
+
+    @Test
+    void testZeroWeightIsNeverSampled() {
+        List<String> elements = List.of("A", "B", "C");
+        double[] weights = {0.0, 1.0, 1.0};
+        AliasMethodSampler<String> sampler = new AliasMethodSampler<>(elements, weights, new Random(42));
+        for (String s : sampler.sample(10_000)) {
+            assertNotEquals("A", s);
+        }
+    }
+
+    @Test
+    void testMismatchedLengthsThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AliasMethodSampler<>(List.of("A", "B"), new double[]{1.0}, new Random(42)));
+    }
+
+    @Test
+    void testInvalidWeightsThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AliasMethodSampler<>(List.of("A", "B"), new double[]{1.0, -0.5}, new Random(42)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AliasMethodSampler<>(List.of("A", "B"), new double[]{0.0, 0.0}, new Random(42)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AliasMethodSampler<>(List.of("A", "B"), new double[]{1.0, Double.NaN}, new Random(42)));
+    }
+}
@@ -0,0 +1,137 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.annotations.base.Ratio;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotation;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotationRecord;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.*;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CohortSimulatorTest {
+
+    private static final int N_DISEASES = 40;
+    private static final TermId FAILING = TermId.of("OMIM:100017");
+
+    /** All -> Phenotypic abnormality -> 10 terms, each with 3 children. */
+    private static Ontology ontology() {
+        TermId root = TermId.of("HP:0000001");
+        TermId phenotypicAbnormality = TermId.of("HP:0000118");
+        List<Term> terms = new ArrayList<>(List.of(Term.of(root, "All"), Term.of(phenotypicAbnormality, "Phenotypic abnormality")));
+        List<Relationship> relationships = new ArrayList<>();
+        relationships.add(new Relationship(phenotypicAbnormality, root, 1, RelationshipType.IS_A));
+        for (int i = 1; i <= 10; i++) {
+            TermId parent = TermId.of(String.format("HP:%07d", 1000 * i));
+            terms.add(Term.of(parent, "term " + i));
+            relationships.add(new Relationship(parent, phenotypicAbnormality, relationships.size() + 1, RelationshipType.IS_A));
+            for (int k = 1; k <= 3; k++) {
+                TermId child = TermId.of(String.format("HP:%07d", 1000 * i + k));
+                terms.add(Term.of(child, "term " + i + "." + k));
+                relationships.add(new Relationship(child, parent, relationships.size() + 1, RelationshipType.IS_A));
+            }
+        }
+        return ImmutableOntology.builder().terms(terms).relationships(relationships).build();
+    }
+
+    private static DiseaseModelStore store() {
+        List<HpoDisease> diseases = new ArrayList<>();
+        for (int d = 0; d < N_DISEASES; d++) {
+            List<HpoDiseaseAnnotation> annotations = new ArrayList<>();
+            for (int a = 0; a < 4; a++) {
+                int term = 1000 * (1 + (d + a) % 10) + 1 + (d + 2 * a) % 3;
+                HpoDiseaseAnnotationRecord rec = HpoDiseaseAnnotationRecord.of(Ratio.of(1 + a, 5), null, List.of(), null, List.of());
+                annotations.add(HpoDiseaseAnnotation.of(TermId.of(String.format("HP:%07d", term)), List.of(rec)));
+            }
+            diseases.add(HpoDisease.of(TermId.of("OMIM:" + (100000 + d)), "Disease " + d, null, annotations, List.of()));
+        }
+        return DiseaseModelStore.of(HpoDiseases.of("test", diseases));
+    }
+
+    private static SimulatedHpoDiseaseGenerator generator(DiseaseModelStore store) {
+        return new SimulatedHpoDiseaseGenerator(store, ontology(), 42, 1_700_000_000L, new NoiseModel(0.2, 0.1, 1), 1);
+    }
+
+    /** Serializes the phenopackets in the order in which they are written. */
+    private static class BytesSink implements PhenopacketSink {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void write(Phenopacket phenopacket) throws IOException {
+            phenopacket.writeDelimitedTo(bytes);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static byte[] simulateDiseases(int nThreads) throws IOException {
+        DiseaseModelStore store = store();
+        CohortSimulator simulator = new CohortSimulator(generator(store), 5, 3, nThreads);
+        BytesSink sink = new BytesSink();
+        assertEquals(5L * N_DISEASES, simulator.simulate(store.diseaseIds(), sink));
+        return sink.bytes.toByteArray();
+    }
+
+    private static byte[] simulateSampledCohort(int nThreads) throws IOException {
+        DiseaseModelStore store = store();
+        CohortSimulator simulator = new CohortSimulator(generator(store), 0, 3, nThreads);
+        DiseaseSampler sampler = DiseaseSampler.uniform(store.diseaseIds(), new SplittableRandom(7));
+        BytesSink sink = new BytesSink();
+        // several batches, the last one partial
+        assertEquals(1000L, simulator.simulate(sampler, 1000, sink));
+        return sink.bytes.toByteArray();
+    }
+
+    @Test
+    public void testOutputDoesNotDependOnThreads() throws IOException {
+        byte[] single = simulateDiseases(1);
+        assertTrue(single.length > 0);
+        assertArrayEquals(single, simulateDiseases(4));
+        assertArrayEquals(single, simulateDiseases(7));
+    }
+
+    @Test
+    public void testSampledCohortDoesNotDependOnThreads() throws IOException {
+        byte[] single = simulateSampledCohort(1);
+        assertTrue(single.length > 0);
+        assertArrayEquals(single, simulateSampledCohort(4));
+    }
+
+    @Test
+    public void testGeneratorFailureIsReported() throws Exception {
+        DiseaseModelStore store = store();
+        SimulatedHpoDiseaseGenerator failing = new SimulatedHpoDiseaseGenerator(store, ontology(), 42, 0) {
+            @Override
+            public Optional<Phenopacket> generateSimulatedPhenopacket(TermId omimId, int nTerms, String identifier,
+                                                                      RandomGenerator random) {
+                if (omimId.equals(FAILING)) {
+                    throw new IllegalStateException("generator broke on " + omimId.getValue());
+                }
+                return super.generateSimulatedPhenopacket(omimId, nTerms, identifier, random);
+            }
+        };
+        CohortSimulator simulator = new CohortSimulator(failing, 3, 2, 4);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PhenolRuntimeException> result = executor.submit(() -> assertThrows(PhenolRuntimeException.class,
+                    () -> simulator.simulate(store.diseaseIds(), new BytesSink())));
+            // a hang would time out here
+            PhenolRuntimeException e = result.get(60, TimeUnit.SECONDS);
+            assertTrue(e.getMessage().contains("generator broke on OMIM:100017"), e.getMessage());
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
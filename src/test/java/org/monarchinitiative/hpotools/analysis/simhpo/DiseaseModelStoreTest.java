@@ -0,0 +1,136 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.annotations.base.Ratio;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotation;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotationRecord;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiseaseModelStoreTest {
+
+    private static HpoDiseaseAnnotation annotation(String hpoId, int numerator, int denominator) {
+        HpoDiseaseAnnotationRecord rec = HpoDiseaseAnnotationRecord.of(Ratio.of(numerator, denominator),
+                null, List.of(), null, List.of());
+        return HpoDiseaseAnnotation.of(TermId.of(hpoId), List.of(rec));
+    }
+
+    private static DiseaseModelStore store() {
+        HpoDisease d1 = HpoDisease.of(TermId.of("OMIM:100001"), "Disease A", null,
+                List.of(annotation("HP:0000101", 3, 4),
+                        annotation("HP:0000202", 1, 1),
+                        annotation("HP:0000303", 1, 10),
+                        annotation("HP:0000404", 0, 5)),
+                List.of());
+        HpoDisease d2 = HpoDisease.of(TermId.of("OMIM:100002"), "Disease B", null,
+                List.of(annotation("HP:0000202", 2, 2)),
+                List.of(TermId.of("HP:0001419")));
+        return DiseaseModelStore.of(HpoDiseases.of("test", List.of(d2, d1)), "key");
+    }
+
+    @Test
+    void testDiseasesAreSortedAndIndexed() {
+        DiseaseModelStore store = store();
+        assertEquals(List.of(TermId.of("OMIM:100001"), TermId.of("OMIM:100002")), store.diseaseIds());
+        assertEquals(1, store.indexOf(TermId.of("OMIM:100002")));
+        assertEquals(-1, store.indexOf(TermId.of("OMIM:999999")));
+        assertEquals(4, store.annotationCount(0));
+        assertTrue(store.isXLinkedRecessive(1));
+        assertFalse(store.hasOnset(0));
+    }
+
+    @Test
+    void testSampledAnnotationsAreDistinct() {
+        DiseaseModelStore store = store();
+        SplittableRandom random = new SplittableRandom(42);
+        int[] out = new int[4];
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(4, store.sampleAnnotations(0, 4, random, out));
+            Set<TermId> terms = new HashSet<>();
+            for (int a : out) {
+                terms.add(store.annotationTermId(a));
+            }
+            assertEquals(4, terms.size());
+            // the annotation with frequency zero is never drawn while positive annotations remain
+            store.sampleAnnotations(0, 3, random, out);
+            for (int k = 0; k < 3; k++) {
+                assertNotEquals(TermId.of("HP:0000404"), store.annotationTermId(out[k]));
+            }
+        }
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        DiseaseModelStore store = store();
+        Path path = Files.createTempFile("diseasemodels", ".bin");
+        try {
+            store.write(path);
+            assertTrue(DiseaseModelStore.read(path, "other key").isEmpty());
+            Optional<DiseaseModelStore> opt = DiseaseModelStore.read(path, "key");
+            assertTrue(opt.isPresent());
+            DiseaseModelStore copy = opt.get();
+            assertEquals(store.diseaseIds(), copy.diseaseIds());
+            int[] expected = new int[3];
+            int[] actual = new int[3];
+            store.sampleAnnotations(0, 3, new SplittableRandom(7), expected);
+            copy.sampleAnnotations(0, 3, new SplittableRandom(7), actual);
+            assertArrayEquals(expected, actual);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /** A damaged file must be ignored, not cause exceptions or huge allocations. */
+    @Test
+    void testCorruptFileIsIgnored() throws IOException {
+        Path path = Files.createTempFile("diseasemodels", ".bin");
+        try {
+            store().write(path);
+            byte[] original = Files.readAllBytes(path);
+            // magic, format and the source key "key"
+            int header = 4 + 4 + 2 + 3;
+            for (int pos = header; pos + 4 <= original.length; pos++) {
+                for (int value : new int[]{Integer.MAX_VALUE, -2, 1 << 20, 7}) {
+                    byte[] corrupt = original.clone();
+                    ByteBuffer.wrap(corrupt).putInt(pos, value);
+                    Files.write(path, corrupt);
+                    Optional<DiseaseModelStore> opt = DiseaseModelStore.read(path, "key"); // must not throw
+                    if (opt.isPresent()) {
+                        // whatever was accepted must be safe to sample from
+                        DiseaseModelStore copy = opt.get();
+                        int[] out = new int[4];
+                        for (int d = 0; d < copy.diseaseCount(); d++) {
+                            int n = copy.sampleAnnotations(d, copy.annotationCount(d), new SplittableRandom(1), out);
+                            for (int k = 0; k < n; k++) {
+                                copy.annotationTermId(out[k]);
+                                copy.modifiers(out[k]);
+                            }
+                        }
+                    }
+                }
+            }
+            byte[] corrupt = original.clone();
+            ByteBuffer.wrap(corrupt).putInt(header, Integer.MAX_VALUE); // number of terms
+            Files.write(path, corrupt);
+            assertTrue(DiseaseModelStore.read(path, "key").isEmpty());
+            Files.write(path, Arrays.copyOf(original, original.length / 2));
+            assertTrue(DiseaseModelStore.read(path, "key").isEmpty());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiseaseSamplerTest {
+
+    private static final TermId A = TermId.of("OMIM:100001");
+    private static final TermId B = TermId.of("OMIM:100002");
+    private static final TermId C = TermId.of("OMIM:100003");
+
+    @Test
+    public void testPrevalenceFile() throws IOException {
+        Path path = Files.createTempFile("prevalence", ".tsv");
+        try {
+            Files.writeString(path, "disease\tprevalence\nOMIM:100001\t0.75\n100002\t0.25\nOMIM:999999\t1.0\n");
+            DiseaseSampler sampler = DiseaseSampler.fromPrevalenceFile(path, List.of(A, B, C), new SplittableRandom(1));
+            Map<TermId, Integer> counts = new HashMap<>();
+            int n = 20_000;
+            for (int i = 0; i < n; i++) {
+                counts.merge(sampler.sample(), 1, Integer::sum);
+            }
+            assertFalse(counts.containsKey(C)); // not in the file
+            assertEquals(0.75, counts.get(A) / (double) n, 0.02);
+            assertEquals(0.25, counts.get(B) / (double) n, 0.02);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testNoPositiveWeight() throws IOException {
+        Path path = Files.createTempFile("prevalence", ".tsv");
+        try {
+            Files.writeString(path, "OMIM:999999\t1.0\n");
+            assertThrows(PhenolRuntimeException.class,
+                    () -> DiseaseSampler.fromPrevalenceFile(path, List.of(A, B), new SplittableRandom(1)));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
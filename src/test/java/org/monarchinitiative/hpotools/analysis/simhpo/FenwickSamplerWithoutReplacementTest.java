@@ -0,0 +1,74 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FenwickSamplerWithoutReplacementTest {
+
+    @Test
+    void testEachElementIsDrawnOnce() {
+        List<Integer> elements = List.of(0, 1, 2, 3, 4, 5, 6);
+        double[] weights = {0.5, 0.1, 0.0, 2.0, 1.0, 0.25, 0.0};
+        FenwickSamplerWithoutReplacement<Integer> sampler =
+                new FenwickSamplerWithoutReplacement<>(elements, weights, new Random(42));
+        Set<Integer> seen = new HashSet<>(sampler.sample(elements.size()));
+        assertEquals(elements.size(), seen.size());
+        assertEquals(0, sampler.remaining());
+        assertThrows(IllegalStateException.class, sampler::sample);
+    }
+
+    @Test
+    void testFirstDrawIsProportional() {
+        List<String> elements = List.of("A", "B", "C");
+        double[] weights = {1.0, 3.0, 6.0};
+        Random random = new Random(42);
+        int nTrials = 50_000;
+        int[] counts = new int[elements.size()];
+        for (int i = 0; i < nTrials; i++) {
+            FenwickSamplerWithoutReplacement<String> sampler =
+                    new FenwickSamplerWithoutReplacement<>(elements, weights, random);
+            counts[sampler.sampleIndex()]++;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            assertEquals(weights[i] / 10.0, (double) counts[i] / nTrials, 0.01);
+        }
+    }
+
+    @Test
+    void testTooManySamplesThrows() {
+        FenwickSamplerWithoutReplacement<String> sampler =
+                new FenwickSamplerWithoutReplacement<>(List.of("A", "B"), new double[]{1.0, 1.0}, new Random(42));
+        assertThrows(IllegalArgumentException.class, () -> sampler.sample(3));
+    }
+
+    @Test
+    void testInvalidProbabilitiesThrow() {
+        for (double p : new double[]{-1.0, Double.NaN, Double.POSITIVE_INFINITY}) {
+            assertThrows(IllegalArgumentException.class, () ->
+                    new FenwickSamplerWithoutReplacement<>(List.of("A", "B"), new double[]{1.0, p}, new Random(42)));
+        }
+    }
+
+    @Test
+    void testSampleIndicesAndReset() {
+        FenwickSamplerWithoutReplacement<String> sampler = new FenwickSamplerWithoutReplacement<>(
+                List.of("A", "B", "C", "D"), new double[]{1.0, 1.0, 1.0, 1.0}, new Random(42));
+        int[] buffer = new int[6];
+        for (int round = 0; round < 3; round++) {
+            assertEquals(4, sampler.sampleIndices(4, buffer));
+            Set<Integer> seen = new HashSet<>();
+            for (int i = 0; i < 4; i++) {
+                seen.add(buffer[i]);
+            }
+            assertEquals(4, seen.size());
+            assertThrows(IllegalArgumentException.class, () -> sampler.sampleIndices(1, buffer));
+            sampler.reset();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Individual;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhenopacketSinkTest {
+
+    private static final int N = 50;
+
+    private static List<Phenopacket> phenopackets() {
+        List<Phenopacket> phenopackets = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            phenopackets.add(Phenopacket.newBuilder()
+                    .setId("SIM-OMIM:100001-" + i)
+                    .setSubject(Individual.newBuilder().setId("individual " + i))
+                    .build());
+        }
+        return phenopackets;
+    }
+
+    /** Write all phenopackets through an asynchronous sink with a small queue, as simhpo does. */
+    private static void writeAll(PhenopacketOutputFormat format, Path path, boolean gzip) throws IOException {
+        try (PhenopacketSink sink = new AsyncPhenopacketSink(format.open(path, gzip), 4)) {
+            for (Phenopacket phenopacket : phenopackets()) {
+                sink.write(phenopacket);
+            }
+        }
+    }
+
+    private static InputStream open(Path path, boolean gzip) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path));
+        return gzip ? new GZIPInputStream(in) : in;
+    }
+
+    private static Phenopacket parseJson(String json) throws IOException {
+        Phenopacket.Builder builder = Phenopacket.newBuilder();
+        JsonFormat.parser().merge(json, builder);
+        return builder.build();
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testProtobufRoundTrip() throws IOException {
+        for (boolean gzip : new boolean[]{false, true}) {
+            Path dir = Files.createTempDirectory("sink");
+            try {
+                Path path = dir.resolve("cases.pb");
+                writeAll(PhenopacketOutputFormat.PROTOBUF, path, gzip);
+                List<Phenopacket> read = new ArrayList<>();
+                try (InputStream in = open(path, gzip)) {
+                    Phenopacket phenopacket;
+                    while ((phenopacket = Phenopacket.parseDelimitedFrom(in)) != null) {
+                        read.add(phenopacket);
+                    }
+                }
+                assertEquals(phenopackets(), read);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    @Test
+    public void testJsonLinesRoundTrip() throws IOException {
+        for (boolean gzip : new boolean[]{false, true}) {
+            Path dir = Files.createTempDirectory("sink");
+            try {
+                Path path = dir.resolve("cases.jsonl");
+                writeAll(PhenopacketOutputFormat.JSONL, path, gzip);
+                List<Phenopacket> read = new ArrayList<>();
+                try (BufferedReader br = new BufferedReader(new InputStreamReader(open(path, gzip), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        read.add(parseJson(line));
+                    }
+                }
+                assertEquals(phenopackets(), read);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    @Test
+    public void testJsonDirectoryRoundTrip() throws IOException {
+        for (boolean gzip : new boolean[]{false, true}) {
+            Path dir = Files.createTempDirectory("sink");
+            try {
+                Path out = dir.resolve("cases");
+                writeAll(PhenopacketOutputFormat.JSON, out, gzip);
+                try (Stream<Path> files = Files.list(out)) {
+                    assertEquals(N, files.count());
+                }
+                for (Phenopacket phenopacket : phenopackets()) {
+                    // ':' is not allowed in file names
+                    String name = phenopacket.getId().replace(':', '_') + (gzip ? ".json.gz" : ".json");
+                    try (InputStream in = open(out.resolve(name), gzip)) {
+                        assertEquals(phenopacket, parseJson(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+                    }
+                }
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    /** A delegate that fails on the first phenopacket must make close() throw, not block the producer. */
+    @Test
+    public void testDefaultOutputName() {
+        assertEquals("simulated_phenopackets.txt", PhenopacketOutputFormat.TEXT.defaultOutputName(false));
+        assertEquals("simulated_phenopackets.jsonl.gz", PhenopacketOutputFormat.JSONL.defaultOutputName(true));
+        assertEquals("simulated_phenopackets.pb", PhenopacketOutputFormat.PROTOBUF.defaultOutputName(false));
+        // the files in the directory get the .gz suffix
+        assertEquals("simulated_phenopackets", PhenopacketOutputFormat.JSON.defaultOutputName(true));
+    }
+
+    @Test
+    public void testFailingDelegate() {
+        PhenopacketSink failing = new PhenopacketSink() {
+            @Override
+            public void write(Phenopacket phenopacket) {
+                throw new IllegalStateException("disk on fire");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        IOException e = assertThrows(IOException.class, () -> {
+            try (PhenopacketSink sink = new AsyncPhenopacketSink(failing, 2)) {
+                for (int i = 0; i < 1000; i++) {
+                    try {
+                        sink.write(phenopackets().get(i % N));
+                    } catch (IOException ignored) {
+                        // keep producing; close() must still report the failure
+                    }
+                }
+            }
+        });
+        assertTrue(e.getMessage().contains("disk on fire"));
+    }
+}
@@ -0,0 +1,180 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.annotations.base.Ratio;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotation;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseaseAnnotationRecord;
+import org.monarchinitiative.phenol.annotations.formats.hpo.HpoDiseases;
+import org.monarchinitiative.phenol.ontology.data.*;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.PhenotypicFeature;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulatedHpoDiseaseGeneratorTest {
+
+    private static final TermId DISEASE = TermId.of("OMIM:100001");
+    /** Annotated only with the leaf A11. */
+    private static final TermId LEAF_DISEASE = TermId.of("OMIM:100002");
+
+    /**
+     * All -> Phenotypic abnormality -> {A, B, C, D}; A -> A1 -> A11; B -> B1; C -> C1
+     */
+    private static Ontology ontology() {
+        List<String> ids = List.of("HP:0000001", "HP:0000118", "HP:0000100", "HP:0000101", "HP:0000102",
+                "HP:0000200", "HP:0000201", "HP:0000300", "HP:0000301", "HP:0000400");
+        List<Term> terms = new ArrayList<>();
+        for (String id : ids) {
+            terms.add(Term.of(TermId.of(id), id));
+        }
+        List<String[]> isA = List.of(
+                new String[]{"HP:0000118", "HP:0000001"},
+                new String[]{"HP:0000100", "HP:0000118"},
+                new String[]{"HP:0000101", "HP:0000100"},
+                new String[]{"HP:0000102", "HP:0000101"},
+                new String[]{"HP:0000200", "HP:0000118"},
+                new String[]{"HP:0000201", "HP:0000200"},
+                new String[]{"HP:0000300", "HP:0000118"},
+                new String[]{"HP:0000301", "HP:0000300"},
+                new String[]{"HP:0000400", "HP:0000118"});
+        List<Relationship> relationships = new ArrayList<>();
+        for (String[] edge : isA) {
+            relationships.add(new Relationship(TermId.of(edge[0]), TermId.of(edge[1]), relationships.size() + 1,
+                    RelationshipType.IS_A));
+        }
+        return ImmutableOntology.builder()
+                .metaInfo(Map.of("release", "2024-01-01"))
+                .terms(terms)
+                .relationships(relationships)
+                .build();
+    }
+
+    private static HpoDiseases diseases() {
+        HpoDiseaseAnnotationRecord rec = HpoDiseaseAnnotationRecord.of(Ratio.of(1, 2), null, List.of(), null, List.of());
+        HpoDisease disease = HpoDisease.of(DISEASE, "Disease A", null,
+                List.of(HpoDiseaseAnnotation.of(TermId.of("HP:0000101"), List.of(rec)),
+                        HpoDiseaseAnnotation.of(TermId.of("HP:0000201"), List.of(rec))),
+                List.of());
+        HpoDisease leafDisease = HpoDisease.of(LEAF_DISEASE, "Disease B", null,
+                List.of(HpoDiseaseAnnotation.of(TermId.of("HP:0000102"), List.of(rec))),
+                List.of());
+        return HpoDiseases.of("test", List.of(disease, leafDisease));
+    }
+
+    private static DiseaseModelStore store() {
+        return DiseaseModelStore.of(diseases());
+    }
+
+    private static List<String> features(Phenopacket pp) {
+        return pp.getPhenotypicFeaturesList().stream().map(f -> f.getType().getId()).toList();
+    }
+
+    @Test
+    public void testExcludedTermsAreNotAnnotatedOrAncestors() {
+        SimulatedHpoDiseaseGenerator generator = new SimulatedHpoDiseaseGenerator(store(), ontology(), 42, 0,
+                NoiseModel.NONE, 2);
+        // the only candidates are HP:0000102 (descendant of an annotation), HP:0000300, HP:0000301 and HP:0000400
+        Set<String> allowed = Set.of("HP:0000102", "HP:0000300", "HP:0000301", "HP:0000400");
+        for (int i = 0; i < 50; i++) {
+            Phenopacket pp = generator.generateSimulatedPhenopacket(DISEASE, 2, "case" + i).orElseThrow();
+            List<String> excluded = pp.getPhenotypicFeaturesList().stream()
+                    .filter(PhenotypicFeature::getExcluded)
+                    .map(f -> f.getType().getId())
+                    .toList();
+            assertEquals(2, excluded.size());
+            assertNotEquals(excluded.get(0), excluded.get(1));
+            assertTrue(allowed.containsAll(excluded), excluded.toString());
+        }
+    }
+
+    @Test
+    public void testNoExcludedTermsByDefault() {
+        SimulatedHpoDiseaseGenerator generator = new SimulatedHpoDiseaseGenerator(store(), ontology(), 42, 0);
+        Phenopacket pp = generator.generateSimulatedPhenopacket(DISEASE, 2, "case").orElseThrow();
+        assertEquals(2, pp.getPhenotypicFeaturesCount());
+        assertTrue(pp.getPhenotypicFeaturesList().stream().noneMatch(PhenotypicFeature::getExcluded));
+    }
+
+    @Test
+    public void testAncestorNoiseOnlyUsesProperAncestorsBelowRoot() {
+        SimulatedHpoDiseaseGenerator generator = new SimulatedHpoDiseaseGenerator(store(), ontology(), 42, 0,
+                new NoiseModel(1.0, 0.0, 0), 0);
+        for (int i = 0; i < 50; i++) {
+            Phenopacket pp = generator.generateSimulatedPhenopacket(DISEASE, 2, "case" + i).orElseThrow();
+            assertEquals(Set.of("HP:0000100", "HP:0000200"), Set.copyOf(features(pp)));
+        }
+        // A11 is replaced by A1 or A, never by itself, Phenotypic abnormality or All
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            Phenopacket pp = generator.generateSimulatedPhenopacket(LEAF_DISEASE, 1, "case" + i).orElseThrow();
+            seen.addAll(features(pp));
+        }
+        assertEquals(Set.of("HP:0000100", "HP:0000101"), seen);
+    }
+
+    @Test
+    public void testDropNoiseKeepsOneFeature() {
+        SimulatedHpoDiseaseGenerator generator = new SimulatedHpoDiseaseGenerator(store(), ontology(), 42, 0,
+                new NoiseModel(0.0, 1.0, 0), 0);
+        for (int i = 0; i < 50; i++) {
+            Phenopacket pp = generator.generateSimulatedPhenopacket(DISEASE, 2, "case" + i).orElseThrow();
+            assertEquals(1, pp.getPhenotypicFeaturesCount());
+            assertTrue(Set.of("HP:0000101", "HP:0000201").containsAll(features(pp)));
+        }
+    }
+
+    @Test
+    public void testRandomNoiseAddsUnrelatedTerms() {
+        SimulatedHpoDiseaseGenerator generator = new SimulatedHpoDiseaseGenerator(store(), ontology(), 42, 0,
+                new NoiseModel(0.0, 0.0, 2), 0);
+        // unrelated to A1 and B1 are C, C1 and D, and C and C1 are related to each other
+        Set<String> unrelated = Set.of("HP:0000300", "HP:0000301", "HP:0000400");
+        for (int i = 0; i < 50; i++) {
+            Phenopacket pp = generator.generateSimulatedPhenopacket(DISEASE, 2, "case" + i).orElseThrow();
+            List<String> features = features(pp);
+            assertEquals(4, features.size());
+            assertEquals(Set.of("HP:0000101", "HP:0000201"), Set.copyOf(features.subList(0, 2)));
+            List<String> added = features.subList(2, 4);
+            assertTrue(unrelated.containsAll(added), added.toString());
+            assertTrue(added.contains("HP:0000400"), added.toString());
+        }
+    }
+
+    @Test
+    public void testFixedSeedIsReproducible() {
+        NoiseModel noise = new NoiseModel(0.5, 0.3, 1);
+        SimulatedHpoDiseaseGenerator first = new SimulatedHpoDiseaseGenerator(store(), ontology(), 7, 0, noise, 1);
+        SimulatedHpoDiseaseGenerator second = new SimulatedHpoDiseaseGenerator(store(), ontology(), 7, 0, noise, 1);
+        SimulatedHpoDiseaseGenerator other = new SimulatedHpoDiseaseGenerator(store(), ontology(), 8, 0, noise, 1);
+        boolean differs = false;
+        for (int i = 0; i < 20; i++) {
+            Phenopacket a = first.generateSimulatedPhenopacket(DISEASE, 2, "case" + i, first.substream(DISEASE, i)).orElseThrow();
+            Phenopacket b = second.generateSimulatedPhenopacket(DISEASE, 2, "case" + i, second.substream(DISEASE, i)).orElseThrow();
+            Phenopacket c = other.generateSimulatedPhenopacket(DISEASE, 2, "case" + i, other.substream(DISEASE, i)).orElseThrow();
+            assertEquals(a, b);
+            differs |= !a.equals(c);
+        }
+        assertTrue(differs, "a different seed should give different cases");
+    }
+
+    /** Without an explicit creation time, separate runs must still write identical phenopackets. */
+    @Test
+    public void testSeparateGeneratorsWriteIdenticalPhenopackets() {
+        SimulatedHpoDiseaseGenerator first = new SimulatedHpoDiseaseGenerator(diseases(), ontology(), 42);
+        SimulatedHpoDiseaseGenerator second = new SimulatedHpoDiseaseGenerator(diseases(), ontology(), 42);
+        for (int i = 0; i < 5; i++) {
+            Phenopacket a = first.generateSimulatedPhenopacket(DISEASE).orElseThrow();
+            Phenopacket b = second.generateSimulatedPhenopacket(DISEASE).orElseThrow();
+            assertArrayEquals(a.toByteArray(), b.toByteArray());
+            // the creation time is the release date of the ontology, 2024-01-01
+            assertEquals(1_704_067_200L, a.getMetaData().getCreated().getSeconds());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.monarchinitiative.hpotools.analysis.simhpo;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulationShardTest {
+
+    private static List<TermId> diseases(int n) {
+        List<TermId> ids = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ids.add(TermId.of("OMIM", String.valueOf(100000 + i)));
+        }
+        return ids;
+    }
+
+    @Test
+    public void testShardsPartitionTheDiseases() {
+        List<TermId> all = diseases(103);
+        Set<TermId> seen = new HashSet<>();
+        for (int i = 1; i <= 4; i++) {
+            List<TermId> shard = new SimulationShard(i, 4).select(all, 42);
+            assertTrue(shard.size() == 25 || shard.size() == 26);
+            // the shard keeps the order of the complete list
+            for (int k = 1; k < shard.size(); k++) {
+                assertTrue(all.indexOf(shard.get(k - 1)) < all.indexOf(shard.get(k)));
+            }
+            for (TermId id : shard) {
+                assertTrue(seen.add(id));
+            }
+        }
+        assertEquals(all.size(), seen.size());
+    }
+
+    @Test
+    public void testSelectionIsDeterministic() {
+        List<TermId> all = diseases(50);
+        assertEquals(new SimulationShard(2, 3).select(all, 7), new SimulationShard(2, 3).select(all, 7));
+        assertNotEquals(new SimulationShard(2, 3).select(all, 7), new SimulationShard(2, 3).select(all, 8));
+        assertEquals(all, SimulationShard.ALL.select(all, 7));
+    }
+
+    @Test
+    public void testParse() {
+        assertEquals(new SimulationShard(2, 8), SimulationShard.parse("2/8"));
+        assertThrows(PhenolRuntimeException.class, () -> SimulationShard.parse("0/8"));
+        assertThrows(PhenolRuntimeException.class, () -> SimulationShard.parse("9/8"));
+        assertThrows(PhenolRuntimeException.class, () -> SimulationShard.parse("2"));
+    }
+
+    @Test
+    public void testManifestResume() throws IOException {
+        Path path = Files.createTempFile("simhpo", ".manifest");
+        Files.delete(path);
+        try {
+            CheckpointManifest manifest = CheckpointManifest.open(path, "seed=42");
+            manifest.markComplete(0, 10);
+            manifest.markComplete(2, 10);
+            CheckpointManifest resumed = CheckpointManifest.open(path, "seed=42");
+            assertTrue(resumed.isComplete(0));
+            assertFalse(resumed.isComplete(1));
+            assertTrue(resumed.isComplete(2));
+            assertThrows(PhenolRuntimeException.class, () -> CheckpointManifest.open(path, "seed=43"));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.monarchinitiative.hpotools.serve;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandServerTest {
+
+    @CommandLine.Command(name = "test")
+    static class RootCommand implements Callable<Integer> {
+        @Override
+        public Integer call() {
+            return 0;
+        }
+    }
+
+    /** Prints its word many times, from the request thread and from a thread that it starts. */
+    @CommandLine.Command(name = "echo")
+    static class EchoCommand implements Callable<Integer> {
+        @CommandLine.Parameters(index = "0")
+        private String word;
+
+        @Override
+        public Integer call() throws InterruptedException {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    System.out.println(word);
+                }
+            });
+            worker.start();
+            for (int i = 0; i < 100; i++) {
+                System.out.println(word);
+                if (i % 10 == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            worker.join();
+            System.err.println("done " + word);
+            return word.length();
+        }
+    }
+
+    /** Prints where a relative path of an option would be read from. */
+    @CommandLine.Command(name = "where")
+    static class WhereCommand implements Callable<Integer> {
+        @Override
+        public Integer call() {
+            System.out.println(RequestDirectory.resolve("data/hp.json"));
+            return 0;
+        }
+    }
+
+    private static CommandServer server() {
+        return new CommandServer(() -> new CommandLine(new RootCommand())
+                .addSubcommand("echo", new EchoCommand())
+                .addSubcommand("where", new WhereCommand()));
+    }
+
+    private static void assertOnly(String word, String output) {
+        List<String> lines = output.lines().toList();
+        assertEquals(200, lines.size());
+        for (String line : lines) {
+            assertEquals(word, line);
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsGetTheirOwnOutput() throws Exception {
+        CommandServer server = server();
+        Path dir = Path.of("").toAbsolutePath();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String[]>> futures = List.of("alpha", "beta").stream().map(word -> executor.submit(() -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ByteArrayOutputStream err = new ByteArrayOutputStream();
+                start.await();
+                int exitCode = server.execute(dir, List.of("echo", word), out, err);
+                return new String[]{String.valueOf(exitCode), out.toString(StandardCharsets.UTF_8),
+                        err.toString(StandardCharsets.UTF_8)};
+            })).toList();
+            start.countDown();
+            String[] alpha = futures.get(0).get(30, TimeUnit.SECONDS);
+            String[] beta = futures.get(1).get(30, TimeUnit.SECONDS);
+            assertEquals("5", alpha[0]);
+            assertOnly("alpha", alpha[1]);
+            assertEquals("done alpha\n", alpha[2]);
+            assertEquals("4", beta[0]);
+            assertOnly("beta", beta[1]);
+            assertEquals("done beta\n", beta[2]);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRelativePathsResolvedAgainstClientDirectory() {
+        CommandServer server = server();
+        Path clientDir = Path.of(System.getProperty("java.io.tmpdir"), "client-dir").toAbsolutePath();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, server.execute(clientDir, List.of("where"), out, new ByteArrayOutputStream()));
+        assertEquals(clientDir.resolve("data/hp.json").toString(), out.toString(StandardCharsets.UTF_8).trim());
+        // the request thread no longer resolves against the directory of the client
+        assertEquals(Path.of("data/hp.json"), RequestDirectory.resolve("data/hp.json"));
+    }
+
+    @Test
+    public void testServeRefusesNestedServer() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(2, server().execute(Path.of("").toAbsolutePath(), List.of("serve"), new ByteArrayOutputStream(), err));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Cannot start a server"));
+    }
+
+    @Test
+    public void testHttpRequiresTokenAndPlainText() throws Exception {
+        Path dir = Files.createTempDirectory("hpotools-serve");
+        Path tokenFile = dir.resolve("token");
+        HttpServer http = server().startHttp(0, tokenFile);
+        try {
+            String token = Files.readString(tokenFile).trim();
+            URI uri = URI.create("http://127.0.0.1:" + http.getAddress().getPort() + "/run");
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString("echo\nhttp\n");
+            // larger than the socket buffers, so that a server that does not read the body of a rejected request
+            // resets the connection while the client is still sending
+            HttpRequest.BodyPublisher largeBody = HttpRequest.BodyPublishers.ofString("echo\n" + "x".repeat(4 << 20) + "\n");
+
+            // the same client (and connection pool) is used for all requests, also after a rejection
+            for (int round = 0; round < 3; round++) {
+                HttpRequest noToken = HttpRequest.newBuilder(uri).header("Content-Type", "text/plain").POST(largeBody).build();
+                assertEquals(401, client.send(noToken, HttpResponse.BodyHandlers.discarding()).statusCode());
+                HttpRequest wrongToken = HttpRequest.newBuilder(uri).header("Content-Type", "text/plain")
+                        .header(CommandServer.TOKEN_HEADER, "0" + token.substring(1).replace('0', '1')).POST(largeBody).build();
+                assertEquals(401, client.send(wrongToken, HttpResponse.BodyHandlers.discarding()).statusCode());
+                HttpRequest form = HttpRequest.newBuilder(uri).header("Content-Type", "application/x-www-form-urlencoded")
+                        .header(CommandServer.TOKEN_HEADER, token).POST(largeBody).build();
+                assertEquals(415, client.send(form, HttpResponse.BodyHandlers.discarding()).statusCode());
+                HttpRequest browser = HttpRequest.newBuilder(uri).header("Content-Type", "text/plain")
+                        .header(CommandServer.TOKEN_HEADER, token).header("Origin", "http://example.org").POST(largeBody).build();
+                assertEquals(403, client.send(browser, HttpResponse.BodyHandlers.discarding()).statusCode());
+            }
+
+            HttpRequest ok = HttpRequest.newBuilder(uri).header("Content-Type", "text/plain; charset=utf-8")
+                    .header(CommandServer.TOKEN_HEADER, token).POST(body).build();
+            HttpResponse<String> response = client.send(ok, HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals("4", response.headers().firstValue("X-Exit-Code").orElse(null));
+            // standard output only, standard error goes to the log of the server
+            assertOnly("http", response.body());
+        } finally {
+            http.stop(0);
+            Files.deleteIfExists(tokenFile);
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.monarchinitiative.hpotools.serve;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServeProtocolTest {
+
+    @Test
+    public void testRequestRoundTrip() throws IOException {
+        List<String> args = List.of("simhpo", "--hpo", "data/hp.json", "--disease", "154700", "ümlaut ok");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ServeProtocol.writeRequest(new DataOutputStream(bytes), "/home/user/work", args);
+        ServeProtocol.Request request = ServeProtocol.readRequest(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals("/home/user/work", request.workingDirectory());
+        assertEquals(args, request.args());
+    }
+
+    @Test
+    public void testRejectNonClient() {
+        byte[] bytes = "GET / HTTP/1.1\r\n".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(RuntimeException.class,
+                () -> ServeProtocol.readRequest(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    /** Frames of both channels share one connection and end with the exit code. */
+    @Test
+    public void testFrames() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        OutputStream stdout = new ServeProtocol.FrameOutputStream(out, ServeProtocol.STDOUT);
+        OutputStream stderr = new ServeProtocol.FrameOutputStream(out, ServeProtocol.STDERR);
+        stdout.write("first line\n".getBytes(StandardCharsets.UTF_8));
+        stderr.write("a warning\n".getBytes(StandardCharsets.UTF_8));
+        stdout.write(new byte[0]); // no empty frames
+        stdout.write('x');
+        stdout.flush();
+        ServeProtocol.writeExit(out, 3);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ByteArrayOutputStream receivedOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream receivedErr = new ByteArrayOutputStream();
+        int frames = 0;
+        byte channel;
+        while ((channel = in.readByte()) != ServeProtocol.EXIT) {
+            byte[] chunk = new byte[in.readInt()];
+            in.readFully(chunk);
+            (channel == ServeProtocol.STDERR ? receivedErr : receivedOut).write(chunk);
+            frames++;
+        }
+        assertEquals(3, in.readInt());
+        assertEquals(-1, in.read());
+        assertEquals(3, frames);
+        assertEquals("first line\nx", receivedOut.toString(StandardCharsets.UTF_8));
+        assertEquals("a warning\n", receivedErr.toString(StandardCharsets.UTF_8));
+    }
+}